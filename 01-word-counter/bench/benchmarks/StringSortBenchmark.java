@@ -0,0 +1,191 @@
+package benchmarks;
+
+import java.lang.reflect.Method;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmarks comparing the engines of {@code StringSort} on word lists
+ * like those {@code WordCounter} and {@code Glossary} sort, over a range of
+ * list sizes, so that the results show where each engine wins and where
+ * {@code StringSort.Engine.AUTO} should switch from one to another.
+ * <p>
+ * Run with the JMH jars on the class path (and the JMH annotation processor
+ * enabled when compiling):
+ *
+ * <pre>
+ * java -cp ... benchmarks.StringSortBenchmark
+ * </pre>
+ *
+ * which writes the comparison report to {@code string-sort-benchmark.csv}.
+ * JMH does not allow benchmarks in the default package, where
+ * {@code StringSort} lives, so it is called reflectively; the cost of that one
+ * call is negligible next to the sort.
+ *
+ * @author Jared Alonzo
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringSortBenchmark {
+
+    /**
+     * Seed for the random words, so every run uses the same words.
+     */
+    private static final long SEED = 20240517L;
+
+    /**
+     * Number of distinct syllables words are built from.
+     */
+    private static final int SYLLABLES = 400;
+
+    /**
+     * Engine under test.
+     */
+    @Param({ "COMPARATOR", "RADIX", "PARALLEL_MERGE" })
+    private String engine;
+
+    /**
+     * Number of words sorted.
+     */
+    @Param({ "1000", "10000", "100000", "1000000" })
+    private int size;
+
+    /**
+     * Kind of word: {@code WORDS} are lower-case words built from common
+     * syllables, so many share long prefixes, as in a vocabulary;
+     * {@code MIXED_CASE} are random letters of either case.
+     */
+    @Param({ "WORDS", "MIXED_CASE" })
+    private String vocabulary;
+
+    /**
+     * The unsorted words.
+     */
+    private String[] words;
+
+    /**
+     * Copy of {@code words} sorted by each invocation.
+     */
+    private String[] work;
+
+    /**
+     * {@code StringSort.sort}.
+     */
+    private Method sort;
+
+    /**
+     * The {@code StringSort.Engine} constant named by {@code engine}.
+     */
+    private Object engineConstant;
+
+    /**
+     * The sort key, as {@code WordCounter} uses it.
+     */
+    private final UnaryOperator<String> key = String::toLowerCase;
+
+    /**
+     * Builds the words and looks up {@code StringSort}.
+     *
+     * @throws ReflectiveOperationException
+     *             if {@code StringSort} is not on the class path
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws ReflectiveOperationException {
+        Random rnd = new Random(SEED);
+        String[] syllables = new String[SYLLABLES];
+        for (int i = 0; i < SYLLABLES; i++) {
+            syllables[i] = "" + (char) ('a' + rnd.nextInt(26))
+                    + "aeiou".charAt(rnd.nextInt(5))
+                    + (char) ('a' + rnd.nextInt(26));
+        }
+        this.words = new String[this.size];
+        for (int i = 0; i < this.size; i++) {
+            StringBuilder sb = new StringBuilder();
+            if (this.vocabulary.equals("WORDS")) {
+                // Skewed syllable choice gives common prefixes
+                int parts = 1 + rnd.nextInt(4);
+                for (int p = 0; p < parts; p++) {
+                    int s = (int) (SYLLABLES * Math.pow(rnd.nextDouble(), 3));
+                    sb.append(syllables[s]);
+                }
+            } else {
+                int length = 3 + rnd.nextInt(10);
+                for (int p = 0; p < length; p++) {
+                    char c = (char) ('a' + rnd.nextInt(26));
+                    if (rnd.nextBoolean()) {
+                        c = Character.toUpperCase(c);
+                    }
+                    sb.append(c);
+                }
+            }
+            this.words[i] = sb.toString();
+        }
+        this.work = new String[this.size];
+
+        Class<?> sortClass = Class.forName("StringSort");
+        Class<?> engineClass = Class.forName("StringSort$Engine");
+        this.sort = sortClass.getMethod("sort", String[].class,
+                UnaryOperator.class, engineClass);
+        for (Object constant : engineClass.getEnumConstants()) {
+            if (constant.toString().equals(this.engine)) {
+                this.engineConstant = constant;
+            }
+        }
+    }
+
+    /**
+     * Sorts a fresh copy of the words; the time includes the copy, which is
+     * the same for every engine.
+     *
+     * @return the sorted words
+     * @throws ReflectiveOperationException
+     *             if the call fails
+     */
+    @Benchmark
+    public String[] sort() throws ReflectiveOperationException {
+        System.arraycopy(this.words, 0, this.work, 0, this.size);
+        this.sort.invoke(null, this.work, this.key, this.engineConstant);
+        return this.work;
+    }
+
+    /**
+     * Runs all the benchmarks in this class and writes a CSV report.
+     *
+     * @param args
+     *            extra JMH command-line options; unused
+     * @throws RunnerException
+     *             if JMH fails to run
+     */
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(StringSortBenchmark.class.getSimpleName())
+                .resultFormat(ResultFormatType.CSV)
+                .result("string-sort-benchmark.csv").build();
+        new Runner(options).run();
+    }
+
+}
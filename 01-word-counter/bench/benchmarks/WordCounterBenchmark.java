@@ -0,0 +1,491 @@
+package benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * JMH benchmarks timing the phases of {@code WordCounter} separately:
+ * tokenizing and counting an in-memory buffer ({@code countWords}, which
+ * replaced {@code nextWordOrSeparator}), counting a file ({@code getList}, on
+ * one thread and on all cores), writing the sorted table
+ * ({@code outputTable}, which replaced {@code outputWordAndCount}), and the
+ * whole of {@code processFile}. Each runs on {@code data/gettysburg.txt} and
+ * on synthetic corpora of increasing size, whose vocabulary grows with their
+ * size as in real text, and with the default ASCII tokenizer and the Unicode
+ * one, to show the cost of the richer separator classes.
+ * <p>
+ * Besides operations per second, every benchmark reports a {@code bytes}
+ * counter: input bytes processed per second, so dividing it by 2^20 gives each
+ * phase's throughput in MB/s, comparable across phases and corpora.
+ * <p>
+ * Run from the {@code 01-word-counter} folder, with the JMH and components
+ * jars on the class path (and the JMH annotation processor enabled when
+ * compiling):
+ *
+ * <pre>
+ * java -cp ... benchmarks.WordCounterBenchmark
+ * </pre>
+ *
+ * which runs with the allocation profiler ({@code -prof gc}) and writes the
+ * report to {@code word-counter-benchmark.csv}. The phases are private static
+ * methods of {@code WordCounter}, in the default package, so they are called
+ * through method handles obtained reflectively.
+ *
+ * @author Jared Alonzo
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WordCounterBenchmark {
+
+    /**
+     * Seed for the synthetic corpora, so every run uses the same text.
+     */
+    private static final long SEED = 20240522L;
+
+    /**
+     * Share of the words of a synthetic corpus drawn from the Gettysburg
+     * Address; the rest are drawn from a vocabulary growing with the corpus.
+     */
+    private static final double COMMON_WORD_SHARE = 0.8;
+
+    /**
+     * Number of distinct rare words per MiB of synthetic corpus.
+     */
+    private static final int RARE_WORDS_PER_MIB = 20000;
+
+    /**
+     * Number of bytes in a MiB.
+     */
+    private static final int MIB = 1 << 20;
+
+    /**
+     * {@code gettysburg} for {@code data/gettysburg.txt}, or the size in MiB
+     * of a synthetic corpus.
+     */
+    @Param({ "gettysburg", "1", "16", "128" })
+    private String corpus;
+
+    /**
+     * {@code DEFAULT} for {@code WordCounter}'s default tokenizer, or
+     * {@code UNICODE} for the one also splitting at Unicode punctuation,
+     * symbols and spaces.
+     */
+    @Param({ "DEFAULT", "UNICODE" })
+    private String tokenizer;
+
+    /**
+     * The {@code Tokenizer} named by {@code tokenizer}.
+     */
+    private Object tokenizerInstance;
+
+    /**
+     * The input file.
+     */
+    private Path input;
+
+    /**
+     * Whether {@code input} is a temporary file to delete at the end.
+     */
+    private boolean temporary;
+
+    /**
+     * Size of the input in bytes.
+     */
+    private long inputBytes;
+
+    /**
+     * The input, loaded into memory.
+     */
+    private ByteBuffer inputBuffer;
+
+    /**
+     * The word counts of the input.
+     */
+    private Map<?, ?> wordCounts;
+
+    /**
+     * The words of the input in output order.
+     */
+    private String[] sortedWords;
+
+    /**
+     * The output file.
+     */
+    private Path output;
+
+    /**
+     * {@code WordCounter.Options} with default values but for the tokenizer.
+     */
+    private Object options;
+
+    /**
+     * {@code new WordCounter.WordTable()}.
+     */
+    private MethodHandle newWordTable;
+
+    /**
+     * {@code WordCounter.countWords(ByteBuffer, int, int, Tokenizer,
+     * WordSink)}.
+     */
+    private MethodHandle countWords;
+
+    /**
+     * {@code WordCounter.getList(Map, String, int, Tokenizer)}.
+     */
+    private MethodHandle getList;
+
+    /**
+     * {@code WordCounter.outputTable(String, String, String[], Map, int)}.
+     */
+    private MethodHandle outputTable;
+
+    /**
+     * {@code WordCounter.processFile(String, String, Options)}.
+     */
+    private MethodHandle processFile;
+
+    /**
+     * Number of input bytes processed, reported by JMH as a rate.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Throughput {
+
+        /**
+         * Input bytes processed in this iteration.
+         */
+        public long bytes;
+
+        /**
+         * Resets the counter at the start of each iteration.
+         */
+        @Setup(Level.Iteration)
+        public void reset() {
+            this.bytes = 0;
+        }
+
+    }
+
+    /**
+     * Returns the private static method {@code name} of {@code c} as a method
+     * handle.
+     *
+     * @param c
+     *            the class
+     * @param name
+     *            the method name
+     * @param parameterCount
+     *            the number of parameters, to pick among overloads
+     * @return the method handle
+     * @throws ReflectiveOperationException
+     *             if there is no such method
+     */
+    private static MethodHandle privateMethod(Class<?> c, String name,
+            int parameterCount) throws ReflectiveOperationException {
+        for (Method m : c.getDeclaredMethods()) {
+            if (m.getName().equals(name)
+                    && m.getParameterCount() == parameterCount) {
+                m.setAccessible(true);
+                return MethodHandles.lookup().unreflect(m);
+            }
+        }
+        throw new NoSuchMethodException(c.getName() + "." + name);
+    }
+
+    /**
+     * Returns the path of {@code data/gettysburg.txt}, from the project
+     * folder or from the repository root.
+     *
+     * @return the path
+     */
+    private static Path gettysburg() {
+        Path path = Paths.get("data", "gettysburg.txt");
+        if (!Files.exists(path)) {
+            path = Paths.get("01-word-counter", "data", "gettysburg.txt");
+        }
+        return path;
+    }
+
+    /**
+     * Writes a synthetic corpus of about {@code mib} MiB to a temporary file:
+     * words of the Gettysburg Address mixed with rare words from a vocabulary
+     * proportional to the size, separated by spaces, punctuation and line
+     * breaks.
+     *
+     * @param mib
+     *            the size in MiB
+     * @return the path of the corpus
+     * @throws IOException
+     *             if writing fails
+     */
+    private static Path syntheticCorpus(int mib) throws IOException {
+        String[] common = new String(Files.readAllBytes(gettysburg()),
+                StandardCharsets.UTF_8).split("[^A-Za-z']+");
+        int rareWords = RARE_WORDS_PER_MIB * mib;
+        Random rnd = new Random(SEED);
+        Path path = Files.createTempFile("word-counter-", ".txt");
+        long target = (long) mib * MIB;
+        long written = 0;
+        int column = 0;
+        try (BufferedWriter out = Files.newBufferedWriter(path,
+                StandardCharsets.UTF_8)) {
+            while (written < target) {
+                String word;
+                if (rnd.nextDouble() < COMMON_WORD_SHARE) {
+                    word = common[rnd.nextInt(common.length)];
+                } else {
+                    // Skewed toward small numbers, as word frequencies are;
+                    // spelled in letters since digits are separators
+                    int n = (int) (rareWords * Math.pow(rnd.nextDouble(), 2));
+                    StringBuilder sb = new StringBuilder("word");
+                    do {
+                        sb.append((char) ('a' + n % 26));
+                        n /= 26;
+                    } while (n > 0);
+                    word = sb.toString();
+                }
+                String separator = " ";
+                if (column > 70) {
+                    separator = ".\n";
+                    column = 0;
+                } else if (rnd.nextInt(12) == 0) {
+                    separator = ", ";
+                }
+                out.write(word);
+                out.write(separator);
+                written += word.length() + separator.length();
+                column += word.length() + separator.length();
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Prepares the input, its counts and sorted words, and the method handles.
+     *
+     * @throws Throwable
+     *             if setting up fails
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        if (this.corpus.equals("gettysburg")) {
+            this.input = gettysburg();
+            this.temporary = false;
+        } else {
+            this.input = syntheticCorpus(Integer.parseInt(this.corpus));
+            this.temporary = true;
+        }
+        byte[] bytes = Files.readAllBytes(this.input);
+        this.inputBytes = bytes.length;
+        this.inputBuffer = ByteBuffer.allocateDirect(bytes.length);
+        this.inputBuffer.put(bytes).flip();
+        this.output = Files.createTempFile("word-counter-", ".html");
+
+        Class<?> wordCounter = Class.forName("WordCounter");
+        Constructor<?> wordTable = Class.forName("WordCounter$WordTable")
+                .getDeclaredConstructor();
+        wordTable.setAccessible(true);
+        this.newWordTable = MethodHandles.lookup().unreflectConstructor(
+                wordTable);
+        Constructor<?> optionsConstructor = Class
+                .forName("WordCounter$Options").getDeclaredConstructor();
+        optionsConstructor.setAccessible(true);
+        this.options = optionsConstructor.newInstance();
+        Field defaultTokenizer = wordCounter
+                .getDeclaredField("DEFAULT_TOKENIZER");
+        defaultTokenizer.setAccessible(true);
+        this.tokenizerInstance = defaultTokenizer.get(null);
+        if (this.tokenizer.equals("UNICODE")) {
+            this.tokenizerInstance = this.tokenizerInstance.getClass()
+                    .getMethod("withUnicodeSeparators")
+                    .invoke(this.tokenizerInstance);
+        }
+        Field optionsTokenizer = this.options.getClass()
+                .getDeclaredField("tokenizer");
+        optionsTokenizer.setAccessible(true);
+        optionsTokenizer.set(this.options, this.tokenizerInstance);
+        this.countWords = privateMethod(wordCounter, "countWords", 5);
+        this.getList = privateMethod(wordCounter, "getList", 4);
+        this.outputTable = privateMethod(wordCounter, "outputTable", 5);
+        this.processFile = privateMethod(wordCounter, "processFile", 3);
+        MethodHandle wordsOf = privateMethod(wordCounter, "wordsOf", 1);
+
+        Map<?, ?> counts = new Map1L<>();
+        this.getList.invoke(counts, this.input.toString(), 1,
+                this.tokenizerInstance);
+        this.wordCounts = counts;
+        this.sortedWords = (String[]) wordsOf.invoke(counts);
+        Class<?> engine = Class.forName("StringSort$Engine");
+        Object auto = null;
+        for (Object constant : engine.getEnumConstants()) {
+            if (constant.toString().equals("AUTO")) {
+                auto = constant;
+            }
+        }
+        UnaryOperator<String> lowerCase = String::toLowerCase;
+        Class.forName("StringSort")
+                .getMethod("sort", String[].class, UnaryOperator.class, engine)
+                .invoke(null, this.sortedWords, lowerCase, auto);
+    }
+
+    /**
+     * Deletes the temporary files.
+     *
+     * @throws IOException
+     *             if deleting fails
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (this.temporary) {
+            Files.deleteIfExists(this.input);
+        }
+        Files.deleteIfExists(this.output);
+    }
+
+    /**
+     * Tokenizes the in-memory input and counts its words, without any I/O.
+     *
+     * @param throughput
+     *            the byte counter
+     * @return the word table
+     * @throws Throwable
+     *             if the call fails
+     */
+    @Benchmark
+    public Object tokenize(Throughput throughput) throws Throwable {
+        Object table = this.newWordTable.invoke();
+        this.countWords.invoke(this.inputBuffer, 0, this.inputBuffer.limit(),
+                this.tokenizerInstance, table);
+        throughput.bytes += this.inputBytes;
+        return table;
+    }
+
+    /**
+     * Counts the words of the input file on one thread.
+     *
+     * @param throughput
+     *            the byte counter
+     * @return the word counts
+     * @throws Throwable
+     *             if the call fails
+     */
+    @Benchmark
+    public Map<?, ?> getListSequential(Throughput throughput)
+            throws Throwable {
+        Map<?, ?> counts = new Map1L<>();
+        this.getList.invoke(counts, this.input.toString(), 1,
+                this.tokenizerInstance);
+        throughput.bytes += this.inputBytes;
+        return counts;
+    }
+
+    /**
+     * Counts the words of the input file on all cores.
+     *
+     * @param throughput
+     *            the byte counter
+     * @return the word counts
+     * @throws Throwable
+     *             if the call fails
+     */
+    @Benchmark
+    public Map<?, ?> getListParallel(Throughput throughput) throws Throwable {
+        Map<?, ?> counts = new Map1L<>();
+        this.getList.invoke(counts, this.input.toString(),
+                Runtime.getRuntime().availableProcessors(),
+                this.tokenizerInstance);
+        throughput.bytes += this.inputBytes;
+        return counts;
+    }
+
+    /**
+     * Writes the HTML table of the already sorted words.
+     *
+     * @param throughput
+     *            the byte counter
+     * @throws Throwable
+     *             if the call fails
+     */
+    @Benchmark
+    public void outputTable(Throughput throughput) throws Throwable {
+        this.outputTable.invoke(this.output.toString(), "Words",
+                this.sortedWords, this.wordCounts, 0);
+        throughput.bytes += this.inputBytes;
+    }
+
+    /**
+     * Runs the whole program on the input with the default options.
+     *
+     * @param throughput
+     *            the byte counter
+     * @throws Throwable
+     *             if the call fails
+     */
+    @Benchmark
+    public void processFile(Throughput throughput) throws Throwable {
+        this.processFile.invoke(this.input.toString(), this.output.toString(),
+                this.options);
+        throughput.bytes += this.inputBytes;
+    }
+
+    /**
+     * Runs all the benchmarks in this class with the allocation profiler and
+     * writes a CSV report.
+     *
+     * @param args
+     *            extra JMH command-line options; unused
+     * @throws RunnerException
+     *             if JMH fails to run
+     */
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(WordCounterBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.CSV)
+                .result("word-counter-benchmark.csv").build();
+        new Runner(options).run();
+    }
+
+}
@@ -0,0 +1,223 @@
+/**
+ * Count-Min Sketch (Cormode and Muthukrishnan): approximate frequencies of the
+ * items of a stream in a fixed {@code depth x width} table of counters. Each
+ * item is counted in one counter per row, chosen by a hash of the item, and
+ * its estimate is the smallest of those counters. An estimate is never below
+ * the true frequency, and with probability at least
+ * {@code 1 - e^(-depth)} it exceeds it by at most {@code e * total / width}.
+ *
+ * @param <T>
+ *            type of the items counted
+ * @convention <pre>
+ * [$this.width is a power of 2]  and
+ * |$this.counters| = $this.depth * $this.width  and
+ * [each row of $this.counters sums to $this.total]
+ * </pre>
+ *
+ * @author Jared Alonzo
+ *
+ */
+public final class CountMinSketch<T> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Number of counters per row.
+     */
+    private final int width;
+
+    /**
+     * Number of rows.
+     */
+    private final int depth;
+
+    /**
+     * The counters, row by row.
+     */
+    private final long[] counters;
+
+    /**
+     * Number of occurrences added.
+     */
+    private long total;
+
+    /**
+     * Finalization step of MurmurHash3, so that nearby hash codes land in
+     * unrelated columns.
+     *
+     * @param h
+     *            the hash code
+     * @return the mixed hash code
+     */
+    private static int mix(int h) {
+        int x = h;
+        x ^= x >>> 16;
+        x *= 0x85EBCA6B;
+        x ^= x >>> 13;
+        x *= 0xC2B2AE35;
+        x ^= x >>> 16;
+        return x;
+    }
+
+    /**
+     * Returns the index in {@code counters} of the counter of row {@code row}
+     * for an item with mixed hashes {@code h1} and {@code h2}. Rows use
+     * {@code h1 + row * h2}, which is as good as independent hash functions for
+     * this purpose (Kirsch and Mitzenmacher).
+     *
+     * @param h1
+     *            first hash of the item
+     * @param h2
+     *            second hash of the item, odd
+     * @param row
+     *            the row
+     * @return the counter index
+     */
+    private int counterIndex(int h1, int h2, int row) {
+        return row * this.width + ((h1 + row * h2) & (this.width - 1));
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor resulting in an empty sketch with {@code depth} rows of at
+     * least {@code width} counters.
+     *
+     * @param width
+     *            requested number of counters per row
+     * @param depth
+     *            number of rows
+     * @requires 0 < width <= 2^30  and  depth > 0
+     * @ensures [this is empty]
+     */
+    public CountMinSketch(int width, int depth) {
+        assert 0 < width : "Violation of: 0 < width";
+        assert width <= 1 << 30 : "Violation of: width <= 2^30";
+        assert depth > 0 : "Violation of: depth > 0";
+
+        int w = 1;
+        while (w < width) {
+            w <<= 1;
+        }
+        this.width = w;
+        this.depth = depth;
+        this.counters = new long[w * depth];
+        this.total = 0;
+    }
+
+    /**
+     * Returns an empty sketch whose estimates exceed the true frequencies by
+     * at most {@code epsilon * total} with probability at least
+     * {@code 1 - delta}.
+     *
+     * @param <T>
+     *            type of the items counted
+     * @param epsilon
+     *            the relative error
+     * @param delta
+     *            the probability of exceeding it
+     * @return the new sketch
+     * @requires 0 < epsilon < 1  and  0 < delta < 1
+     */
+    public static <T> CountMinSketch<T> withErrorBounds(double epsilon,
+            double delta) {
+        assert 0 < epsilon && epsilon < 1 : "Violation of: 0 < epsilon < 1";
+        assert 0 < delta && delta < 1 : "Violation of: 0 < delta < 1";
+
+        int width = (int) Math.ceil(Math.E / epsilon);
+        int depth = (int) Math.ceil(Math.log(1 / delta));
+        return new CountMinSketch<>(width, depth);
+    }
+
+    /*
+     * Other methods ----------------------------------------------------------
+     */
+
+    /**
+     * Counts {@code n} occurrences of {@code x}.
+     *
+     * @param x
+     *            the item
+     * @param n
+     *            number of occurrences
+     * @updates this
+     * @requires x /= null  and  n >= 0
+     */
+    public void add(T x, long n) {
+        assert x != null : "Violation of: x is not null";
+        assert n >= 0 : "Violation of: n >= 0";
+
+        int h1 = mix(x.hashCode());
+        int h2 = mix(h1 ^ 0x9E3779B9) | 1;
+        for (int row = 0; row < this.depth; row++) {
+            this.counters[this.counterIndex(h1, h2, row)] += n;
+        }
+        this.total += n;
+    }
+
+    /**
+     * Counts one occurrence of {@code x}.
+     *
+     * @param x
+     *            the item
+     * @updates this
+     * @requires x /= null
+     */
+    public void add(T x) {
+        this.add(x, 1);
+    }
+
+    /**
+     * Reports an estimate of the number of occurrences of {@code x}, never
+     * below the true number.
+     *
+     * @param x
+     *            the item
+     * @return the estimated frequency of {@code x}
+     * @requires x /= null
+     */
+    public long estimate(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        int h1 = mix(x.hashCode());
+        int h2 = mix(h1 ^ 0x9E3779B9) | 1;
+        long result = Long.MAX_VALUE;
+        for (int row = 0; row < this.depth; row++) {
+            result = Math.min(result,
+                    this.counters[this.counterIndex(h1, h2, row)]);
+        }
+        return result;
+    }
+
+    /**
+     * Reports the number of occurrences added.
+     *
+     * @return the length of the stream so far
+     */
+    public long total() {
+        return this.total;
+    }
+
+    /**
+     * Reports the number of counters per row.
+     *
+     * @return the width of the sketch
+     */
+    public int width() {
+        return this.width;
+    }
+
+    /**
+     * Reports the number of rows.
+     *
+     * @return the depth of the sketch
+     */
+    public int depth() {
+        return this.depth;
+    }
+
+}
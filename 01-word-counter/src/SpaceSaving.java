@@ -0,0 +1,272 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Space-Saving summary of a stream of items (Metwally, Agrawal and El Abbadi),
+ * which finds the most frequent items of a stream in fixed memory. At most
+ * {@code capacity} items are monitored; when a new item arrives and every
+ * counter is taken, the item with the smallest count is replaced and the new
+ * item inherits that count as its possible overestimate. Every item occurring
+ * more than {@code total / capacity} times is guaranteed to be monitored, and
+ * the count of a monitored item exceeds its true frequency by at most its
+ * error.
+ *
+ * @param <T>
+ *            type of the items counted
+ * @convention <pre>
+ * 0 <= $this.size <= |$this.heap|  and
+ * [$this.heap[0, $this.size) is a min-heap on count]  and
+ * [$this.heap[i].position = i for every i < $this.size]  and
+ * [$this.index maps the item of every slot of $this.heap[0, $this.size)
+ *  to that slot, and nothing else]  and
+ * [the sum of the counts of the slots] = $this.total
+ * </pre>
+ *
+ * @author Jared Alonzo
+ *
+ */
+public final class SpaceSaving<T> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Counter monitoring one item.
+     *
+     * @param <T>
+     *            type of the item
+     */
+    private static final class Slot<T> {
+
+        /**
+         * The item monitored.
+         */
+        private T item;
+
+        /**
+         * Upper bound on the number of occurrences of {@code item}.
+         */
+        private long count;
+
+        /**
+         * Largest possible overestimate in {@code count}.
+         */
+        private long error;
+
+        /**
+         * Index of this slot in the heap.
+         */
+        private int position;
+
+    }
+
+    /**
+     * The counters, as a min-heap on count.
+     */
+    private final Slot<T>[] heap;
+
+    /**
+     * Map from each monitored item to its counter.
+     */
+    private final HashMap<T, Slot<T>> index;
+
+    /**
+     * Number of counters in use.
+     */
+    private int size;
+
+    /**
+     * Number of items added.
+     */
+    private long total;
+
+    /**
+     * Stores {@code slot} at index {@code i} of the heap.
+     *
+     * @param slot
+     *            the counter
+     * @param i
+     *            its new position
+     */
+    private void place(Slot<T> slot, int i) {
+        this.heap[i] = slot;
+        slot.position = i;
+    }
+
+    /**
+     * Moves the counter at {@code i} toward the root while it is smaller than
+     * its parent.
+     *
+     * @param i
+     *            position of the counter
+     */
+    private void siftUp(int i) {
+        Slot<T> slot = this.heap[i];
+        int k = i;
+        while (k > 0) {
+            int parent = (k - 1) / 2;
+            if (this.heap[parent].count <= slot.count) {
+                break;
+            }
+            this.place(this.heap[parent], k);
+            k = parent;
+        }
+        this.place(slot, k);
+    }
+
+    /**
+     * Moves the counter at {@code i} toward the leaves while it is larger than
+     * one of its children.
+     *
+     * @param i
+     *            position of the counter
+     */
+    private void siftDown(int i) {
+        Slot<T> slot = this.heap[i];
+        int k = i;
+        while (2 * k + 1 < this.size) {
+            int child = 2 * k + 1;
+            if (child + 1 < this.size
+                    && this.heap[child + 1].count < this.heap[child].count) {
+                child++;
+            }
+            if (slot.count <= this.heap[child].count) {
+                break;
+            }
+            this.place(this.heap[child], k);
+            k = child;
+        }
+        this.place(slot, k);
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor resulting in an empty summary monitoring at most
+     * {@code capacity} items.
+     *
+     * @param capacity
+     *            number of counters
+     * @requires capacity > 0
+     * @ensures [this is empty]
+     */
+    @SuppressWarnings("unchecked")
+    public SpaceSaving(int capacity) {
+        assert capacity > 0 : "Violation of: capacity > 0";
+
+        this.heap = (Slot<T>[]) new Slot<?>[capacity];
+        this.index = new HashMap<>(2 * capacity);
+        this.size = 0;
+        this.total = 0;
+    }
+
+    /*
+     * Other methods ----------------------------------------------------------
+     */
+
+    /**
+     * Counts one occurrence of {@code x}.
+     *
+     * @param x
+     *            the item
+     * @updates this
+     * @requires x /= null
+     */
+    public void add(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        this.total++;
+        Slot<T> slot = this.index.get(x);
+        if (slot != null) {
+            slot.count++;
+            this.siftDown(slot.position);
+        } else if (this.size < this.heap.length) {
+            slot = new Slot<>();
+            slot.item = x;
+            slot.count = 1;
+            this.heap[this.size] = slot;
+            slot.position = this.size;
+            this.size++;
+            this.index.put(x, slot);
+            this.siftUp(slot.position);
+        } else {
+            // Replace the least counted item, inheriting its count as error
+            slot = this.heap[0];
+            this.index.remove(slot.item);
+            slot.item = x;
+            slot.error = slot.count;
+            slot.count++;
+            this.index.put(x, slot);
+            this.siftDown(0);
+        }
+    }
+
+    /**
+     * Reports an upper bound on the number of occurrences of {@code x}.
+     *
+     * @param x
+     *            the item
+     * @return the count of {@code x} if it is monitored, or 0
+     */
+    public long count(T x) {
+        Slot<T> slot = this.index.get(x);
+        long result = 0;
+        if (slot != null) {
+            result = slot.count;
+        }
+        return result;
+    }
+
+    /**
+     * Reports how much {@code count(x)} may overestimate the number of
+     * occurrences of {@code x}.
+     *
+     * @param x
+     *            the item
+     * @return the error of {@code x} if it is monitored, or 0
+     */
+    public long error(T x) {
+        Slot<T> slot = this.index.get(x);
+        long result = 0;
+        if (slot != null) {
+            result = slot.error;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the items currently monitored, in no particular order.
+     *
+     * @return a new list of the monitored items
+     */
+    public List<T> items() {
+        List<T> result = new ArrayList<>(this.size);
+        for (int i = 0; i < this.size; i++) {
+            result.add(this.heap[i].item);
+        }
+        return result;
+    }
+
+    /**
+     * Reports the largest number of items monitored at once.
+     *
+     * @return the number of counters
+     */
+    public int capacity() {
+        return this.heap.length;
+    }
+
+    /**
+     * Reports the number of items added.
+     *
+     * @return the length of the stream so far
+     */
+    public long total() {
+        return this.total;
+    }
+
+}
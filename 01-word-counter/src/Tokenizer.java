@@ -0,0 +1,402 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Splits text into words and separators. A character is a separator if it is
+ * in a custom set of separators or belongs to one of a chosen set of Unicode
+ * general categories (see {@code Character.getType}); words may also be
+ * case-folded. The configuration is compiled once, when the tokenizer is
+ * built, into a bit set over all the characters of the Basic Multilingual
+ * Plane and a byte table for UTF-8 input, so classifying a character costs
+ * one lookup however rich the configuration is.
+ * <p>
+ * Tokenizers are immutable; {@code withCategories},
+ * {@code withUnicodeSeparators} and {@code withCaseFolding} return new ones.
+ *
+ * @author Jared Alonzo
+ *
+ */
+public final class Tokenizer {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Number of characters in the Basic Multilingual Plane.
+     */
+    private static final int BMP_SIZE = Character.MAX_VALUE + 1;
+
+    /**
+     * Number of distinct byte values.
+     */
+    private static final int BYTE_VALUES = 256;
+
+    /**
+     * The Unicode general categories of punctuation, symbols, spaces,
+     * controls and decimal digits, which separate words in most scripts.
+     */
+    private static final int[] SEPARATOR_CATEGORIES = {
+            Character.CONNECTOR_PUNCTUATION, Character.DASH_PUNCTUATION,
+            Character.START_PUNCTUATION, Character.END_PUNCTUATION,
+            Character.INITIAL_QUOTE_PUNCTUATION,
+            Character.FINAL_QUOTE_PUNCTUATION, Character.OTHER_PUNCTUATION,
+            Character.MATH_SYMBOL, Character.CURRENCY_SYMBOL,
+            Character.MODIFIER_SYMBOL, Character.OTHER_SYMBOL,
+            Character.SPACE_SEPARATOR, Character.LINE_SEPARATOR,
+            Character.PARAGRAPH_SEPARATOR, Character.CONTROL,
+            Character.DECIMAL_DIGIT_NUMBER };
+
+    /**
+     * The custom separators.
+     */
+    private final String separators;
+
+    /**
+     * The separator categories, as a bit mask indexed by
+     * {@code Character.getType}.
+     */
+    private final int categories;
+
+    /**
+     * Whether words are case-folded.
+     */
+    private final boolean foldCase;
+
+    /**
+     * The separators of the Basic Multilingual Plane.
+     */
+    private final BitSet separatorChars = new BitSet(BMP_SIZE);
+
+    /**
+     * The separators outside the Basic Multilingual Plane that are in
+     * {@code separators}, sorted.
+     */
+    private final int[] supplementarySeparators;
+
+    /**
+     * Separator table indexed by the first byte of a UTF-8 sequence: 1 if the
+     * byte is a one-byte separator, -1 if it begins a longer sequence that
+     * may encode a separator, and 0 otherwise.
+     */
+    private final byte[] firstBytes = new byte[BYTE_VALUES];
+
+    /**
+     * Returns the code point encoded by the UTF-8 sequence of {@code n} bytes
+     * starting at index {@code i} of {@code buffer}, or -1 if those bytes are
+     * not a well-formed sequence.
+     *
+     * @param buffer
+     *            the input
+     * @param i
+     *            index of the first byte of the sequence
+     * @param n
+     *            number of bytes of the sequence
+     * @return the code point, or -1
+     */
+    private static int decode(ByteBuffer buffer, int i, int n) {
+        final int[] minimum = { 0, 0, 0x80, 0x800, 0x10000 };
+        int cp = buffer.get(i) & (0x7F >> n);
+        for (int k = 1; k < n; k++) {
+            int b = buffer.get(i + k);
+            if ((b & 0xC0) != 0x80) {
+                return -1;
+            }
+            cp = (cp << 6) | (b & 0x3F);
+        }
+        if (cp < minimum[n] || cp > Character.MAX_CODE_POINT
+                || (cp >= Character.MIN_SURROGATE
+                        && cp <= Character.MAX_SURROGATE)) {
+            cp = -1;
+        }
+        return cp;
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor compiling the configuration into lookup tables.
+     *
+     * @param separators
+     *            the custom separators
+     * @param categories
+     *            the separator categories, as a bit mask
+     * @param foldCase
+     *            whether words are case-folded
+     */
+    private Tokenizer(String separators, int categories, boolean foldCase) {
+        this.separators = separators;
+        this.categories = categories;
+        this.foldCase = foldCase;
+
+        // Characters of the Basic Multilingual Plane, by category then set
+        if (categories != 0) {
+            for (int c = 0; c < BMP_SIZE; c++) {
+                if ((categories & (1 << Character.getType(c))) != 0) {
+                    this.separatorChars.set(c);
+                }
+            }
+        }
+        this.supplementarySeparators = separators.codePoints()
+                .filter(Character::isSupplementaryCodePoint).sorted()
+                .toArray();
+        separators.codePoints().filter(Character::isBmpCodePoint)
+                .forEach(this.separatorChars::set);
+
+        // First bytes of UTF-8: ASCII separators stand alone, and any lead
+        // byte may begin a separator once non-ASCII separators exist
+        for (int b = 0; b < BYTE_VALUES / 2; b++) {
+            if (this.separatorChars.get(b)) {
+                this.firstBytes[b] = 1;
+            }
+        }
+        boolean nonAscii = this.supplementarySeparators.length > 0
+                || this.separatorChars.nextSetBit(BYTE_VALUES / 2) >= 0;
+        if (nonAscii) {
+            Arrays.fill(this.firstBytes, 0xC2, 0xF5, (byte) -1);
+        }
+    }
+
+    /**
+     * Returns a tokenizer whose separators are the characters of
+     * {@code separators}, without case folding.
+     *
+     * @param separators
+     *            the separators
+     * @return the tokenizer
+     */
+    public static Tokenizer of(CharSequence separators) {
+        assert separators != null : "Violation of: separators is not null";
+
+        return new Tokenizer(separators.toString(), 0, false);
+    }
+
+    /**
+     * Returns a tokenizer like this one that also treats every character of
+     * the given Unicode general categories as a separator.
+     *
+     * @param types
+     *            general categories, as returned by {@code Character.getType}
+     * @return the tokenizer
+     */
+    public Tokenizer withCategories(int... types) {
+        int mask = this.categories;
+        for (int type : types) {
+            assert 0 <= type && type < Integer.SIZE
+                    : "Violation of: types are general categories";
+            mask |= 1 << type;
+        }
+        return new Tokenizer(this.separators, mask, this.foldCase);
+    }
+
+    /**
+     * Returns a tokenizer like this one that also treats Unicode punctuation,
+     * symbols, spaces, controls and decimal digits as separators.
+     *
+     * @return the tokenizer
+     */
+    public Tokenizer withUnicodeSeparators() {
+        return this.withCategories(SEPARATOR_CATEGORIES);
+    }
+
+    /**
+     * Returns a tokenizer like this one that case-folds words.
+     *
+     * @return the tokenizer
+     */
+    public Tokenizer withCaseFolding() {
+        return new Tokenizer(this.separators, this.categories, true);
+    }
+
+    /*
+     * Other methods ----------------------------------------------------------
+     */
+
+    /**
+     * Reports whether {@code codePoint} is a separator.
+     *
+     * @param codePoint
+     *            the character
+     * @return true iff {@code codePoint} is a separator
+     */
+    public boolean isSeparator(int codePoint) {
+        boolean result;
+        if (codePoint < BMP_SIZE) {
+            result = this.separatorChars.get(codePoint);
+        } else {
+            int type = Character.getType(codePoint);
+            result = (this.categories & (1 << type)) != 0 || Arrays
+                    .binarySearch(this.supplementarySeparators, codePoint) >= 0;
+        }
+        return result;
+    }
+
+    /**
+     * Reports whether byte {@code b} of UTF-8 input is a one-byte separator.
+     * Bytes of multi-byte UTF-8 sequences are never ASCII, so this never
+     * matches inside a character, and the position after such a byte is
+     * always a word boundary.
+     *
+     * @param b
+     *            the byte
+     * @return true iff {@code b} encodes a separator character
+     */
+    public boolean isSeparatorByte(byte b) {
+        return this.firstBytes[b & 0xFF] == 1;
+    }
+
+    /**
+     * Returns the number of bytes of the separator encoded in UTF-8 at index
+     * {@code i} of {@code buffer}, or 0 if the bytes there do not begin a
+     * separator. Malformed or truncated sequences are never separators.
+     *
+     * @param buffer
+     *            the input
+     * @param i
+     *            index of the byte to look at
+     * @param limit
+     *            index just past the last byte that may be read
+     * @return the length of the separator, or 0
+     * @requires i < limit
+     */
+    public int separatorLength(ByteBuffer buffer, int i, int limit) {
+        int b = buffer.get(i) & 0xFF;
+        int result = this.firstBytes[b];
+        if (result < 0) {
+            // Multi-byte sequence: 110xxxxx, 1110xxxx or 11110xxx
+            int n = Integer.numberOfLeadingZeros(~b << 24);
+            result = 0;
+            if (i + n <= limit) {
+                int cp = decode(buffer, i, n);
+                if (cp >= 0 && this.isSeparator(cp)) {
+                    result = n;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the index just past the word or separator string starting at
+     * {@code position} of {@code text}: the longest run of characters that
+     * are all separators, or all not separators, like the character at
+     * {@code position}.
+     *
+     * @param text
+     *            the text
+     * @param position
+     *            the starting index
+     * @return the end of the word or separator string
+     * @requires 0 <= position < |text|
+     */
+    public int tokenEnd(CharSequence text, int position) {
+        assert text != null : "Violation of: text is not null";
+        assert 0 <= position : "Violation of: 0 <= position";
+        assert position < text.length() : "Violation of: position < |text|";
+
+        boolean separator = this
+                .isSeparator(Character.codePointAt(text, position));
+        int end = position;
+        while (end < text.length()) {
+            int cp = Character.codePointAt(text, end);
+            if (this.isSeparator(cp) != separator) {
+                break;
+            }
+            end += Character.charCount(cp);
+        }
+        return end;
+    }
+
+    /**
+     * Returns {@code word} case-folded if this tokenizer folds case, so that
+     * words differing only in case become equal, or {@code word} itself
+     * otherwise. Each character is folded as
+     * {@code String.CASE_INSENSITIVE_ORDER} folds it.
+     *
+     * @param word
+     *            the word
+     * @return the normalized word
+     */
+    public String normalize(String word) {
+        String result = word;
+        if (this.foldCase) {
+            char[] folded = null;
+            for (int i = 0; i < word.length(); i++) {
+                char c = word.charAt(i);
+                char f = Character.toLowerCase(Character.toUpperCase(c));
+                if (f != c) {
+                    if (folded == null) {
+                        folded = word.toCharArray();
+                    }
+                    folded[i] = f;
+                }
+            }
+            if (folded != null) {
+                result = new String(folded);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reports whether this tokenizer folds case.
+     *
+     * @return true iff words are case-folded
+     */
+    public boolean foldsCase() {
+        return this.foldCase;
+    }
+
+    /**
+     * Returns the custom separators of this tokenizer.
+     *
+     * @return the custom separators
+     */
+    public String separators() {
+        return this.separators;
+    }
+
+    /**
+     * Returns the separator categories of this tokenizer, as a bit mask
+     * indexed by {@code Character.getType}.
+     *
+     * @return the separator categories
+     */
+    public int categories() {
+        return this.categories;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof Tokenizer)) {
+            return false;
+        }
+        Tokenizer other = (Tokenizer) obj;
+        return this.categories == other.categories
+                && this.foldCase == other.foldCase
+                && this.separators.equals(other.separators);
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = this.separators.hashCode();
+        result = prime * result + this.categories;
+        result = prime * result + Boolean.hashCode(this.foldCase);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "Tokenizer(separators=\"" + this.separators + "\", categories="
+                + Integer.toHexString(this.categories) + ", foldCase="
+                + this.foldCase + ")";
+    }
+
+}
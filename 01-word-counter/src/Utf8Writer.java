@@ -0,0 +1,207 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Output stream writing text to a file as UTF-8 through one reusable byte
+ * buffer. Characters and numbers are encoded straight into the buffer, which
+ * is written to the file whenever it fills, so printing neither concatenates
+ * nor allocates. Lines end with the platform line separator, like
+ * {@code SimpleWriter}.
+ *
+ * @author Jared Alonzo
+ *
+ */
+public final class Utf8Writer implements Closeable {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Size in bytes of the output buffer.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Largest number of bytes one character is encoded into.
+     */
+    private static final int MAX_CHAR_BYTES = 4;
+
+    /**
+     * The line separator, as bytes.
+     */
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator()
+            .getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * The output file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Bytes not yet written to the file.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Scratch space for the digits of a number, least significant first.
+     */
+    private final byte[] digits = new byte[Long.toString(Long.MIN_VALUE)
+            .length()];
+
+    /**
+     * Writes the buffered bytes to the file, leaving the buffer empty.
+     */
+    private void drain() {
+        this.buffer.flip();
+        try {
+            while (this.buffer.hasRemaining()) {
+                this.channel.write(this.buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.buffer.clear();
+    }
+
+    /**
+     * Makes room for at least {@code n} more bytes in the buffer.
+     *
+     * @param n
+     *            number of bytes needed
+     * @requires n <= BUFFER_SIZE
+     */
+    private void reserve(int n) {
+        if (this.buffer.remaining() < n) {
+            this.drain();
+        }
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor opening {@code fileName} for writing, replacing its
+     * contents.
+     *
+     * @param fileName
+     *            the name of the output file
+     */
+    public Utf8Writer(String fileName) {
+        try {
+            this.channel = FileChannel.open(Paths.get(fileName),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    /*
+     * Other methods ----------------------------------------------------------
+     */
+
+    /**
+     * Outputs {@code s}. An unpaired surrogate is output as {@code '?'}.
+     *
+     * @param s
+     *            the text to output
+     * @updates this
+     */
+    public void print(CharSequence s) {
+        int length = s.length();
+        for (int i = 0; i < length; i++) {
+            this.reserve(MAX_CHAR_BYTES);
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                this.buffer.put((byte) c);
+            } else if (c < 0x800) {
+                this.buffer.put((byte) (0xC0 | (c >> 6)));
+                this.buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(i + 1));
+                i++;
+                this.buffer.put((byte) (0xF0 | (cp >> 18)));
+                this.buffer.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                this.buffer.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                this.buffer.put((byte) (0x80 | (cp & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                this.buffer.put((byte) '?');
+            } else {
+                this.buffer.put((byte) (0xE0 | (c >> 12)));
+                this.buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                this.buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    /**
+     * Outputs the decimal representation of {@code n}.
+     *
+     * @param n
+     *            the number to output
+     * @updates this
+     */
+    public void print(long n) {
+        this.reserve(this.digits.length);
+        if (n < 0) {
+            this.buffer.put((byte) '-');
+        }
+        int count = 0;
+        long rest = n;
+        do {
+            this.digits[count] = (byte) ('0' + Math.abs(rest % 10));
+            count++;
+            rest /= 10;
+        } while (rest != 0);
+        while (count > 0) {
+            count--;
+            this.buffer.put(this.digits[count]);
+        }
+    }
+
+    /**
+     * Outputs a line separator.
+     *
+     * @updates this
+     */
+    public void println() {
+        this.reserve(LINE_SEPARATOR.length);
+        this.buffer.put(LINE_SEPARATOR);
+    }
+
+    /**
+     * Outputs {@code s} followed by a line separator.
+     *
+     * @param s
+     *            the text to output
+     * @updates this
+     */
+    public void println(CharSequence s) {
+        this.print(s);
+        this.println();
+    }
+
+    /**
+     * Writes any buffered output and closes the file.
+     */
+    @Override
+    public void close() {
+        this.drain();
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
@@ -1,13 +1,42 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
 
 import components.map.Map;
 import components.map.Map1L;
-import components.naturalnumber.NaturalNumber;
-import components.naturalnumber.NaturalNumber1L;
-import components.queue.Queue;
-import components.queue.Queue1L;
-import components.set.Set;
-import components.set.Set1L;
 import components.simplereader.SimpleReader;
 import components.simplereader.SimpleReader1L;
 import components.simplewriter.SimpleWriter;
@@ -34,15 +63,657 @@ public final class WordCounter {
     private static final String WORD_SEPARATORS = "., ()-_?/!@#$%^&*\t1234567890:"
             + ";[]{}+=~`><";
 
+    /**
+     * Line terminators, which also end words since the input is no longer
+     * split into lines before tokenizing.
+     */
+    private static final String LINE_SEPARATORS = "\r\n";
+
+    /**
+     * Largest number of bytes of the input file mapped into memory at once.
+     */
+    private static final int MAP_WINDOW_SIZE = 1 << 26;
+
+    /**
+     * The default tokenizer, splitting words at the ASCII separators only.
+     */
+    private static final Tokenizer DEFAULT_TOKENIZER = Tokenizer
+            .of(WORD_SEPARATORS + LINE_SEPARATORS);
+
+    /**
+     * Largest range read into a reusable buffer instead of being mapped into
+     * memory, which costs more than reading for small files.
+     */
+    private static final int SMALL_RANGE_SIZE = 1 << 16;
+
+    /**
+     * Name of the file, in the output folder of batch mode, holding the counts
+     * of all the input files together.
+     */
+    private static final String MERGED_OUTPUT = "merged.html";
+
+    /**
+     * Characters that make the input of batch mode a glob.
+     */
+    private static final String GLOB_WILDCARDS = "*?[{";
+
+    /**
+     * Smallest number of bytes worth counting on a thread of its own.
+     */
+    private static final long MIN_RANGE_SIZE = 1 << 22;
+
+    /**
+     * Suffix appended to the output file name to name the snapshot of counts
+     * kept between incremental runs.
+     */
+    private static final String SNAPSHOT_SUFFIX = ".counts";
+
+    /**
+     * First 4 bytes of a snapshot file.
+     */
+    private static final int SNAPSHOT_MAGIC = 0x57435334;
+
+    /**
+     * Number of bytes at each end of the counted part of the input that are
+     * fingerprinted to detect an input that was rewritten, not appended to.
+     * Changes to the bytes in between go unnoticed.
+     */
+    private static final int FINGERPRINT_SIZE = 4096;
+
+    /**
+     * Number of Space-Saving counters kept per word reported, so that the
+     * counts of the words reported are close to exact.
+     */
+    private static final int COUNTERS_PER_REPORTED_WORD = 10;
+
+    /**
+     * Number of counters per row of the Count-Min Sketch.
+     */
+    private static final int SKETCH_WIDTH = 1 << 16;
+
+    /**
+     * Number of rows of the Count-Min Sketch.
+     */
+    private static final int SKETCH_DEPTH = 5;
+
+    /**
+     * Which words are written to the output table.
+     */
+    private enum Mode {
+        /**
+         * Every word with its exact count, in alphabetical order.
+         */
+        ALL,
+        /**
+         * The most frequent words by exact count, selected with a heap.
+         */
+        TOP,
+        /**
+         * The most frequent words with approximate counts, from a Space-Saving
+         * summary in fixed memory.
+         */
+        SPACE_SAVING,
+        /**
+         * The most frequent words with approximate counts, estimated by a
+         * Count-Min Sketch in fixed memory.
+         */
+        SKETCH
+    }
+
+    /**
+     * Buffer of each thread for reading small ranges, reused across files.
+     */
+    private static final ThreadLocal<ByteBuffer> READ_BUFFER = ThreadLocal
+            .withInitial(() -> ByteBuffer.allocateDirect(SMALL_RANGE_SIZE));
+
+    /**
+     * Word table of each thread, emptied and reused across ranges and files.
+     */
+    private static final ThreadLocal<WordTable> WORD_TABLE = ThreadLocal
+            .withInitial(WordTable::new);
+
+    /**
+     * Options read from the command line.
+     */
+    static final class Options {
+
+        /**
+         * Which words to output.
+         */
+        private Mode mode = Mode.ALL;
+
+        /**
+         * Number of words to output, unless {@code mode} is ALL.
+         */
+        private int k = 1;
+
+        /**
+         * Whether to reuse and update the counts saved by the previous run,
+         * unless {@code mode} is approximate.
+         */
+        private boolean incremental = false;
+
+        /**
+         * Number of table rows per output page, or 0 for a single page.
+         */
+        private int pageSize = 0;
+
+        /**
+         * Algorithm sorting the words alphabetically.
+         */
+        private StringSort.Engine sortEngine = StringSort.Engine.AUTO;
+
+        /**
+         * Largest number of threads to count with.
+         */
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * File, directory or glob of the input files of batch mode, or empty
+         * for interactive mode.
+         */
+        private String batchInput = "";
+
+        /**
+         * Output folder of batch mode.
+         */
+        private String batchOutput = "";
+
+        /**
+         * How the input is split into words.
+         */
+        private Tokenizer tokenizer = DEFAULT_TOKENIZER;
+
+    }
+
     /**
      * Comparator for sorting strings in lexicographical order.
      */
     private static final class StringComparator implements Comparator<String> {
         @Override
         public int compare(String o1, String o2) {
-            // Compare two strings lexicographically after converting to lowercase
-            return o1.toLowerCase().compareTo(o2.toLowerCase());
+            // Compare two strings lexicographically after converting to
+            // lowercase; words differing only in case are ordered by their
+            // exact text, so the output does not depend on hashing order
+            int result = o1.toLowerCase().compareTo(o2.toLowerCase());
+            if (result == 0) {
+                result = o1.compareTo(o2);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Mutable occurrence count of one word, so that counting a word updates
+     * its map entry in place.
+     */
+    static final class Counter {
+
+        /**
+         * Number of occurrences seen so far.
+         */
+        private long count;
+
+        /**
+         * Reports the number of occurrences seen so far.
+         *
+         * @return the count
+         */
+        long count() {
+            return this.count;
+        }
+
+    }
+
+    /**
+     * Receiver of the words found by the tokenizer.
+     */
+    private interface WordSink {
+
+        /**
+         * Counts one occurrence of the word in bytes
+         * {@code [from, from + length)} of {@code buffer}.
+         *
+         * @param buffer
+         *            the input
+         * @param from
+         *            index of the first byte of the word
+         * @param length
+         *            number of bytes of the word
+         * @updates this
+         * @requires length > 0
+         */
+        void count(ByteBuffer buffer, int from, int length);
+
+    }
+
+    /**
+     * Table counting words keyed on their UTF-8 bytes, so that a word found
+     * in the input is counted without decoding it or allocating anything. A
+     * word's bytes are copied and its {@code String} built only the first
+     * time it is seen. The table uses linear probing over power-of-2 arrays
+     * and doubles when more than half full.
+     */
+    private static final class WordTable implements WordSink {
+
+        /**
+         * Initial capacity of the table.
+         */
+        private static final int INITIAL_CAPACITY = 1 << 12;
+
+        /**
+         * Hash codes of the words, parallel to {@code keys}.
+         */
+        private int[] hashes = new int[INITIAL_CAPACITY];
+
+        /**
+         * UTF-8 bytes of the words; {@code null} marks an empty slot.
+         */
+        private byte[][] keys = new byte[INITIAL_CAPACITY][];
+
+        /**
+         * The words, decoded once when first seen.
+         */
+        private String[] words = new String[INITIAL_CAPACITY];
+
+        /**
+         * Occurrence counts of the words.
+         */
+        private long[] counts = new long[INITIAL_CAPACITY];
+
+        /**
+         * Number of distinct words in the table.
+         */
+        private int size;
+
+        /**
+         * Largest capacity kept by {@code clear}.
+         */
+        private static final int MAX_RETAINED_CAPACITY = 1 << 16;
+
+        /**
+         * Empties the table so that it can count another input, keeping its
+         * arrays unless a large input made them grow past
+         * {@code MAX_RETAINED_CAPACITY}.
+         */
+        void clear() {
+            if (this.keys.length > MAX_RETAINED_CAPACITY) {
+                this.hashes = new int[INITIAL_CAPACITY];
+                this.keys = new byte[INITIAL_CAPACITY][];
+                this.words = new String[INITIAL_CAPACITY];
+                this.counts = new long[INITIAL_CAPACITY];
+            } else {
+                Arrays.fill(this.keys, null);
+                Arrays.fill(this.words, null);
+            }
+            this.size = 0;
+        }
+
+        /**
+         * Reports whether the stored word {@code key} equals bytes
+         * {@code [from, from + length)} of {@code buffer}.
+         *
+         * @param key
+         *            a stored word
+         * @param buffer
+         *            the input
+         * @param from
+         *            index of the first byte of the word
+         * @param length
+         *            number of bytes of the word
+         * @return true iff the bytes are equal
+         */
+        private static boolean sameBytes(byte[] key, ByteBuffer buffer,
+                int from, int length) {
+            if (key.length != length) {
+                return false;
+            }
+            for (int k = 0; k < length; k++) {
+                if (key[k] != buffer.get(from + k)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void count(ByteBuffer buffer, int from, int length) {
+            int h = 0;
+            for (int k = 0; k < length; k++) {
+                h = 31 * h + buffer.get(from + k);
+            }
+            h ^= h >>> 16;
+
+            int mask = this.keys.length - 1;
+            int i = h & mask;
+            while (this.keys[i] != null) {
+                if (this.hashes[i] == h
+                        && sameBytes(this.keys[i], buffer, from, length)) {
+                    this.counts[i]++;
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+
+            // First occurrence: copy the bytes and decode the word
+            byte[] key = new byte[length];
+            for (int k = 0; k < length; k++) {
+                key[k] = buffer.get(from + k);
+            }
+            this.hashes[i] = h;
+            this.keys[i] = key;
+            this.words[i] = new String(key, StandardCharsets.UTF_8);
+            this.counts[i] = 1;
+            this.size++;
+            if (this.size > this.keys.length / 2) {
+                this.grow();
+            }
+        }
+
+        /**
+         * Doubles the table and reinserts every word.
+         */
+        private void grow() {
+            int[] oldHashes = this.hashes;
+            byte[][] oldKeys = this.keys;
+            String[] oldWords = this.words;
+            long[] oldCounts = this.counts;
+            int capacity = oldKeys.length * 2;
+            this.hashes = new int[capacity];
+            this.keys = new byte[capacity][];
+            this.words = new String[capacity];
+            this.counts = new long[capacity];
+            int mask = capacity - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldKeys[j] != null) {
+                    int i = oldHashes[j] & mask;
+                    while (this.keys[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    this.hashes[i] = oldHashes[j];
+                    this.keys[i] = oldKeys[j];
+                    this.words[i] = oldWords[j];
+                    this.counts[i] = oldCounts[j];
+                }
+            }
+        }
+
+        /**
+         * Adds the counts in this table to {@code wordCounts}, each word
+         * normalized by {@code tokenizer}. Distinct byte sequences may
+         * normalize or decode to the same word, so counts for a word already
+         * present are added together.
+         *
+         * @param wordCounts
+         *            map from each word seen to its number of occurrences
+         * @param tokenizer
+         *            the tokenizer that found the words
+         * @updates wordCounts
+         */
+        void addTo(Map<String, Counter> wordCounts, Tokenizer tokenizer) {
+            for (int i = 0; i < this.keys.length; i++) {
+                if (this.keys[i] != null) {
+                    String word = tokenizer.normalize(this.words[i]);
+                    if (wordCounts.hasKey(word)) {
+                        wordCounts.value(word).count += this.counts[i];
+                    } else {
+                        Counter counter = new Counter();
+                        counter.count = this.counts[i];
+                        wordCounts.add(word, counter);
+                    }
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Words of the input with the highest Count-Min Sketch estimates. The
+     * candidates are kept in a min-heap on their estimate when last checked;
+     * estimates only grow, so a stale minimum is refreshed from the sketch
+     * before it is compared with a new word.
+     */
+    private static final class SketchTopWords implements WordSink {
+
+        /**
+         * A word and its estimate when last checked.
+         */
+        private static final class Candidate {
+
+            /**
+             * The word.
+             */
+            private final String word;
+
+            /**
+             * Its estimated count, possibly out of date.
+             */
+            private long estimate;
+
+            /**
+             * Constructor.
+             *
+             * @param word
+             *            the word
+             * @param estimate
+             *            its estimated count
+             */
+            Candidate(String word, long estimate) {
+                this.word = word;
+                this.estimate = estimate;
+            }
+
+        }
+
+        /**
+         * Approximate counts of every word seen.
+         */
+        private final CountMinSketch<String> sketch = new CountMinSketch<>(
+                SKETCH_WIDTH, SKETCH_DEPTH);
+
+        /**
+         * The candidates, smallest estimate first.
+         */
+        private final PriorityQueue<Candidate> heap = new PriorityQueue<>(
+                (c1, c2) -> Long.compare(c1.estimate, c2.estimate));
+
+        /**
+         * The words of the candidates.
+         */
+        private final HashSet<String> candidates = new HashSet<>();
+
+        /**
+         * Number of words to keep.
+         */
+        private final int k;
+
+        /**
+         * Normalizes the words counted.
+         */
+        private final Tokenizer tokenizer;
+
+        /**
+         * Constructor.
+         *
+         * @param k
+         *            number of words to keep
+         * @param tokenizer
+         *            the tokenizer normalizing the words counted
+         */
+        SketchTopWords(int k, Tokenizer tokenizer) {
+            this.k = k;
+            this.tokenizer = tokenizer;
+        }
+
+        @Override
+        public void count(ByteBuffer buffer, int from, int length) {
+            String word = this.tokenizer
+                    .normalize(decode(buffer, from, length));
+            this.sketch.add(word);
+            if (!this.candidates.contains(word)) {
+                long estimate = this.sketch.estimate(word);
+                if (this.heap.size() < this.k) {
+                    this.heap.add(new Candidate(word, estimate));
+                    this.candidates.add(word);
+                } else {
+                    // Bring the smallest estimate up to date
+                    Candidate min = this.heap.peek();
+                    long current = this.sketch.estimate(min.word);
+                    while (current != min.estimate) {
+                        this.heap.poll();
+                        min.estimate = current;
+                        this.heap.add(min);
+                        min = this.heap.peek();
+                        current = this.sketch.estimate(min.word);
+                    }
+                    if (estimate > min.estimate) {
+                        this.candidates.remove(this.heap.poll().word);
+                        this.heap.add(new Candidate(word, estimate));
+                        this.candidates.add(word);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Adds the candidates and their final estimates to {@code top}.
+         *
+         * @param top
+         *            map from each word reported to its count
+         * @updates top
+         */
+        void addTo(Map<String, Counter> top) {
+            for (Candidate candidate : this.heap) {
+                Counter counter = new Counter();
+                counter.count = this.sketch.estimate(candidate.word);
+                top.add(candidate.word, counter);
+            }
+        }
+
+    }
+
+    /**
+     * Returns the word in bytes {@code [from, from + length)} of
+     * {@code buffer}.
+     *
+     * @param buffer
+     *            the input
+     * @param from
+     *            index of the first byte of the word
+     * @param length
+     *            number of bytes of the word
+     * @return the decoded word
+     */
+    private static String decode(ByteBuffer buffer, int from, int length) {
+        byte[] bytes = new byte[length];
+        for (int k = 0; k < length; k++) {
+            bytes[k] = buffer.get(from + k);
         }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns a comparator ordering words of {@code wordCounts} by decreasing
+     * count, then alphabetically.
+     *
+     * @param wordCounts
+     *            map from each word to its number of occurrences
+     * @return the comparator
+     */
+    private static Comparator<String> byDecreasingCount(
+            Map<String, Counter> wordCounts) {
+        Comparator<String> alphabetical = new StringComparator();
+        return (w1, w2) -> {
+            int result = Long.compare(wordCounts.value(w2).count,
+                    wordCounts.value(w1).count);
+            if (result == 0) {
+                result = alphabetical.compare(w1, w2);
+            }
+            return result;
+        };
+    }
+
+    /**
+     * Adds to {@code top} the {@code k} words of {@code wordCounts} with the
+     * highest counts, keeping only {@code k} words in a heap while scanning.
+     *
+     * @param wordCounts
+     *            map from each word to its number of occurrences
+     * @param k
+     *            number of words to select
+     * @param top
+     *            map from each word selected to its number of occurrences
+     * @updates top
+     */
+    static void selectTopWords(Map<String, Counter> wordCounts, int k,
+            Map<String, Counter> top) {
+        Comparator<String> rank = byDecreasingCount(wordCounts);
+        PriorityQueue<String> heap = new PriorityQueue<>(k, rank.reversed());
+        for (Map.Pair<String, Counter> entry : wordCounts) {
+            if (heap.size() < k || rank.compare(entry.key(), heap.peek()) < 0) {
+                heap.add(entry.key());
+                if (heap.size() > k) {
+                    heap.poll();
+                }
+            }
+        }
+        for (String word : heap) {
+            top.add(word, wordCounts.value(word));
+        }
+    }
+
+    /**
+     * Adds to {@code top} the {@code k} words of the input file with the
+     * highest counts in a Space-Saving summary, and those counts. The summary
+     * monitors a fixed number of words, so memory does not grow with the
+     * number of distinct words in the input.
+     *
+     * @param fileName
+     *            the name of the input file
+     * @param tokenizer
+     *            how the input is split into words
+     * @param k
+     *            number of words to select
+     * @param top
+     *            map from each word selected to its approximate count
+     * @updates top
+     */
+    static void spaceSavingTopWords(String fileName,
+            Tokenizer tokenizer, int k, Map<String, Counter> top) {
+        SpaceSaving<String> summary = new SpaceSaving<>(
+                k * COUNTERS_PER_REPORTED_WORD);
+        scanFile(fileName, tokenizer, (buffer, from, length) -> summary
+                .add(tokenizer.normalize(decode(buffer, from, length))));
+
+        Map<String, Counter> monitored = new Map1L<>();
+        for (String word : summary.items()) {
+            Counter counter = new Counter();
+            counter.count = summary.count(word);
+            monitored.add(word, counter);
+        }
+        selectTopWords(monitored, k, top);
+    }
+
+    /**
+     * Adds to {@code top} the {@code k} words of the input file with the
+     * highest Count-Min Sketch estimates, and those estimates. Only the sketch
+     * and {@code k} candidates are kept in memory.
+     *
+     * @param fileName
+     *            the name of the input file
+     * @param tokenizer
+     *            how the input is split into words
+     * @param k
+     *            number of words to select
+     * @param top
+     *            map from each word selected to its approximate count
+     * @updates top
+     */
+    static void sketchTopWords(String fileName, Tokenizer tokenizer,
+            int k, Map<String, Counter> top) {
+        SketchTopWords sketch = new SketchTopWords(k, tokenizer);
+        scanFile(fileName, tokenizer, sketch);
+        sketch.addTo(top);
     }
 
     /**
@@ -51,7 +722,7 @@ public final class WordCounter {
      * @param out
      *            the output stream
      */
-    private static void outputFooter(SimpleWriter out) {
+    private static void outputFooter(Utf8Writer out) {
         // Close the HTML table, body, and html tags
         out.println("</table>");
         out.println("</body>");
@@ -59,165 +730,759 @@ public final class WordCounter {
     }
 
     /**
-     * Outputs words and their frequencies in an HTML table.
+     * Returns the words of {@code wordCounts}, in no particular order.
+     *
+     * @param wordCounts
+     *            map from each word to its number of occurrences
+     * @return the words
+     */
+    private static String[] wordsOf(Map<String, Counter> wordCounts) {
+        String[] words = new String[wordCounts.size()];
+        int n = 0;
+        for (Map.Pair<String, Counter> entry : wordCounts) {
+            words[n] = entry.key();
+            n++;
+        }
+        return words;
+    }
+
+    /**
+     * Outputs {@code words[from, to)} and their frequencies as HTML table
+     * rows, writing each piece of a row separately instead of concatenating
+     * it.
      *
-     * @param wordList
-     *            the list of unique words
-     * @param wordOccurrences
-     *            a queue containing all occurrences of each word
      * @param out
      *            the output stream
+     * @param words
+     *            the words to output, in order
+     * @param from
+     *            index of the first word to output
+     * @param to
+     *            index just past the last word to output
+     * @param wordCounts
+     *            map from each word to its number of occurrences
      */
-    private static void outputWordAndCount(Queue<String> wordList,
-            Queue<String> wordOccurrences, SimpleWriter out) {
-        // Create a map to store word counts
-        Map<String, NaturalNumber> wordCountMap = new Map1L<>();
+    private static void outputRows(Utf8Writer out, String[] words, int from,
+            int to, Map<String, Counter> wordCounts) {
+        for (int i = from; i < to; i++) {
+            out.print("<tr><td>");
+            out.print(words[i]);
+            out.print("</td><td>");
+            out.print(wordCounts.value(words[i]).count);
+            out.println("</td></tr>");
+        }
+    }
 
-        // Initialize the map with each word having a count of 0
-        for (String word : wordList) {
-            wordCountMap.add(word, new NaturalNumber1L());
+    /**
+     * Returns the name of page {@code page} of a table whose index is
+     * {@code outputFile}: the page number is inserted before the extension.
+     *
+     * @param outputFile
+     *            the name of the index page
+     * @param page
+     *            the page number
+     * @return the name of the page
+     */
+    static String pageFileName(String outputFile, int page) {
+        String name = Paths.get(outputFile).getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        int split = outputFile.length() - name.length() + dot;
+        String result = outputFile + "-" + page + ".html";
+        if (dot > 0) {
+            result = outputFile.substring(0, split) + "-" + page
+                    + outputFile.substring(split);
         }
+        return result;
+    }
 
-        // Count the occurrences of each word
-        for (String word : wordOccurrences) {
-            if (wordCountMap.hasKey(word)) {
-                wordCountMap.value(word).increment();
+    /**
+     * Returns the name of {@code fileName} relative to its directory, for use
+     * in links between pages.
+     *
+     * @param fileName
+     *            the name of a file
+     * @return the last component of {@code fileName}
+     */
+    private static String link(String fileName) {
+        return Paths.get(fileName).getFileName().toString();
+    }
+
+    /**
+     * Outputs the table of {@code words} and their frequencies. If
+     * {@code pageSize} is positive and there are more words than that, the
+     * rows are split into pages of {@code pageSize} rows each, linked to one
+     * another, and {@code outputFile} becomes an index of the pages listing
+     * the first and last word of each.
+     *
+     * @param outputFile
+     *            the name of the output HTML file
+     * @param title
+     *            the title of the table
+     * @param words
+     *            the words to output, in order
+     * @param wordCounts
+     *            map from each word to its number of occurrences
+     * @param pageSize
+     *            number of rows per page, or 0 for a single page
+     * @requires pageSize >= 0
+     */
+    static void outputTable(String outputFile, String title,
+            String[] words, Map<String, Counter> wordCounts, int pageSize) {
+        assert pageSize >= 0 : "Violation of: pageSize >= 0";
+
+        if (pageSize == 0 || words.length <= pageSize) {
+            try (Utf8Writer out = new Utf8Writer(outputFile)) {
+                outputHeader(out, title);
+                outputTableStart(out, "Words", "Counts");
+                outputRows(out, words, 0, words.length, wordCounts);
+                outputFooter(out);
+            }
+        } else {
+            int pages = (words.length + pageSize - 1) / pageSize;
+            try (Utf8Writer index = new Utf8Writer(outputFile)) {
+                outputHeader(index, title);
+                index.print("<p>");
+                index.print(words.length);
+                index.println(" words</p>");
+                outputTableStart(index, "Pages", "Words");
+                for (int page = 1; page <= pages; page++) {
+                    int from = (page - 1) * pageSize;
+                    int to = Math.min(words.length, from + pageSize);
+                    index.print("<tr><td><a href=\"");
+                    index.print(link(pageFileName(outputFile, page)));
+                    index.print("\">Page ");
+                    index.print(page);
+                    index.print("</a></td><td>");
+                    index.print(words[from]);
+                    index.print(" &ndash; ");
+                    index.print(words[to - 1]);
+                    index.println("</td></tr>");
+                }
+                outputFooter(index);
+            }
+            for (int page = 1; page <= pages; page++) {
+                int from = (page - 1) * pageSize;
+                int to = Math.min(words.length, from + pageSize);
+                try (Utf8Writer out = new Utf8Writer(
+                        pageFileName(outputFile, page))) {
+                    outputHeader(out, title + " (page " + page + " of "
+                            + pages + ")");
+                    out.print("<p>");
+                    if (page > 1) {
+                        out.print("<a href=\"");
+                        out.print(link(pageFileName(outputFile, page - 1)));
+                        out.print("\">Previous</a> | ");
+                    }
+                    out.print("<a href=\"");
+                    out.print(link(outputFile));
+                    out.print("\">Index</a>");
+                    if (page < pages) {
+                        out.print(" | <a href=\"");
+                        out.print(link(pageFileName(outputFile, page + 1)));
+                        out.print("\">Next</a>");
+                    }
+                    out.println("</p>");
+                    outputTableStart(out, "Words", "Counts");
+                    outputRows(out, words, from, to, wordCounts);
+                    outputFooter(out);
+                }
             }
         }
+    }
 
-        // Output each word and its count in an HTML table row
-        for (String word : wordList) {
-            out.println("<tr><td>" + word + "</td><td>"
-                    + wordCountMap.value(word) + "</td></tr>");
+    /**
+     * Counts the words in bytes {@code [from, to)} of {@code buffer}, scanning
+     * the bytes directly against the tables of {@code tokenizer}; only the
+     * lead bytes of multi-byte characters are decoded, and only if the
+     * tokenizer has non-ASCII separators.
+     *
+     * @param buffer
+     *            the input
+     * @param from
+     *            index of the first byte to scan
+     * @param to
+     *            index just past the last byte to scan
+     * @param tokenizer
+     *            how the input is split into words
+     * @param sink
+     *            receiver of the words
+     * @updates sink
+     * @requires [no word crosses from or to]
+     */
+    private static void countWords(ByteBuffer buffer, int from, int to,
+            Tokenizer tokenizer, WordSink sink) {
+        int i = from;
+        while (i < to) {
+            // Skip the separators, then find the end of the word
+            int separator = 0;
+            while (i < to && (separator = tokenizer.separatorLength(buffer, i,
+                    to)) > 0) {
+                i += separator;
+            }
+            int wordStart = i;
+            while (i < to && tokenizer.separatorLength(buffer, i, to) == 0) {
+                i++;
+            }
+            if (i > wordStart) {
+                sink.count(buffer, wordStart, i - wordStart);
+            }
         }
     }
 
     /**
-     * Extracts the next word or separator string from the given text.
+     * Passes each word in bytes {@code [start, end)} of {@code channel} to
+     * {@code sink}. A small range is read into this thread's reusable buffer;
+     * a larger one is mapped into memory one window at a time, each window
+     * ending just after a separator, and tokenized in place.
      *
-     * @param text
-     *            the input text
+     * @param channel
+     *            the input file
+     * @param start
+     *            position of the first byte to read
+     * @param end
+     *            position just past the last byte to read
+     * @param tokenizer
+     *            how the input is split into words
+     * @param sink
+     *            receiver of the words
+     * @throws IOException
+     *             if reading fails
+     * @updates sink
+     * @requires [no word crosses start or end]
+     */
+    private static void scanRange(FileChannel channel, long start, long end,
+            Tokenizer tokenizer, WordSink sink) throws IOException {
+        if (end - start <= SMALL_RANGE_SIZE) {
+            ByteBuffer buffer = READ_BUFFER.get();
+            buffer.clear();
+            buffer.limit((int) (end - start));
+            while (buffer.hasRemaining() && channel.read(buffer,
+                    start + buffer.position()) >= 0) {
+                // Keep reading until the range is in the buffer
+            }
+            buffer.flip();
+            countWords(buffer, 0, buffer.limit(), tokenizer, sink);
+            return;
+        }
+        long position = start;
+        while (position < end) {
+            long windowEnd = end;
+            if (end - position > MAP_WINDOW_SIZE) {
+                windowEnd = alignToSeparator(channel,
+                        position + MAP_WINDOW_SIZE, end, tokenizer);
+            }
+            MappedByteBuffer window = channel.map(
+                    FileChannel.MapMode.READ_ONLY, position,
+                    windowEnd - position);
+            countWords(window, 0, window.limit(), tokenizer, sink);
+            position = windowEnd;
+        }
+    }
+
+    /**
+     * Passes each word of the input file to {@code sink}, in order.
+     *
+     * @param fileName
+     *            the name of the input file
+     * @param tokenizer
+     *            how the input is split into words
+     * @param sink
+     *            receiver of the words
+     * @updates sink
+     */
+    private static void scanFile(String fileName, Tokenizer tokenizer,
+            WordSink sink) {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName))) {
+            scanRange(channel, 0, channel.size(), tokenizer, sink);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Counts the occurrences of each word in bytes {@code [start, end)} of
+     * {@code channel}, in this thread's reusable word table. No {@code String}
+     * is built except for each new distinct word.
+     *
+     * @param channel
+     *            the input file
+     * @param start
+     *            position of the first byte to read
+     * @param end
+     *            position just past the last byte to read
+     * @param tokenizer
+     *            how the input is split into words
+     * @param wordCounts
+     *            map from each word seen to its number of occurrences
+     * @throws IOException
+     *             if reading fails
+     * @updates wordCounts
+     * @requires [no word crosses start or end]
+     */
+    private static void countRange(FileChannel channel, long start, long end,
+            Tokenizer tokenizer, Map<String, Counter> wordCounts)
+            throws IOException {
+        WordTable table = WORD_TABLE.get();
+        table.clear();
+        scanRange(channel, start, end, tokenizer, table);
+        table.addTo(wordCounts, tokenizer);
+    }
+
+    /**
+     * Returns the position just past the first one-byte separator at or after
+     * {@code position}, or {@code limit} if there is none before it, so that
+     * no word crosses the returned position.
+     *
+     * @param channel
+     *            the input file
      * @param position
-     *            the starting position
-     * @param separators
-     *            the set of separator characters
-     * @return the next word or separator string
-     */
-    private static String nextWordOrSeparator(String text, int position,
-            Set<Character> separators) {
-        assert text != null : "Violation of: text is not null";
-        assert separators != null : "Violation of: separators is not null";
-        assert 0 <= position : "Violation of: 0 <= position";
-        assert position < text.length() : "Violation of: position < |text|";
-
-        // Initialize the first character and the result string
-        char firstChar = text.charAt(position);
-        StringBuilder result = new StringBuilder();
-        int i = position;
-
-        // Determine if the first character is a separator
-        boolean isSeparator = separators.contains(firstChar);
-
-        // Extract the next word or separator string
-        while (i < text.length()
-                && separators.contains(text.charAt(i)) == isSeparator) {
-            result.append(text.charAt(i));
-            i++;
+     *            where to start looking
+     * @param limit
+     *            position at which to stop looking
+     * @param tokenizer
+     *            how the input is split into words
+     * @return the aligned position
+     * @throws IOException
+     *             if reading fails
+     */
+    private static long alignToSeparator(FileChannel channel, long position,
+            long limit, Tokenizer tokenizer) throws IOException {
+        final int probeSize = 4096;
+        ByteBuffer probe = ByteBuffer.allocate(probeSize);
+        long p = position;
+        while (p < limit) {
+            probe.clear();
+            int read = channel.read(probe, p);
+            for (int i = 0; i < read; i++) {
+                if (p + i >= limit) {
+                    return limit;
+                }
+                if (tokenizer.isSeparatorByte(probe.get(i))) {
+                    return p + i + 1;
+                }
+            }
+            if (read < 0) {
+                break;
+            }
+            p += read;
         }
+        return limit;
+    }
 
-        return result.toString();
+    /**
+     * Adds the counts in {@code partial} to {@code wordCounts}.
+     *
+     * @param wordCounts
+     *            the combined counts
+     * @param partial
+     *            counts of one part of the input
+     * @updates wordCounts
+     */
+    private static void mergeCounts(Map<String, Counter> wordCounts,
+            Map<String, Counter> partial) {
+        for (Map.Pair<String, Counter> entry : partial) {
+            if (wordCounts.hasKey(entry.key())) {
+                wordCounts.value(entry.key()).count += entry.value().count;
+            } else {
+                wordCounts.add(entry.key(), entry.value());
+            }
+        }
     }
 
     /**
-     * Generates a set of unique characters from the given string.
+     * Counts the occurrences of each word in bytes {@code [start, end)} of
+     * {@code channel}. Ranges large enough are split into up to
+     * {@code parallelism} parts, cut just after separators so that no word is
+     * split; each part is counted into its own map on a {@code ForkJoinPool}
+     * and the maps are merged at the end, so the counts are the same as for
+     * one part.
      *
-     * @param str
-     *            the input string
-     * @param strSet
-     *            the set to be filled with characters from the string
+     * @param channel
+     *            the input file
+     * @param start
+     *            position of the first byte to read
+     * @param end
+     *            position just past the last byte to read
+     * @param parallelism
+     *            the largest number of parts to count at once
+     * @param tokenizer
+     *            how the input is split into words
+     * @param wordCounts
+     *            map from each word seen to its number of occurrences
+     * @throws IOException
+     *             if reading fails
+     * @updates wordCounts
+     * @requires parallelism > 0  and  [no word crosses start or end]
      */
-    private static void generateElements(String str, Set<Character> strSet) {
-        assert str != null : "Violation of: str is not null";
-        assert strSet != null : "Violation of: strSet is not null";
+    private static void countParallel(FileChannel channel, long start,
+            long end, int parallelism, Tokenizer tokenizer,
+            Map<String, Counter> wordCounts) throws IOException {
+        assert parallelism > 0 : "Violation of: parallelism > 0";
 
-        // Add each character in the string to the set
-        for (int i = 0; i < str.length(); i++) {
-            strSet.add(str.charAt(i));
+        long length = end - start;
+        int ranges = (int) Math.max(1,
+                Math.min(parallelism, length / MIN_RANGE_SIZE));
+        if (ranges == 1) {
+            countRange(channel, start, end, tokenizer, wordCounts);
+        } else {
+            // Cut the range into parts that end just after a separator
+            long[] bounds = new long[ranges + 1];
+            bounds[0] = start;
+            bounds[ranges] = end;
+            for (int i = 1; i < ranges; i++) {
+                bounds[i] = alignToSeparator(channel, Math.max(bounds[i - 1],
+                        start + length / ranges * i), end, tokenizer);
+            }
+
+            // Count every part on its own thread, then merge
+            List<Callable<Map<String, Counter>>> tasks = new ArrayList<>();
+            for (int i = 0; i < ranges; i++) {
+                long rangeStart = bounds[i];
+                long rangeEnd = bounds[i + 1];
+                tasks.add(() -> {
+                    Map<String, Counter> partial = new Map1L<>();
+                    countRange(channel, rangeStart, rangeEnd, tokenizer,
+                            partial);
+                    return partial;
+                });
+            }
+            ForkJoinPool pool = new ForkJoinPool(ranges);
+            try {
+                for (Future<Map<String, Counter>> result : pool
+                        .invokeAll(tasks)) {
+                    mergeCounts(wordCounts, result.get());
+                }
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } finally {
+                pool.shutdown();
+            }
         }
     }
 
     /**
-     * Populates word lists with words from the input file and sorts the unique
-     * words alphabetically.
+     * Counts the occurrences of each word of the input file in one streaming
+     * pass, in parallel if the file is large enough.
      *
-     * @param wordList
-     *            the list of unique words
-     * @param wordOccurrences
-     *            the list of all word occurrences
-     * @param fileData
-     *            the input stream containing the text file
+     * @param wordCounts
+     *            map from each word seen to its number of occurrences
+     * @param fileName
+     *            the name of the input file
+     * @param parallelism
+     *            the largest number of ranges to count at once
+     * @param tokenizer
+     *            how the input is split into words
+     * @updates wordCounts
+     * @requires parallelism > 0
      */
-    private static void getList(Queue<String> wordList,
-            Queue<String> wordOccurrences, SimpleReader fileData) {
-        // Create a set of separator characters
-        Set<Character> separators = new Set1L<>();
-        generateElements(WORD_SEPARATORS, separators);
+    static void getList(Map<String, Counter> wordCounts,
+            String fileName, int parallelism, Tokenizer tokenizer) {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName))) {
+            countParallel(channel, 0, channel.size(), parallelism, tokenizer,
+                    wordCounts);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-        // Queue to store each line from the file
-        Queue<String> linesFromFile = new Queue1L<>();
-        while (!fileData.atEOS()) {
-            linesFromFile.enqueue(fileData.nextLine());
+    /**
+     * Returns the position just past the last one-byte separator in
+     * {@code [start, end)} of {@code channel}, or {@code start} if there is
+     * none. Bytes after it may be the beginning of a word that is still being
+     * written.
+     *
+     * @param channel
+     *            the input file
+     * @param start
+     *            position at which to stop looking
+     * @param end
+     *            position just past the last byte to look at
+     * @param tokenizer
+     *            how the input is split into words
+     * @return the position after the last separator
+     * @throws IOException
+     *             if reading fails
+     */
+    private static long lastSeparatorEnd(FileChannel channel, long start,
+            long end, Tokenizer tokenizer) throws IOException {
+        ByteBuffer probe = ByteBuffer.allocate(FINGERPRINT_SIZE);
+        long p = end;
+        while (p > start) {
+            int length = (int) Math.min(probe.capacity(), p - start);
+            probe.clear();
+            probe.limit(length);
+            channel.read(probe, p - length);
+            for (int i = probe.position() - 1; i >= 0; i--) {
+                if (tokenizer.isSeparatorByte(probe.get(i))) {
+                    return p - length + i + 1;
+                }
+            }
+            p -= length;
         }
+        return start;
+    }
 
-        // Process each line to extract words
-        while (linesFromFile.length() > 0) {
-            String line = linesFromFile.dequeue();
-            int position = 0;
+    /**
+     * Returns a checksum of the first and last {@code FINGERPRINT_SIZE} bytes
+     * of {@code [0, end)} of {@code channel}, used to tell whether the input
+     * was rewritten since a snapshot was made. Only those bytes are read, so
+     * that appending stays cheap however long the input; an edit that
+     * changes neither end of the counted bytes, nor the length of the input,
+     * is not detected.
+     *
+     * @param channel
+     *            the input file
+     * @param end
+     *            position just past the counted bytes
+     * @return the fingerprint
+     * @throws IOException
+     *             if reading fails
+     */
+    private static long fingerprint(FileChannel channel, long end)
+            throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer probe = ByteBuffer.allocate(FINGERPRINT_SIZE);
+        probe.limit((int) Math.min(FINGERPRINT_SIZE, end));
+        channel.read(probe, 0);
+        probe.flip();
+        crc.update(probe);
+        probe.clear();
+        probe.limit((int) Math.min(FINGERPRINT_SIZE, end));
+        channel.read(probe, end - probe.limit());
+        probe.flip();
+        crc.update(probe);
+        return crc.getValue();
+    }
+
+    /**
+     * Writes the configuration of {@code tokenizer} to {@code out}: its
+     * custom separators, its separator categories and whether it folds case.
+     *
+     * @param out
+     *            the snapshot stream
+     * @param tokenizer
+     *            the tokenizer
+     * @throws IOException
+     *             if writing fails
+     */
+    private static void writeTokenizer(DataOutputStream out,
+            Tokenizer tokenizer) throws IOException {
+        byte[] separators = tokenizer.separators()
+                .getBytes(StandardCharsets.UTF_8);
+        out.writeInt(separators.length);
+        out.write(separators);
+        out.writeInt(tokenizer.categories());
+        out.writeBoolean(tokenizer.foldsCase());
+    }
 
-            // Extract each word or separator string from the line
-            while (position < line.length()) {
-                String word = nextWordOrSeparator(line, position, separators);
-                position += word.length();
+    /**
+     * Reads a tokenizer configuration written by {@code writeTokenizer} from
+     * {@code in} and reports whether it is that of {@code tokenizer}.
+     *
+     * @param in
+     *            the snapshot stream
+     * @param tokenizer
+     *            the tokenizer
+     * @return true iff the configuration read is that of {@code tokenizer}
+     * @throws IOException
+     *             if reading fails
+     */
+    private static boolean readsTokenizer(DataInputStream in,
+            Tokenizer tokenizer) throws IOException {
+        byte[] separators = new byte[in.readInt()];
+        in.readFully(separators);
+        int categories = in.readInt();
+        boolean foldCase = in.readBoolean();
+        return Arrays.equals(separators,
+                tokenizer.separators().getBytes(StandardCharsets.UTF_8))
+                && categories == tokenizer.categories()
+                && foldCase == tokenizer.foldsCase();
+    }
 
-                // If the word is not a separator, add it to the lists
-                if (!separators.contains(word.charAt(0))) {
-                    boolean containsWord = false;
-                    for (String w : wordList) {
-                        containsWord = containsWord || w.equals(word);
-                    }
-                    if (!containsWord) {
-                        wordList.enqueue(word);
+    /**
+     * Loads the counts saved in {@code snapshot} into {@code wordCounts} and
+     * returns the number of input bytes they cover. If the snapshot is missing
+     * or unreadable, was made with a different tokenizer, is longer than the
+     * input, or covers bytes whose fingerprint changed, nothing is loaded and
+     * 0 is returned, so the input is counted again from the start.
+     *
+     * @param snapshot
+     *            the snapshot file
+     * @param channel
+     *            the input file
+     * @param tokenizer
+     *            how the input is split into words
+     * @param wordCounts
+     *            map from each word seen to its number of occurrences
+     * @return the number of input bytes covered by the loaded counts
+     * @throws IOException
+     *             if reading the input fails
+     * @updates wordCounts
+     * @requires wordCounts = {}
+     */
+    private static long loadSnapshot(Path snapshot, FileChannel channel,
+            Tokenizer tokenizer, Map<String, Counter> wordCounts)
+            throws IOException {
+        long offset = 0;
+        if (Files.isRegularFile(snapshot)) {
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(Files.newInputStream(snapshot)))) {
+                if (in.readInt() == SNAPSHOT_MAGIC
+                        && readsTokenizer(in, tokenizer)) {
+                    long counted = in.readLong();
+                    long expected = in.readLong();
+                    if (counted <= channel.size()
+                            && fingerprint(channel, counted) == expected) {
+                        int words = in.readInt();
+                        for (int n = 0; n < words; n++) {
+                            byte[] bytes = new byte[in.readInt()];
+                            in.readFully(bytes);
+                            Counter counter = new Counter();
+                            counter.count = in.readLong();
+                            wordCounts.add(
+                                    new String(bytes, StandardCharsets.UTF_8),
+                                    counter);
+                        }
+                        offset = counted;
                     }
-                    wordOccurrences.enqueue(word);
                 }
+            } catch (IOException e) {
+                // A damaged snapshot only costs a full recount
+                wordCounts.clear();
+                offset = 0;
             }
         }
+        return offset;
+    }
 
-        // Sort the list of unique words alphabetically
-        wordList.sort(new StringComparator());
+    /**
+     * Saves {@code wordCounts} to {@code snapshot} as the counts of bytes
+     * {@code [0, offset)} of {@code channel}. The snapshot is written to a
+     * temporary file first and then moved into place, so an interrupted run
+     * never leaves a partial snapshot behind.
+     *
+     * @param snapshot
+     *            the snapshot file
+     * @param channel
+     *            the input file
+     * @param tokenizer
+     *            how the input was split into words
+     * @param offset
+     *            number of input bytes covered by {@code wordCounts}
+     * @param wordCounts
+     *            map from each word seen to its number of occurrences
+     * @throws IOException
+     *             if reading the input or writing the snapshot fails
+     */
+    private static void saveSnapshot(Path snapshot, FileChannel channel,
+            Tokenizer tokenizer, long offset, Map<String, Counter> wordCounts)
+            throws IOException {
+        Path temporary = snapshot
+                .resolveSibling(snapshot.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            writeTokenizer(out, tokenizer);
+            out.writeLong(offset);
+            out.writeLong(fingerprint(channel, offset));
+            out.writeInt(wordCounts.size());
+            for (Map.Pair<String, Counter> entry : wordCounts) {
+                byte[] bytes = entry.key().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+                out.writeLong(entry.value().count);
+            }
+        }
+        Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
     }
 
     /**
-     * Outputs the opening HTML tags and table headers.
+     * Counts the occurrences of each word of the input file, reusing the
+     * counts saved in {@code snapshotFile} by the previous run so that only
+     * the bytes appended since then are tokenized. The snapshot is then
+     * updated to cover the input up to its last separator; a word at the very
+     * end of the input, which may still be growing, is counted in
+     * {@code wordCounts} but left out of the snapshot.
+     *
+     * @param wordCounts
+     *            map from each word seen to its number of occurrences
+     * @param fileName
+     *            the name of the input file
+     * @param parallelism
+     *            the largest number of ranges to count at once
+     * @param tokenizer
+     *            how the input is split into words
+     * @param snapshotFile
+     *            the name of the snapshot file
+     * @updates wordCounts
+     * @requires parallelism > 0  and  wordCounts = {}
+     */
+    static void getList(Map<String, Counter> wordCounts,
+            String fileName, int parallelism, Tokenizer tokenizer,
+            String snapshotFile) {
+        Path snapshot = Paths.get(snapshotFile);
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName))) {
+            long size = channel.size();
+            long offset = loadSnapshot(snapshot, channel, tokenizer,
+                    wordCounts);
+            long complete = lastSeparatorEnd(channel, offset, size, tokenizer);
+            countParallel(channel, offset, complete, parallelism, tokenizer,
+                    wordCounts);
+            saveSnapshot(snapshot, channel, tokenizer, complete, wordCounts);
+            countRange(channel, complete, size, tokenizer, wordCounts);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Outputs the opening HTML tags and the heading.
      *
      * @param fileOut
      *            the output stream
-     * @param userInput
+     * @param title
      *            the title of the HTML file
      */
-    private static void outputHeader(SimpleWriter fileOut, String userInput) {
-        // Generate the opening HTML structure and table headers
+    private static void outputHeader(Utf8Writer fileOut, String title) {
+        // Generate the opening HTML structure
         fileOut.println("<html>");
         fileOut.println("<style>");
         fileOut.println("table, th, td { border:1px solid black; }");
         fileOut.println("</style>");
-        fileOut.println("<head><title>Words Counted in " + userInput
-                + "</title></head>");
+        fileOut.print("<head><title>");
+        fileOut.print(title);
+        fileOut.println("</title></head>");
         fileOut.println("<body>");
-        fileOut.println("<h3>Words Counted in " + userInput + "</h3>");
+        fileOut.print("<h3>");
+        fileOut.print(title);
+        fileOut.println("</h3>");
         fileOut.println("<hr class=\"new1\">");
-        fileOut.println(
-                "<table style=\"width:10%\"><tr><th>Words</th><th>Counts</th></tr>");
+    }
+
+    /**
+     * Outputs the opening tag and headers of a two-column table.
+     *
+     * @param fileOut
+     *            the output stream
+     * @param first
+     *            the header of the first column
+     * @param second
+     *            the header of the second column
+     */
+    private static void outputTableStart(Utf8Writer fileOut, String first,
+            String second) {
+        fileOut.print("<table style=\"width:10%\"><tr><th>");
+        fileOut.print(first);
+        fileOut.print("</th><th>");
+        fileOut.print(second);
+        fileOut.println("</th></tr>");
     }
 
     /**
@@ -227,38 +1492,472 @@ public final class WordCounter {
      *            the name of the input file
      * @param outputFile
      *            the name of the output HTML file
+     * @param options
+     *            the options from the command line
      */
-    private static void processFile(String userInput, String outputFile) {
-        // Create streams for reading the input file and writing the output file
-        SimpleWriter fileOut = new SimpleWriter1L(outputFile);
-        SimpleReader fileData = new SimpleReader1L(userInput);
+    private static void processFile(String userInput, String outputFile,
+            Options options) {
+        // Count the words, keeping those to output, in output order
+        if (options.mode == Mode.ALL || options.mode == Mode.TOP) {
+            // Map from each unique word to its count
+            Map<String, Counter> wordCounts = new Map1L<>();
+            countFile(wordCounts, userInput, outputFile, options,
+                    options.parallelism);
+            outputCounts(wordCounts, userInput, outputFile, options);
+        } else {
+            String title = "Top " + options.k + " Words in " + userInput
+                    + " (approximate counts)";
+            Map<String, Counter> counts = new Map1L<>();
+            if (options.mode == Mode.SPACE_SAVING) {
+                spaceSavingTopWords(userInput, options.tokenizer, options.k,
+                        counts);
+            } else {
+                sketchTopWords(userInput, options.tokenizer, options.k,
+                        counts);
+            }
+            String[] words = wordsOf(counts);
+            Arrays.sort(words, byDecreasingCount(counts));
+            outputTable(outputFile, title, words, counts, options.pageSize);
+        }
+    }
 
-        // Queues to hold unique words and all word occurrences
-        Queue<String> wordList = new Queue1L<>();
-        Queue<String> wordOccurrences = new Queue1L<>();
+    /**
+     * Counts the occurrences of each word of the input file exactly, from
+     * the snapshot kept next to the output file in incremental mode.
+     *
+     * @param wordCounts
+     *            map from each word seen to its number of occurrences
+     * @param userInput
+     *            the name of the input file
+     * @param outputFile
+     *            the name of the output HTML file
+     * @param options
+     *            the options from the command line
+     * @param parallelism
+     *            the largest number of ranges to count at once
+     * @updates wordCounts
+     * @requires parallelism > 0  and  wordCounts = {}
+     */
+    private static void countFile(Map<String, Counter> wordCounts,
+            String userInput, String outputFile, Options options,
+            int parallelism) {
+        if (options.incremental) {
+            getList(wordCounts, userInput, parallelism, options.tokenizer,
+                    outputFile + SNAPSHOT_SUFFIX);
+        } else {
+            getList(wordCounts, userInput, parallelism, options.tokenizer);
+        }
+    }
 
-        // Generate the HTML header and process the file content
-        outputHeader(fileOut, userInput);
-        getList(wordList, wordOccurrences, fileData);
-        outputWordAndCount(wordList, wordOccurrences, fileOut);
-        outputFooter(fileOut);
+    /**
+     * Generates an HTML file with the exact word counts of {@code source}:
+     * every word in alphabetical order, or in {@code Mode.TOP} the most
+     * frequent words by decreasing count.
+     *
+     * @param wordCounts
+     *            map from each word to its number of occurrences
+     * @param source
+     *            the name of what was counted, for the title
+     * @param outputFile
+     *            the name of the output HTML file
+     * @param options
+     *            the options from the command line
+     * @requires options.mode = ALL  or  options.mode = TOP
+     */
+    private static void outputCounts(Map<String, Counter> wordCounts,
+            String source, String outputFile, Options options) {
+        String title;
+        Map<String, Counter> counts;
+        String[] words;
+        if (options.mode == Mode.ALL) {
+            // Same order as StringComparator
+            title = "Words Counted in " + source;
+            counts = wordCounts;
+            words = wordsOf(wordCounts);
+            StringSort.sort(words, String::toLowerCase, options.sortEngine);
+        } else {
+            title = "Top " + options.k + " Words in " + source;
+            counts = new Map1L<>();
+            selectTopWords(wordCounts, options.k, counts);
+            words = wordsOf(counts);
+            Arrays.sort(words, byDecreasingCount(counts));
+        }
+        outputTable(outputFile, title, words, counts, options.pageSize);
+    }
+
+    /**
+     * Returns the index of the first wildcard of the glob {@code input}, or
+     * its length if it has none.
+     *
+     * @param input
+     *            a path or a glob
+     * @return the index of the first wildcard
+     */
+    private static int firstWildcard(String input) {
+        int wildcard = 0;
+        while (wildcard < input.length()
+                && GLOB_WILDCARDS.indexOf(input.charAt(wildcard)) < 0) {
+            wildcard++;
+        }
+        return wildcard;
+    }
 
-        // Close the file streams
-        fileOut.close();
-        fileData.close();
+    /**
+     * Returns the directory searched for the files named by {@code input}:
+     * {@code input} itself if it is a directory, the directory holding it if
+     * it is a regular file, otherwise the part of the glob {@code input} up
+     * to the last separator before its first wildcard.
+     *
+     * @param input
+     *            a directory, a file or a glob
+     * @return the directory to search
+     */
+    static Path batchBase(String input) {
+        Path base = Paths.get(input);
+        if (Files.isRegularFile(base)) {
+            base = base.getParent();
+            if (base == null) {
+                base = Paths.get("");
+            }
+        } else if (!Files.isDirectory(base)) {
+            int wildcard = firstWildcard(input);
+            int separator = Math.max(input.lastIndexOf('/', wildcard),
+                    input.lastIndexOf(File.separatorChar, wildcard));
+            base = Paths.get(input.substring(0, separator + 1));
+        }
+        return base;
+    }
+
+    /**
+     * Returns the regular files named by {@code input}, in name order:
+     * {@code input} itself if it is a regular file, the files directly
+     * inside it if it is a directory, otherwise the files matching it as a
+     * glob such as {@code data/*.txt} or {@code books/**.txt}, found under
+     * {@code batchBase(input)}. Only a glob with a wildcard is searched for,
+     * so a path naming nothing does not walk any directory.
+     *
+     * @param input
+     *            a directory, a file or a glob
+     * @return the matching files
+     * @throws IOException
+     *             if a directory cannot be listed, or if no file matches
+     *             {@code input}
+     * @ensures batchFiles /= <>
+     */
+    static List<Path> batchFiles(String input) throws IOException {
+        Path path = Paths.get(input);
+        List<Path> result;
+        if (Files.isRegularFile(path)) {
+            result = new ArrayList<>();
+            result.add(path);
+        } else {
+            Stream<Path> candidates = Stream.empty();
+            if (Files.isDirectory(path)) {
+                candidates = Files.list(path);
+            } else if (firstWildcard(input) < input.length()
+                    && Files.isDirectory(batchBase(input))) {
+                PathMatcher matcher = FileSystems.getDefault()
+                        .getPathMatcher("glob:" + input);
+                candidates = Files.walk(batchBase(input))
+                        .filter(matcher::matches);
+            }
+            try (Stream<Path> files = candidates) {
+                result = files.filter(Files::isRegularFile).sorted()
+                        .collect(Collectors.toList());
+            }
+        }
+        if (result.isEmpty()) {
+            throw new NoSuchFileException(input, null, "no input files");
+        }
+        return result;
+    }
+
+    /**
+     * Returns the name of the output file, in {@code outputFolder}, for the
+     * input file {@code file}: its path relative to the directory searched,
+     * with {@code ".html"} appended, so that the output folder mirrors the
+     * directories of the input files.
+     *
+     * @param outputFolder
+     *            the output folder
+     * @param base
+     *            the directory searched for the input files
+     * @param file
+     *            the input file
+     * @return the name of the output file
+     * @requires file is under base
+     */
+    static String batchOutputFile(String outputFolder, Path base, Path file) {
+        return Paths.get(outputFolder)
+                .resolve(base.relativize(file).toString() + ".html")
+                .toString();
+    }
+
+    /**
+     * Returns the names of the output files, in {@code outputFolder}, of the
+     * input files {@code files}, in the same order, after checking that no
+     * two of them clash: no output file may be {@code MERGED_OUTPUT}, a
+     * directory holding another output file, or, if {@code paged}, one of
+     * the pages of another output file.
+     *
+     * @param outputFolder
+     *            the output folder
+     * @param base
+     *            the directory searched for the input files
+     * @param files
+     *            the input files
+     * @param paged
+     *            whether the tables are split into pages
+     * @return the names of the output files
+     * @throws FileAlreadyExistsException
+     *             if two output files clash
+     * @requires every file of files is under base
+     */
+    static List<String> batchOutputFiles(String outputFolder, Path base,
+            List<Path> files, boolean paged)
+            throws FileAlreadyExistsException {
+        Path merged = Paths.get(outputFolder, MERGED_OUTPUT);
+        HashSet<Path> taken = new HashSet<>();
+        taken.add(merged);
+        List<String> result = new ArrayList<>();
+        for (Path file : files) {
+            String outputFile = batchOutputFile(outputFolder, base, file);
+            if (!taken.add(Paths.get(outputFile))) {
+                throw new FileAlreadyExistsException(outputFile,
+                        file.toString(), "output file of another input");
+            }
+            result.add(outputFile);
+        }
+        for (int i = 0; i < files.size(); i++) {
+            Path outputFile = Paths.get(result.get(i));
+            String name = outputFile.getFileName().toString();
+            Path pagedFile = outputFile.resolveSibling(
+                    name.substring(0, Math.max(0, name.lastIndexOf('-')))
+                            + ".html");
+            if (paged && name.matches(".*-[1-9][0-9]*\\.html")
+                    && taken.contains(pagedFile)) {
+                throw new FileAlreadyExistsException(outputFile.toString(),
+                        files.get(i).toString(), "page of another output file");
+            }
+            Path parent = outputFile.getParent();
+            while (parent != null && !parent.equals(merged.getParent())) {
+                if (taken.contains(parent)) {
+                    throw new FileAlreadyExistsException(parent.toString(),
+                            files.get(i).toString(),
+                            "output directory of another input");
+                }
+                parent = parent.getParent();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Counts the words of every file named by {@code options.batchInput} and
+     * generates, in the folder {@code options.batchOutput}, one HTML file per
+     * input file, named by {@code batchOutputFiles}, and {@code MERGED_OUTPUT}
+     * with the counts of all the files together. Files are counted
+     * concurrently on a fixed pool of {@code options.parallelism} threads,
+     * whose queue holds only a few files so that no more than a bounded
+     * number of maps are alive at once; each thread reuses its read buffer
+     * and word table from one file to the next.
+     *
+     * @param options
+     *            the options from the command line
+     * @return the number of input files
+     * @throws IOException
+     *             if the input files cannot be listed, no file matches, two
+     *             output files clash, or the output folders cannot be
+     *             created
+     * @requires options.mode = ALL  or  options.mode = TOP
+     */
+    static int processBatch(Options options) throws IOException {
+        List<Path> files = batchFiles(options.batchInput);
+        Path base = batchBase(options.batchInput);
+        List<String> outputFiles = batchOutputFiles(options.batchOutput, base,
+                files, options.pageSize > 0);
+        Files.createDirectories(Paths.get(options.batchOutput));
+
+        // Give each file a share of the threads if there are few files
+        int threads = Math.max(1, options.parallelism);
+        int perFile = Math.max(1, threads / Math.max(1, files.size()));
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 0,
+                TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(threads),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        Map<String, Counter> merged = new Map1L<>();
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < files.size(); i++) {
+                Path file = files.get(i);
+                String outputFile = outputFiles.get(i);
+                Files.createDirectories(Paths.get(outputFile).getParent());
+                results.add(pool.submit(() -> {
+                    Map<String, Counter> wordCounts = new Map1L<>();
+                    countFile(wordCounts, file.toString(), outputFile,
+                            options, perFile);
+                    outputCounts(wordCounts, file.toString(), outputFile,
+                            options);
+                    synchronized (merged) {
+                        mergeCounts(merged, wordCounts);
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } finally {
+            pool.shutdown();
+        }
+        outputCounts(merged, options.batchInput,
+                Paths.get(options.batchOutput, MERGED_OUTPUT).toString(),
+                options);
+        return files.size();
+    }
+
+    /**
+     * Reads the options in {@code args} into {@code options}.
+     *
+     * @param args
+     *            the command line arguments
+     * @param options
+     *            the options
+     * @return whether {@code args} were all valid
+     * @updates options
+     */
+    static boolean parseOptions(String[] args, Options options) {
+        final String number = "[1-9][0-9]{0,8}";
+        boolean valid = true;
+        int i = 0;
+        while (valid && i < args.length) {
+            boolean hasNumber = i + 1 < args.length
+                    && args[i + 1].matches(number);
+            switch (args[i]) {
+                case "--incremental":
+                    options.incremental = true;
+                    break;
+                case "--unicode":
+                    options.tokenizer = options.tokenizer
+                            .withUnicodeSeparators();
+                    break;
+                case "--fold-case":
+                    options.tokenizer = options.tokenizer.withCaseFolding();
+                    break;
+                case "--batch":
+                    valid = i + 2 < args.length;
+                    if (valid) {
+                        options.batchInput = args[i + 1];
+                        options.batchOutput = args[i + 2];
+                        i += 2;
+                    }
+                    break;
+                case "--page-size":
+                    valid = hasNumber;
+                    if (valid) {
+                        options.pageSize = Integer.parseInt(args[i + 1]);
+                        i++;
+                    }
+                    break;
+                case "--sort":
+                    valid = i + 1 < args.length;
+                    if (valid) {
+                        try {
+                            options.sortEngine = StringSort.Engine
+                                    .valueOf(args[i + 1].toUpperCase());
+                        } catch (IllegalArgumentException e) {
+                            valid = false;
+                        }
+                        i++;
+                    }
+                    break;
+                case "--top":
+                case "--space-saving":
+                case "--sketch":
+                    valid = hasNumber && options.mode == Mode.ALL;
+                    if (valid) {
+                        if (args[i].equals("--top")) {
+                            options.mode = Mode.TOP;
+                        } else if (args[i].equals("--space-saving")) {
+                            options.mode = Mode.SPACE_SAVING;
+                        } else {
+                            options.mode = Mode.SKETCH;
+                        }
+                        options.k = Integer.parseInt(args[i + 1]);
+                        i++;
+                    }
+                    break;
+                default:
+                    valid = false;
+                    break;
+            }
+            i++;
+        }
+        if (!options.batchInput.isEmpty()) {
+            // Approximate modes do not produce counts that can be merged
+            valid = valid && (options.mode == Mode.ALL
+                    || options.mode == Mode.TOP);
+        }
+        return valid;
     }
 
     /**
      * Main method.
      *
      * @param args
-     *            command line arguments; unused
+     *            command line arguments: optionally {@code --top K},
+     *            {@code --space-saving K} or {@code --sketch K} to output only
+     *            the K most frequent words, and {@code --incremental} to count
+     *            only what was appended to the input since the previous
+     *            run, and {@code --page-size N} to split the table into
+     *            pages of N rows and an index page, and
+     *            {@code --sort ENGINE} to choose how words are sorted, and
+     *            {@code --batch INPUT OUTPUT_FOLDER} to count, without
+     *            prompting, the file INPUT or every file in the directory or
+     *            glob INPUT into its own page and {@code merged.html} in
+     *            OUTPUT_FOLDER,
+     *            and {@code --unicode} to also split words at any Unicode
+     *            punctuation, symbol or space, and {@code --fold-case} to
+     *            count words differing only in case as one word
      */
     public static void main(String[] args) {
         // Create streams for user input and output
         SimpleWriter out = new SimpleWriter1L();
         SimpleReader in = new SimpleReader1L();
 
+        // Read the options from the command line
+        Options options = new Options();
+        if (!parseOptions(args, options)) {
+            out.println("Usage: WordCounter [--top K | --space-saving K"
+                    + " | --sketch K] [--incremental] [--page-size N]"
+                    + " [--sort comparator|radix|parallel_merge|auto]"
+                    + " [--batch INPUT OUTPUT_FOLDER] [--unicode]"
+                    + " [--fold-case]");
+            out.close();
+            in.close();
+            return;
+        }
+
+        // In batch mode, count the files without prompting
+        if (!options.batchInput.isEmpty()) {
+            try {
+                int files = processBatch(options);
+                out.println("Counted " + files + " files into "
+                        + options.batchOutput);
+            } catch (IOException e) {
+                out.println("Error: " + e.getMessage());
+            }
+            out.close();
+            in.close();
+            return;
+        }
+
         // Prompt the user for the input file name and output file name
         out.print("Enter the name of the input file: ");
         String userInput = in.nextLine();
@@ -266,7 +1965,7 @@ public final class WordCounter {
         String outputFile = in.nextLine();
 
         // Process the file and generate the HTML output
-        processFile(userInput, outputFile);
+        processFile(userInput, outputFile, options);
 
         // Notify the user of success and close the streams
         out.println("Success!");
@@ -0,0 +1,132 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test class for {@link CountMinSketch}. Checks that estimates never fall
+ * below the true frequencies, including in a sketch small enough for most
+ * items to share counters.
+ */
+public class CountMinSketchTest {
+
+    /**
+     * Seed for the random streams, so every run uses the same streams.
+     */
+    private static final long SEED = 20240611L;
+
+    /**
+     * Adds a skewed random stream of {@code length} items drawn from
+     * {@code distinct} integers to {@code sketch}, and returns the true
+     * frequency of each item.
+     *
+     * @param sketch
+     *            the sketch
+     * @param length
+     *            number of items in the stream
+     * @param distinct
+     *            number of distinct items
+     * @return map from each item added to its number of occurrences
+     * @updates sketch
+     */
+    private static HashMap<Integer, Long> addStream(
+            CountMinSketch<Integer> sketch, int length, int distinct) {
+        Random rnd = new Random(SEED);
+        HashMap<Integer, Long> truth = new HashMap<>();
+        for (int i = 0; i < length; i++) {
+            // The square of a uniform number favors the small items
+            double u = rnd.nextDouble();
+            int item = (int) (u * u * distinct);
+            sketch.add(item);
+            truth.merge(item, 1L, Long::sum);
+        }
+        return truth;
+    }
+
+    /**
+     * Tests that an empty sketch estimates 0.
+     */
+    @Test
+    public void testEmpty() {
+        CountMinSketch<String> sketch = new CountMinSketch<>(16, 2);
+        assertEquals("An empty sketch should estimate 0.", 0,
+                sketch.estimate("word"));
+        assertEquals("An empty sketch should have no items.", 0,
+                sketch.total());
+    }
+
+    /**
+     * Tests that no estimate is below the true frequency when many items
+     * share counters.
+     */
+    @Test
+    public void testNeverUnderestimates() {
+        final int length = 20000;
+        final int distinct = 2000;
+        CountMinSketch<Integer> sketch = new CountMinSketch<>(64, 3);
+        HashMap<Integer, Long> truth = addStream(sketch, length, distinct);
+        for (java.util.Map.Entry<Integer, Long> e : truth.entrySet()) {
+            long estimate = sketch.estimate(e.getKey());
+            assertTrue("The estimate of " + e.getKey() + " should be at least "
+                    + e.getValue() + ", not " + estimate + ".",
+                    estimate >= e.getValue());
+        }
+        assertEquals("The total should be the length of the stream.", length,
+                sketch.total());
+    }
+
+    /**
+     * Tests that an item counted alone is estimated exactly, and that
+     * weighted and single additions add up.
+     */
+    @Test
+    public void testWeightedAdd() {
+        final long weight = 5;
+        CountMinSketch<String> sketch = new CountMinSketch<>(1024, 4);
+        sketch.add("word", weight);
+        sketch.add("word");
+        assertEquals("A lone item should be estimated exactly.", weight + 1,
+                sketch.estimate("word"));
+        assertEquals("The total should count the weights.", weight + 1,
+                sketch.total());
+    }
+
+    /**
+     * Tests the dimensions of sketches, and that estimates stay within the
+     * requested error on a stream.
+     */
+    @Test
+    public void testErrorBounds() {
+        final int requested = 100;
+        CountMinSketch<Integer> rounded = new CountMinSketch<>(requested, 2);
+        assertEquals("The width should be rounded up to a power of 2.",
+                Integer.highestOneBit(requested) * 2, rounded.width());
+
+        final double epsilon = 0.01;
+        final double delta = 0.001;
+        CountMinSketch<Integer> sketch = CountMinSketch
+                .withErrorBounds(epsilon, delta);
+        assertTrue("The width should be at least e / epsilon.",
+                sketch.width() >= Math.E / epsilon);
+        assertEquals("The depth should be ln(1 / delta), rounded up.",
+                (int) Math.ceil(Math.log(1 / delta)), sketch.depth());
+
+        final int length = 50000;
+        final int distinct = 5000;
+        HashMap<Integer, Long> truth = addStream(sketch, length, distinct);
+        int over = 0;
+        for (java.util.Map.Entry<Integer, Long> e : truth.entrySet()) {
+            if (sketch.estimate(e.getKey()) - e.getValue() > epsilon
+                    * length) {
+                over++;
+            }
+        }
+        assertTrue("At most a fraction delta of the estimates should exceed"
+                + " the bound, not " + over + ".",
+                over <= Math.max(1, delta * truth.size()));
+    }
+
+}
@@ -0,0 +1,121 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test class for {@link SpaceSaving}. Checks the guarantees of the summary:
+ * every item occurring more than {@code total / capacity} times is monitored,
+ * and {@code [count - error, count]} holds the true frequency of every
+ * monitored item.
+ */
+public class SpaceSavingTest {
+
+    /**
+     * Seed for the random streams, so every run uses the same streams.
+     */
+    private static final long SEED = 20240612L;
+
+    /**
+     * Adds a skewed random stream of {@code length} items drawn from
+     * {@code distinct} integers to {@code summary}, and returns the true
+     * frequency of each item.
+     *
+     * @param summary
+     *            the summary
+     * @param length
+     *            number of items in the stream
+     * @param distinct
+     *            number of distinct items
+     * @return map from each item added to its number of occurrences
+     * @updates summary
+     */
+    private static HashMap<Integer, Long> addStream(
+            SpaceSaving<Integer> summary, int length, int distinct) {
+        Random rnd = new Random(SEED);
+        HashMap<Integer, Long> truth = new HashMap<>();
+        for (int i = 0; i < length; i++) {
+            // The cube of a uniform number strongly favors the small items
+            double u = rnd.nextDouble();
+            int item = (int) (u * u * u * distinct);
+            summary.add(item);
+            truth.merge(item, 1L, Long::sum);
+        }
+        return truth;
+    }
+
+    /**
+     * Tests that counts are exact while there are free counters.
+     */
+    @Test
+    public void testExactWithinCapacity() {
+        SpaceSaving<String> summary = new SpaceSaving<>(3);
+        summary.add("a");
+        summary.add("b");
+        summary.add("a");
+        assertEquals("The count of a should be exact.", 2, summary.count("a"));
+        assertEquals("The count of b should be exact.", 1, summary.count("b"));
+        assertEquals("There should be no error.", 0, summary.error("a"));
+        assertEquals("An unseen item should have count 0.", 0,
+                summary.count("c"));
+        assertEquals("Both items should be monitored.", 2,
+                summary.items().size());
+    }
+
+    /**
+     * Tests that the least counted item is replaced, and that the new item
+     * inherits its count as error.
+     */
+    @Test
+    public void testReplacement() {
+        SpaceSaving<String> summary = new SpaceSaving<>(2);
+        summary.add("a");
+        summary.add("a");
+        summary.add("b");
+        summary.add("c");
+        assertEquals("b should have been replaced.", 0, summary.count("b"));
+        assertEquals("c should inherit the count of b.", 2,
+                summary.count("c"));
+        assertEquals("c should inherit that count as error.", 1,
+                summary.error("c"));
+        assertEquals("a should be kept.", 2, summary.count("a"));
+    }
+
+    /**
+     * Tests that frequent items are kept and that {@code count - error} and
+     * {@code count} bound the true frequency of every monitored item.
+     */
+    @Test
+    public void testGuarantees() {
+        final int capacity = 20;
+        final int length = 50000;
+        final int distinct = 3000;
+        SpaceSaving<Integer> summary = new SpaceSaving<>(capacity);
+        HashMap<Integer, Long> truth = addStream(summary, length, distinct);
+        List<Integer> items = summary.items();
+        assertTrue("At most capacity items should be monitored.",
+                items.size() <= summary.capacity());
+        assertEquals("The total should be the length of the stream.", length,
+                summary.total());
+
+        for (java.util.Map.Entry<Integer, Long> e : truth.entrySet()) {
+            if (e.getValue() > length / capacity) {
+                assertTrue("Frequent item " + e.getKey() + " should be kept.",
+                        items.contains(e.getKey()));
+            }
+        }
+        for (Integer item : items) {
+            long count = summary.count(item);
+            long exact = truth.get(item);
+            assertTrue("count - error should not exceed the frequency of "
+                    + item + ".", count - summary.error(item) <= exact);
+            assertTrue("count should not be below the frequency of " + item
+                    + ".", exact <= count);
+        }
+    }
+
+}
@@ -0,0 +1,153 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * Test class for {@link Tokenizer}. Checks the compiled separator tables
+ * against the configuration, on characters and on UTF-8 bytes.
+ */
+public class TokenizerTest {
+
+    /**
+     * Returns {@code s} encoded in UTF-8 in a buffer.
+     *
+     * @param s
+     *            the text
+     * @return the buffer
+     */
+    private static ByteBuffer utf8(String s) {
+        return ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Tests that custom separators, and only they, are separators.
+     */
+    @Test
+    public void testCustomSeparators() {
+        Tokenizer tokenizer = Tokenizer.of(" ,\u2014");
+        assertTrue("Space should be a separator.", tokenizer.isSeparator(' '));
+        assertTrue("The dash should be a separator.",
+                tokenizer.isSeparator('\u2014'));
+        assertFalse("A letter should not be a separator.",
+                tokenizer.isSeparator('a'));
+        assertFalse("Other punctuation should not be a separator.",
+                tokenizer.isSeparator('.'));
+    }
+
+    /**
+     * Tests that every character of a chosen category is a separator,
+     * including characters outside the Basic Multilingual Plane.
+     */
+    @Test
+    public void testCategories() {
+        Tokenizer tokenizer = Tokenizer.of("")
+                .withCategories(Character.OTHER_SYMBOL);
+        final int emoji = 0x1F600;
+        assertTrue("An emoji should be a separator.",
+                tokenizer.isSeparator(emoji));
+        assertTrue("The copyright sign should be a separator.",
+                tokenizer.isSeparator('\u00a9'));
+        assertFalse("A space should not be a separator.",
+                tokenizer.isSeparator(' '));
+    }
+
+    /**
+     * Tests the length of separators found in UTF-8 bytes.
+     */
+    @Test
+    public void testSeparatorLength() {
+        Tokenizer tokenizer = Tokenizer.of(" ").withUnicodeSeparators();
+        ByteBuffer buffer = utf8("a \u00ab\u2014\ud83d\ude00\u00e9");
+        final int[] expected = { 0, 1, 2, 0, 3, 0, 0, 4, 0, 0, 0, 0, 0 };
+        for (int i = 0; i < buffer.limit(); i++) {
+            assertEquals("Length of the separator at byte " + i, expected[i],
+                    tokenizer.separatorLength(buffer, i, buffer.limit()));
+        }
+    }
+
+    /**
+     * Tests that malformed and truncated sequences are never separators.
+     */
+    @Test
+    public void testSeparatorLengthMalformed() {
+        Tokenizer tokenizer = Tokenizer.of(" ").withUnicodeSeparators();
+        ByteBuffer dash = utf8("\u2014");
+        assertEquals("A truncated dash should not be a separator.", 0,
+                tokenizer.separatorLength(dash, 0, 2));
+        ByteBuffer overlong = ByteBuffer
+                .wrap(new byte[] { (byte) 0xC0, (byte) 0xA0 });
+        assertEquals("An overlong space should not be a separator.", 0,
+                tokenizer.separatorLength(overlong, 0, 2));
+        ByteBuffer continuation = ByteBuffer
+                .wrap(new byte[] { (byte) 0x80, (byte) 0x20 });
+        assertEquals("A lone continuation byte should not be a separator.", 0,
+                tokenizer.separatorLength(continuation, 0, 2));
+    }
+
+    /**
+     * Tests that one-byte separators are ASCII only.
+     */
+    @Test
+    public void testIsSeparatorByte() {
+        Tokenizer tokenizer = Tokenizer.of(" \u00a0");
+        assertTrue("Space should be a one-byte separator.",
+                tokenizer.isSeparatorByte((byte) ' '));
+        assertFalse("The lead byte of a non-breaking space should not be.",
+                tokenizer.isSeparatorByte((byte) 0xC2));
+        assertFalse("Its second byte should not be either.",
+                tokenizer.isSeparatorByte((byte) 0xA0));
+    }
+
+    /**
+     * Tests the end of words and separator strings in text.
+     */
+    @Test
+    public void testTokenEnd() {
+        Tokenizer tokenizer = Tokenizer.of(" ");
+        String text = "ab\ud83d\ude00c  d";
+        final int wordEnd = 5;
+        final int separatorEnd = 7;
+        assertEquals("The word should include the emoji.", wordEnd,
+                tokenizer.tokenEnd(text, 0));
+        assertEquals("The separator string should end at the next word.",
+                separatorEnd, tokenizer.tokenEnd(text, wordEnd));
+    }
+
+    /**
+     * Tests case folding.
+     */
+    @Test
+    public void testNormalize() {
+        Tokenizer tokenizer = Tokenizer.of(" ");
+        assertEquals("Without folding words should be unchanged.", "Word",
+                tokenizer.normalize("Word"));
+        Tokenizer folding = tokenizer.withCaseFolding();
+        assertTrue("The folding tokenizer should fold.", folding.foldsCase());
+        String capitalized = "\u03a3\u03af\u03c3\u03c5\u03c6\u03bf\u03c2";
+        String lower = "\u03c3\u03af\u03c3\u03c5\u03c6\u03bf\u03c3";
+        assertEquals("Words differing in case should fold to the same word.",
+                folding.normalize(capitalized), folding.normalize(lower));
+        assertEquals("Folding should lower the case.", "word",
+                folding.normalize("WoRD"));
+    }
+
+    /**
+     * Tests that equal configurations give equal tokenizers.
+     */
+    @Test
+    public void testEquals() {
+        Tokenizer t1 = Tokenizer.of(" ,").withUnicodeSeparators();
+        Tokenizer t2 = Tokenizer.of(" ,").withUnicodeSeparators();
+        assertEquals("Equal configurations should be equal.", t1, t2);
+        assertEquals("Equal tokenizers should have equal hash codes.",
+                t1.hashCode(), t2.hashCode());
+        assertFalse("Folding should make a difference.",
+                t1.equals(t1.withCaseFolding()));
+    }
+
+}
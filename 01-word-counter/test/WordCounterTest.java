@@ -0,0 +1,652 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * Test class for the counting of {@link WordCounter}. The counts found on the
+ * UTF-8 bytes of the input, sequentially, in parallel ranges, or
+ * incrementally from a snapshot, are checked against counts found by
+ * splitting the decoded text with {@code Tokenizer.tokenEnd}, and the words
+ * reported by the top-K modes against the exact counts; paged tables are
+ * checked for their pages and the links between them, and batch mode for
+ * the files it reads and the names of the files it writes.
+ */
+public class WordCounterTest {
+
+    /**
+     * Seed for the random input, so every run uses the same input.
+     */
+    private static final long SEED = 20240613L;
+
+    /**
+     * Size of the input of the parallel tests, large enough to be split into
+     * several ranges.
+     */
+    private static final int LARGE_INPUT_SIZE = 13 << 20;
+
+    /**
+     * Separators of the tokenizers of the tests.
+     */
+    private static final String SEPARATORS = " ,.\r\n";
+
+    /**
+     * Number of distinct words of the skewed input of the top-K tests.
+     */
+    private static final int SKEWED_WORDS = 300;
+
+    /**
+     * Number of occurrences of the most frequent word of the skewed input.
+     */
+    private static final int SKEWED_TOTAL = 3000;
+
+    /**
+     * Number of words reported by the top-K tests.
+     */
+    private static final int K = 5;
+
+    /**
+     * Folder of the input and snapshot files, deleted after each test.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Returns random text of about {@code size} characters: words from a
+     * small vocabulary mixing cases, accented and CJK letters, between ASCII
+     * separators and em dashes, which only a Unicode tokenizer splits at.
+     *
+     * @param size
+     *            the number of characters
+     * @param rnd
+     *            source of randomness
+     * @return the text
+     */
+    private static String randomText(int size, Random rnd) {
+        final String letters = "aAbBcdeE\u00E9\u00C9\u4E2D\u6587";
+        final String[] separators = { " ", " ", ", ", ".\n", "\r\n",
+            "\u2014", " \u2014 " };
+        final int vocabulary = 500;
+        final int maxLength = 8;
+        String[] words = new String[vocabulary];
+        for (int i = 0; i < vocabulary; i++) {
+            StringBuilder word = new StringBuilder();
+            int length = 1 + rnd.nextInt(maxLength);
+            for (int j = 0; j < length; j++) {
+                word.append(letters.charAt(rnd.nextInt(letters.length())));
+            }
+            words[i] = word.toString();
+        }
+        StringBuilder text = new StringBuilder(size + maxLength);
+        while (text.length() < size) {
+            text.append(words[rnd.nextInt(vocabulary)]);
+            text.append(separators[rnd.nextInt(separators.length)]);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Returns the number of occurrences of each word of {@code text}, as
+     * split and normalized by {@code tokenizer}.
+     *
+     * @param text
+     *            the text
+     * @param tokenizer
+     *            how the text is split into words
+     * @return map from each word to its number of occurrences
+     */
+    private static HashMap<String, Long> expectedCounts(String text,
+            Tokenizer tokenizer) {
+        HashMap<String, Long> counts = new HashMap<>();
+        int position = 0;
+        while (position < text.length()) {
+            int end = tokenizer.tokenEnd(text, position);
+            if (!tokenizer.isSeparator(text.codePointAt(position))) {
+                counts.merge(
+                        tokenizer.normalize(text.substring(position, end)),
+                        1L, Long::sum);
+            }
+            position = end;
+        }
+        return counts;
+    }
+
+    /**
+     * Returns the counts of {@code wordCounts} in a {@code HashMap}, which
+     * can be compared with {@code equals}.
+     *
+     * @param wordCounts
+     *            map from each word to its counter
+     * @return map from each word to its number of occurrences
+     */
+    private static HashMap<String, Long> countsOf(
+            Map<String, WordCounter.Counter> wordCounts) {
+        HashMap<String, Long> counts = new HashMap<>();
+        for (Map.Pair<String, WordCounter.Counter> entry : wordCounts) {
+            counts.put(entry.key(), entry.value().count());
+        }
+        return counts;
+    }
+
+    /**
+     * Returns text in which word {@code "w" + i} occurs
+     * {@code SKEWED_TOTAL / (i + 1)} times, for {@code i} in
+     * {@code [0, SKEWED_WORDS)}, in random order.
+     *
+     * @param rnd
+     *            source of randomness
+     * @return the text
+     */
+    private static String skewedText(Random rnd) {
+        List<String> occurrences = new ArrayList<>();
+        for (int i = 0; i < SKEWED_WORDS; i++) {
+            for (int n = 0; n < SKEWED_TOTAL / (i + 1); n++) {
+                occurrences.add("w" + i);
+            }
+        }
+        Collections.shuffle(occurrences, rnd);
+        return String.join(" ", occurrences) + "\n";
+    }
+
+    /**
+     * Creates the file {@code name}, and its directories, in the temporary
+     * folder with contents {@code text}.
+     *
+     * @param name
+     *            the name of the file, relative to the temporary folder
+     * @param text
+     *            the contents of the file
+     * @return the name of the file
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    private String batchFile(String name, String text) throws IOException {
+        Path file = this.folder.getRoot().toPath().resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+        return file.toString();
+    }
+
+    /**
+     * Counts in batch mode with the command line options {@code args}.
+     *
+     * @param args
+     *            the command line options
+     * @return the number of input files
+     * @throws IOException
+     *             if batch mode fails
+     */
+    private static int batch(String... args) throws IOException {
+        WordCounter.Options options = new WordCounter.Options();
+        assertTrue(WordCounter.parseOptions(args, options));
+        return WordCounter.processBatch(options);
+    }
+
+    /**
+     * Returns the contents of {@code fileName}.
+     *
+     * @param fileName
+     *            the name of the file
+     * @return the contents of the file, decoded as UTF-8
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    private static String contents(String fileName) throws IOException {
+        return new String(Files.readAllBytes(new File(fileName).toPath()),
+                StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the counts of the words of {@code fileName}, counted in up to
+     * {@code parallelism} ranges.
+     *
+     * @param fileName
+     *            the name of the input file
+     * @param parallelism
+     *            the largest number of ranges to count at once
+     * @param tokenizer
+     *            how the input is split into words
+     * @return map from each word to its number of occurrences
+     */
+    private static HashMap<String, Long> count(String fileName,
+            int parallelism, Tokenizer tokenizer) {
+        Map<String, WordCounter.Counter> wordCounts = new Map1L<>();
+        WordCounter.getList(wordCounts, fileName, parallelism, tokenizer);
+        return countsOf(wordCounts);
+    }
+
+    /**
+     * Returns the counts of the words of {@code fileName}, counted from the
+     * snapshot {@code snapshotFile}, which is then updated.
+     *
+     * @param fileName
+     *            the name of the input file
+     * @param tokenizer
+     *            how the input is split into words
+     * @param snapshotFile
+     *            the name of the snapshot file
+     * @return map from each word to its number of occurrences
+     */
+    private static HashMap<String, Long> countIncrementally(String fileName,
+            Tokenizer tokenizer, String snapshotFile) {
+        Map<String, WordCounter.Counter> wordCounts = new Map1L<>();
+        WordCounter.getList(wordCounts, fileName, 1, tokenizer,
+                snapshotFile);
+        return countsOf(wordCounts);
+    }
+
+    /**
+     * Returns the name of a new file holding {@code text} in UTF-8.
+     *
+     * @param text
+     *            the contents of the file
+     * @return the name of the file
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    private String inputFile(String text) throws IOException {
+        File file = this.folder.newFile();
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        return file.getPath();
+    }
+
+    /**
+     * Appends {@code text} to the file {@code fileName}, in UTF-8.
+     *
+     * @param fileName
+     *            the name of the file
+     * @param text
+     *            the text to append
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    private static void append(String fileName, String text)
+            throws IOException {
+        Files.write(new File(fileName).toPath(),
+                text.getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Tests counting a small file, with and without Unicode separators and
+     * case folding.
+     *
+     * @throws IOException
+     *             if the input cannot be written
+     */
+    @Test
+    public void testSmallFile() throws IOException {
+        String text = "The cat\u2014the CAT, the\r\ncaf\u00E9 \u4E2D\u6587.";
+        String file = this.inputFile(text);
+        Tokenizer[] tokenizers = { Tokenizer.of(SEPARATORS),
+            Tokenizer.of(SEPARATORS).withUnicodeSeparators(),
+            Tokenizer.of(SEPARATORS).withUnicodeSeparators()
+                    .withCaseFolding() };
+        for (Tokenizer tokenizer : tokenizers) {
+            assertEquals("The counts with " + tokenizer + " should match.",
+                    expectedCounts(text, tokenizer),
+                    count(file, 1, tokenizer));
+        }
+    }
+
+    /**
+     * Tests that counting a large file in parallel ranges gives the counts of
+     * counting it in one range, including for words and multi-byte
+     * separators at the ends of the ranges.
+     *
+     * @throws IOException
+     *             if the input cannot be written
+     */
+    @Test
+    public void testParallelMatchesSequential() throws IOException {
+        final int parallelism = 3;
+        String text = randomText(LARGE_INPUT_SIZE, new Random(SEED));
+        String file = this.inputFile(text);
+        Tokenizer[] tokenizers = { Tokenizer.of(SEPARATORS),
+            Tokenizer.of(SEPARATORS).withUnicodeSeparators() };
+        for (Tokenizer tokenizer : tokenizers) {
+            HashMap<String, Long> sequential = count(file, 1, tokenizer);
+            assertEquals("The counts with " + tokenizer + " should match.",
+                    expectedCounts(text, tokenizer), sequential);
+            assertEquals("Parallel counts with " + tokenizer
+                    + " should match sequential counts.", sequential,
+                    count(file, parallelism, tokenizer));
+        }
+    }
+
+    /**
+     * Tests that counting from a snapshot after appending to the input,
+     * including in the middle of its last word, gives the counts of counting
+     * the whole input again.
+     *
+     * @throws IOException
+     *             if the input cannot be written
+     */
+    @Test
+    public void testIncrementalMatchesRecount() throws IOException {
+        Tokenizer tokenizer = Tokenizer.of(SEPARATORS)
+                .withUnicodeSeparators();
+        String snapshot = new File(this.folder.getRoot(), "out.html.counts")
+                .getPath();
+        Random rnd = new Random(SEED);
+        final int size = 100000;
+        String file = this.inputFile(randomText(size, rnd) + "unfini");
+        assertEquals("The first run should count everything.",
+                count(file, 1, tokenizer),
+                countIncrementally(file, tokenizer, snapshot));
+
+        append(file, "shed " + randomText(size, rnd) + "\u4E2D");
+        assertEquals("Counts after appending should match a recount.",
+                count(file, 1, tokenizer),
+                countIncrementally(file, tokenizer, snapshot));
+        assertEquals("Counts without changes should match a recount.",
+                count(file, 1, tokenizer),
+                countIncrementally(file, tokenizer, snapshot));
+    }
+
+    /**
+     * Tests that a snapshot is not reused for an input that was rewritten
+     * rather than appended to, or with a different tokenizer.
+     *
+     * @throws IOException
+     *             if the input cannot be written
+     */
+    @Test
+    public void testIncrementalDetectsChanges() throws IOException {
+        Tokenizer tokenizer = Tokenizer.of(SEPARATORS);
+        String snapshot = new File(this.folder.getRoot(), "out.html.counts")
+                .getPath();
+        String file = this.inputFile("one two three two\n");
+        countIncrementally(file, tokenizer, snapshot);
+
+        Files.write(new File(file).toPath(),
+                "six six seven six\n".getBytes(StandardCharsets.UTF_8));
+        assertEquals("A rewritten input should be counted again.",
+                count(file, 1, tokenizer),
+                countIncrementally(file, tokenizer, snapshot));
+
+        Tokenizer folding = tokenizer.withCaseFolding();
+        append(file, "Six SIX\n");
+        assertEquals("Another tokenizer should count everything again.",
+                count(file, 1, folding),
+                countIncrementally(file, folding, snapshot));
+
+        // "Aa" and "BB" have the same hash code
+        Tokenizer aa = Tokenizer.of("\nAa");
+        Tokenizer bb = Tokenizer.of("\nBB");
+        assertEquals(aa.hashCode(), bb.hashCode());
+        String other = this.inputFile("xAay BBz\n");
+        countIncrementally(other, aa, snapshot);
+        assertEquals("A tokenizer with the same hash code should count again.",
+                count(other, 1, bb), countIncrementally(other, bb, snapshot));
+    }
+
+    /**
+     * Tests that the exact top-K mode keeps the words with the highest
+     * counts, breaking ties alphabetically.
+     *
+     * @throws IOException
+     *             if the input cannot be written
+     */
+    @Test
+    public void testSelectTopWords() throws IOException {
+        Tokenizer tokenizer = Tokenizer.of(SEPARATORS);
+        String file = this.inputFile("b a c b a d e a\n");
+        Map<String, WordCounter.Counter> wordCounts = new Map1L<>();
+        WordCounter.getList(wordCounts, file, 1, tokenizer);
+        final int k = 3;
+        Map<String, WordCounter.Counter> top = new Map1L<>();
+        WordCounter.selectTopWords(wordCounts, k, top);
+        HashMap<String, Long> expected = new HashMap<>();
+        expected.put("a", 3L);
+        expected.put("b", 2L);
+        expected.put("c", 1L);
+        assertEquals("The top words should be a, b and c.", expected,
+                countsOf(top));
+
+        Map<String, WordCounter.Counter> all = new Map1L<>();
+        WordCounter.selectTopWords(wordCounts, wordCounts.size() + 1, all);
+        assertEquals("Asking for more words should report them all.",
+                countsOf(wordCounts), countsOf(all));
+    }
+
+    /**
+     * Tests that the Space-Saving and Count-Min Sketch modes report the most
+     * frequent words of a skewed input, with counts that are not below the
+     * exact ones.
+     *
+     * @throws IOException
+     *             if the input cannot be written
+     */
+    @Test
+    public void testApproximateTopWords() throws IOException {
+        Tokenizer tokenizer = Tokenizer.of(SEPARATORS);
+        String file = this.inputFile(skewedText(new Random(SEED)));
+        Map<String, WordCounter.Counter> wordCounts = new Map1L<>();
+        WordCounter.getList(wordCounts, file, 1, tokenizer);
+        HashMap<String, Long> exact = countsOf(wordCounts);
+        Map<String, WordCounter.Counter> exactTop = new Map1L<>();
+        WordCounter.selectTopWords(wordCounts, K, exactTop);
+
+        Map<String, WordCounter.Counter> spaceSaving = new Map1L<>();
+        WordCounter.spaceSavingTopWords(file, tokenizer, K, spaceSaving);
+        Map<String, WordCounter.Counter> sketch = new Map1L<>();
+        WordCounter.sketchTopWords(file, tokenizer, K, sketch);
+        for (Map<String, WordCounter.Counter> top : List.of(spaceSaving,
+                sketch)) {
+            HashMap<String, Long> reported = countsOf(top);
+            assertEquals("The words reported should be the exact top words.",
+                    countsOf(exactTop).keySet(), reported.keySet());
+            for (java.util.Map.Entry<String, Long> e : reported.entrySet()) {
+                assertTrue("The count of " + e.getKey()
+                        + " should not be below its exact count.",
+                        e.getValue() >= exact.get(e.getKey()));
+            }
+        }
+    }
+
+    /**
+     * Tests that the page number goes before the extension of the index
+     * page, or is followed by ".html" if it has none.
+     */
+    @Test
+    public void testPageFileName() {
+        assertEquals("out/result-2.html",
+                WordCounter.pageFileName("out/result.html", 2));
+        assertEquals("dir/out-1.html", WordCounter.pageFileName("dir/out", 1));
+        assertEquals("a.b/out-3.html",
+                WordCounter.pageFileName("a.b/out", 3));
+        assertEquals(".hidden-1.html",
+                WordCounter.pageFileName(".hidden", 1));
+        assertEquals("out.tar-4.gz", WordCounter.pageFileName("out.tar.gz", 4));
+    }
+
+    /**
+     * Tests that a table longer than the page size is split into linked
+     * pages listed by an index, and that a page size of 0 keeps one page.
+     *
+     * @throws IOException
+     *             if a file cannot be read or written
+     */
+    @Test
+    public void testOutputTablePages() throws IOException {
+        Tokenizer tokenizer = Tokenizer.of(SEPARATORS);
+        String[] words = { "a", "b", "c", "d", "e" };
+        Map<String, WordCounter.Counter> wordCounts = new Map1L<>();
+        WordCounter.getList(wordCounts, this.inputFile("e d c b a a\n"), 1,
+                tokenizer);
+        String index = new File(this.folder.getRoot(), "table.html")
+                .getPath();
+        final int pageSize = 2;
+        WordCounter.outputTable(index, "Words", words, wordCounts, pageSize);
+
+        String indexPage = contents(index);
+        assertTrue(indexPage.contains("<p>5 words</p>"));
+        assertTrue(indexPage.contains("<a href=\"table-1.html\">Page 1</a>"
+                + "</td><td>a &ndash; b</td>"));
+        assertTrue(indexPage.contains("<a href=\"table-3.html\">Page 3</a>"
+                + "</td><td>e &ndash; e</td>"));
+        assertFalse(new File(WordCounter.pageFileName(index, 4)).exists());
+
+        String first = contents(WordCounter.pageFileName(index, 1));
+        assertFalse(first.contains("Previous"));
+        assertTrue(first.contains("<a href=\"table.html\">Index</a>"));
+        assertTrue(first.contains("<a href=\"table-2.html\">Next</a>"));
+        assertTrue(first.contains("<tr><td>a</td><td>2</td></tr>"));
+        assertTrue(first.contains("<tr><td>b</td><td>1</td></tr>"));
+        assertFalse(first.contains("<td>c</td>"));
+
+        String middle = contents(WordCounter.pageFileName(index, 2));
+        assertTrue(middle.contains("<a href=\"table-1.html\">Previous</a>"));
+        assertTrue(middle.contains("<a href=\"table-3.html\">Next</a>"));
+        assertTrue(middle.contains("<tr><td>c</td><td>1</td></tr>"));
+
+        String last = contents(WordCounter.pageFileName(index, 3));
+        assertTrue(last.contains("<a href=\"table-2.html\">Previous</a>"));
+        assertFalse(last.contains("Next"));
+        assertTrue(last.contains("<tr><td>e</td><td>1</td></tr>"));
+
+        String single = new File(this.folder.getRoot(), "single.html")
+                .getPath();
+        WordCounter.outputTable(single, "Words", words, wordCounts, 0);
+        String page = contents(single);
+        assertFalse(page.contains("Index"));
+        for (String word : words) {
+            assertTrue(page.contains("<tr><td>" + word + "</td>"));
+        }
+        assertFalse(new File(WordCounter.pageFileName(single, 1)).exists());
+    }
+
+    /**
+     * Tests the directory searched for a directory, a file and globs.
+     *
+     * @throws IOException
+     *             if a file cannot be written
+     */
+    @Test
+    public void testBatchBase() throws IOException {
+        String a = this.batchFile("in/a.txt", "a\n");
+        Path root = this.folder.getRoot().toPath();
+        assertEquals(root.resolve("in"),
+                WordCounter.batchBase(root.resolve("in").toString()));
+        assertEquals(root.resolve("in"), WordCounter.batchBase(a));
+        assertEquals(root.resolve("in/sub"),
+                WordCounter.batchBase(root + "/in/sub/*.txt"));
+        assertEquals(root.resolve("in"),
+                WordCounter.batchBase(root + "/in/**.txt"));
+        assertEquals(Paths.get(""), WordCounter.batchBase("*.txt"));
+    }
+
+    /**
+     * Tests the files named by a directory, a file and globs, and that
+     * naming no file fails.
+     *
+     * @throws IOException
+     *             if a file cannot be written
+     */
+    @Test
+    public void testBatchFiles() throws IOException {
+        Path a = Paths.get(this.batchFile("in/a.txt", "a\n"));
+        Path b = Paths.get(this.batchFile("in/b.txt", "b\n"));
+        Path c = Paths.get(this.batchFile("in/sub/c.txt", "c\n"));
+        this.batchFile("in/sub/d.md", "d\n");
+        String in = this.folder.getRoot().toPath().resolve("in").toString();
+        assertEquals(Arrays.asList(a, b), WordCounter.batchFiles(in));
+        assertEquals(Arrays.asList(a), WordCounter.batchFiles(a.toString()));
+        assertEquals(Arrays.asList(a, b),
+                WordCounter.batchFiles(in + "/*.txt"));
+        assertEquals(Arrays.asList(a, b, c),
+                WordCounter.batchFiles(in + "/**.txt"));
+        for (String none : new String[] { in + "/*.csv", in + "/missing",
+                in + "/missing/*.txt" }) {
+            try {
+                WordCounter.batchFiles(none);
+                fail(none + " should name no file.");
+            } catch (NoSuchFileException e) {
+                // expected
+            }
+        }
+    }
+
+    /**
+     * Tests that batch mode mirrors the input directories in the output
+     * folder, so files whose names only differ by separators get their own
+     * output files, and merges the counts of all the files.
+     *
+     * @throws IOException
+     *             if a file cannot be read or written
+     */
+    @Test
+    public void testProcessBatch() throws IOException {
+        this.batchFile("in/a_b.txt", "one two\n");
+        this.batchFile("in/a/b.txt", "two three\n");
+        Path in = this.folder.getRoot().toPath().resolve("in");
+        Path out = this.folder.getRoot().toPath().resolve("out");
+        assertEquals(2, batch("--batch", in + "/**", out.toString()));
+
+        String flat = contents(out.resolve("a_b.txt.html").toString());
+        assertTrue(flat.contains("<tr><td>one</td><td>1</td></tr>"));
+        assertFalse(flat.contains("<td>three</td>"));
+        String nested = contents(out.resolve("a/b.txt.html").toString());
+        assertTrue(nested.contains("<tr><td>three</td><td>1</td></tr>"));
+        assertFalse(nested.contains("<td>one</td>"));
+        String merged = contents(out.resolve("merged.html").toString());
+        assertTrue(merged.contains("<tr><td>two</td><td>2</td></tr>"));
+    }
+
+    /**
+     * Tests that batch mode fails, before writing anything, when an output
+     * file would be the merged output, a page of another output file or a
+     * directory of another one.
+     *
+     * @throws IOException
+     *             if a file cannot be written
+     */
+    @Test
+    public void testProcessBatchClashes() throws IOException {
+        Path out = this.folder.getRoot().toPath().resolve("out");
+        String[][] clashes = { { "merged" }, { "x", "x-1" },
+                { "y.html/z", "y" } };
+        for (int i = 0; i < clashes.length; i++) {
+            for (String name : clashes[i]) {
+                this.batchFile("in" + i + "/" + name, "word\n");
+            }
+            Path in = this.folder.getRoot().toPath().resolve("in" + i);
+            try {
+                batch("--batch", in + "/**", out.toString(), "--page-size",
+                        "1");
+                fail(Arrays.toString(clashes[i]) + " should clash.");
+            } catch (FileAlreadyExistsException e) {
+                // expected
+            }
+            assertFalse(Files.exists(out));
+        }
+        Path in = this.folder.getRoot().toPath().resolve("in1");
+        assertEquals("Without pages, x-1 is no page of x.", 2,
+                batch("--batch", in + "/**", out.toString()));
+    }
+
+}
@@ -0,0 +1,80 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import components.map.Map;
+
+/**
+ * JMH benchmarks of {@code MapBenchmark} for {@code Map4} and {@code Map5},
+ * also run over the hash table size passed to their {@code (int)}
+ * constructors, so the results show how it should scale with the number and
+ * kind of keys. {@code ReferenceMapBenchmark} runs the same benchmarks for
+ * {@code Map1L} and {@code java.util.HashMap}.
+ * <p>
+ * Run with the JMH and components jars on the class path (and the JMH
+ * annotation processor enabled when compiling):
+ *
+ * <pre>
+ * java -cp ... Map4Benchmark
+ * </pre>
+ *
+ * which runs both classes and writes the comparison report to
+ * {@code map4-benchmark.csv}. JMH does not allow benchmarks in the default
+ * package, where the map classes of this project live, so those are
+ * constructed reflectively in {@code newMap}; the measured calls all go
+ * through the {@code Map} interface.
+ *
+ * @author Jared Alonzo
+ *
+ */
+public class Map4Benchmark extends MapBenchmark {
+
+    /**
+     * Implementation under test.
+     */
+    @Param({ "Map4", "Map5" })
+    private String implementation;
+
+    /**
+     * Hash table size given to {@code Map4(int)} and initial capacity given to
+     * {@code Map5(int)}.
+     */
+    @Param({ "101", "1024", "65536" })
+    private int tableSize;
+
+    @SuppressWarnings("unchecked")
+    @Override
+    protected Map<Object, Integer> newMap() {
+        try {
+            return (Map<Object, Integer>) Class.forName(this.implementation)
+                    .getConstructor(int.class).newInstance(this.tableSize);
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError("Cannot construct " + this.implementation,
+                    e);
+        }
+    }
+
+    /**
+     * Runs the benchmarks of this class and of {@code ReferenceMapBenchmark}
+     * and writes a CSV report.
+     *
+     * @param args
+     *            extra JMH command-line options; unused
+     * @throws RunnerException
+     *             if JMH fails to run
+     */
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(Map4Benchmark.class.getSimpleName())
+                .include(ReferenceMapBenchmark.class.getSimpleName())
+                .resultFormat(ResultFormatType.CSV)
+                .result("map4-benchmark.csv").build();
+        new Runner(options).run();
+    }
+
+}
@@ -0,0 +1,303 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import components.map.Map;
+
+/**
+ * JMH benchmarks for the kernel methods of the {@code Map} implementations,
+ * run over the cross product of the number, kind, and hash quality of the
+ * keys. Subclasses name the implementations under test and construct them in
+ * {@code newMap}: {@code Map4Benchmark} for the hashed implementations of
+ * this project, which also take a table size, and
+ * {@code ReferenceMapBenchmark} for {@code Map1L} and
+ * {@code java.util.HashMap}, which do not, so their results are not repeated
+ * once per table size.
+ *
+ * @author Jared Alonzo
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class MapBenchmark {
+
+    /**
+     * Seed for the random keys, so every run uses the same keys.
+     */
+    private static final long SEED = 20240501L;
+
+    /**
+     * Length of the strings used for {@code LONG_STRING} keys.
+     */
+    private static final int LONG_STRING_LENGTH = 64;
+
+    /**
+     * Number of distinct hash codes produced by {@code PoorKey}.
+     */
+    private static final int POOR_HASH_CODES = 64;
+
+    /**
+     * Number of keys in the map.
+     */
+    @Param({ "1000", "100000" })
+    private int keyCount;
+
+    /**
+     * Kind of key: {@code INTEGER}, {@code SHORT_STRING}, or
+     * {@code LONG_STRING}.
+     */
+    @Param({ "INTEGER", "SHORT_STRING", "LONG_STRING" })
+    private String keyType;
+
+    /**
+     * {@code GOOD} uses the keys' own hash codes; {@code POOR} wraps each key
+     * so that only a few distinct hash codes occur.
+     */
+    @Param({ "GOOD", "POOR" })
+    private String hashQuality;
+
+    /**
+     * Keys present in {@code map}.
+     */
+    private Object[] keys;
+
+    /**
+     * Keys of the same kind that are not in {@code map}.
+     */
+    private Object[] missingKeys;
+
+    /**
+     * Map filled with {@code keys}.
+     */
+    private Map<Object, Integer> map;
+
+    /**
+     * Empty map of the same type, used as a transfer target.
+     */
+    private Map<Object, Integer> other;
+
+    /**
+     * Position of the next key used by the single-key benchmarks.
+     */
+    private int cursor;
+
+    /**
+     * Key whose hash code collapses the wrapped key's hash code to one of
+     * {@code POOR_HASH_CODES} values.
+     */
+    private static final class PoorKey {
+
+        /**
+         * The wrapped key.
+         */
+        private final Object key;
+
+        /**
+         * Constructor.
+         *
+         * @param key
+         *            the wrapped key
+         */
+        PoorKey(Object key) {
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof PoorKey
+                    && ((PoorKey) obj).key.equals(this.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return Math.floorMod(this.key.hashCode(), POOR_HASH_CODES);
+        }
+
+    }
+
+    /**
+     * Returns a new empty map of the implementation under test.
+     *
+     * @return the new map
+     */
+    protected abstract Map<Object, Integer> newMap();
+
+    /**
+     * Returns the {@code i}-th key of the configured kind.
+     *
+     * @param i
+     *            the key number
+     * @param rnd
+     *            source of random characters for string keys
+     * @return the key
+     */
+    private Object makeKey(int i, Random rnd) {
+        Object key;
+        switch (this.keyType) {
+            case "INTEGER":
+                key = i;
+                break;
+            case "SHORT_STRING":
+                key = "w" + i;
+                break;
+            default:
+                StringBuilder sb = new StringBuilder(LONG_STRING_LENGTH);
+                while (sb.length() < LONG_STRING_LENGTH - 10) {
+                    sb.append((char) ('a' + rnd.nextInt(26)));
+                }
+                key = sb.append(i).toString();
+                break;
+        }
+        if (this.hashQuality.equals("POOR")) {
+            key = new PoorKey(key);
+        }
+        return key;
+    }
+
+    /**
+     * Builds the keys and the filled map.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random rnd = new Random(SEED);
+        this.keys = new Object[this.keyCount];
+        this.missingKeys = new Object[this.keyCount];
+        for (int i = 0; i < this.keyCount; i++) {
+            this.keys[i] = this.makeKey(i, rnd);
+            this.missingKeys[i] = this.makeKey(i + this.keyCount, rnd);
+        }
+        this.map = this.newMap();
+        for (int i = 0; i < this.keyCount; i++) {
+            this.map.add(this.keys[i], i);
+        }
+        this.other = this.newMap();
+        this.cursor = 0;
+    }
+
+    /**
+     * Returns the next key of {@code keys}, cycling.
+     *
+     * @return the key
+     */
+    private Object nextKey() {
+        this.cursor++;
+        if (this.cursor == this.keyCount) {
+            this.cursor = 0;
+        }
+        return this.keys[this.cursor];
+    }
+
+    /**
+     * Fills a new map with all the keys; time is per map, not per key.
+     *
+     * @return the filled map
+     */
+    @Benchmark
+    public Map<Object, Integer> addAll() {
+        Map<Object, Integer> m = this.newMap();
+        for (int i = 0; i < this.keyCount; i++) {
+            m.add(this.keys[i], i);
+        }
+        return m;
+    }
+
+    /**
+     * Removes one key and adds it back, keeping the map size steady.
+     *
+     * @return the removed pair
+     */
+    @Benchmark
+    public Map.Pair<Object, Integer> removeThenAdd() {
+        Map.Pair<Object, Integer> p = this.map.remove(this.nextKey());
+        this.map.add(p.key(), p.value());
+        return p;
+    }
+
+    /**
+     * Removes an arbitrary pair and adds it back, keeping the map size steady.
+     *
+     * @return the removed pair
+     */
+    @Benchmark
+    public Map.Pair<Object, Integer> removeAnyThenAdd() {
+        Map.Pair<Object, Integer> p = this.map.removeAny();
+        this.map.add(p.key(), p.value());
+        return p;
+    }
+
+    /**
+     * Looks up the value of a key that is present.
+     *
+     * @return the value
+     */
+    @Benchmark
+    public Integer value() {
+        return this.map.value(this.nextKey());
+    }
+
+    /**
+     * Checks a key that is present.
+     *
+     * @return the result of {@code hasKey}
+     */
+    @Benchmark
+    public boolean hasKeyHit() {
+        return this.map.hasKey(this.nextKey());
+    }
+
+    /**
+     * Checks a key that is absent.
+     *
+     * @return the result of {@code hasKey}
+     */
+    @Benchmark
+    public boolean hasKeyMiss() {
+        this.nextKey();
+        return this.map.hasKey(this.missingKeys[this.cursor]);
+    }
+
+    /**
+     * Iterates over the whole map; time is per full traversal.
+     *
+     * @param bh
+     *            sink for the pairs
+     */
+    @Benchmark
+    public void iterator(Blackhole bh) {
+        for (Map.Pair<Object, Integer> p : this.map) {
+            bh.consume(p);
+        }
+    }
+
+    /**
+     * Moves the whole map to another instance and back.
+     *
+     * @return the map after the round trip
+     */
+    @Benchmark
+    public Map<Object, Integer> transferFrom() {
+        this.other.transferFrom(this.map);
+        this.map.transferFrom(this.other);
+        return this.map;
+    }
+
+}
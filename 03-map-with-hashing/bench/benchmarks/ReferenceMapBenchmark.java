@@ -0,0 +1,175 @@
+package benchmarks;
+
+import java.util.HashMap;
+import java.util.Iterator;
+
+import org.openjdk.jmh.annotations.Param;
+
+import components.map.Map;
+import components.map.Map1L;
+import components.map.MapSecondary;
+
+/**
+ * JMH benchmarks of {@code MapBenchmark} for the reference implementations,
+ * {@code Map1L} and {@code java.util.HashMap} (through a thin {@code Map}
+ * adapter). Neither takes a table size, so unlike {@code Map4Benchmark} these
+ * run once per number, kind, and hash quality of the keys.
+ *
+ * @author Jared Alonzo
+ *
+ */
+public class ReferenceMapBenchmark extends MapBenchmark {
+
+    /**
+     * Implementation under test.
+     */
+    @Param({ "Map1L", "HashMap" })
+    private String implementation;
+
+    /**
+     * {@code Map} layered on {@code java.util.HashMap}, so the JDK table can be
+     * measured through the same kernel calls as the other implementations.
+     *
+     * @param <K>
+     *            type of key
+     * @param <V>
+     *            type of value
+     */
+    public static final class HashMapAdapter<K, V>
+            extends MapSecondary<K, V> {
+
+        /**
+         * The wrapped map.
+         */
+        private HashMap<K, V> rep = new HashMap<K, V>();
+
+        /**
+         * Immutable {@code Pair} for the adapter.
+         *
+         * @param <K>
+         *            type of key
+         * @param <V>
+         *            type of value
+         */
+        private static final class SimplePair<K, V> implements Pair<K, V> {
+
+            /**
+             * The key.
+             */
+            private final K key;
+
+            /**
+             * The value.
+             */
+            private final V value;
+
+            /**
+             * Constructor.
+             *
+             * @param key
+             *            the key
+             * @param value
+             *            the value
+             */
+            SimplePair(K key, V value) {
+                this.key = key;
+                this.value = value;
+            }
+
+            @Override
+            public K key() {
+                return this.key;
+            }
+
+            @Override
+            public V value() {
+                return this.value;
+            }
+
+        }
+
+        /**
+         * No-argument constructor.
+         */
+        public HashMapAdapter() {
+        }
+
+        @Override
+        public Map<K, V> newInstance() {
+            return new HashMapAdapter<K, V>();
+        }
+
+        @Override
+        public void clear() {
+            this.rep = new HashMap<K, V>();
+        }
+
+        @Override
+        public void transferFrom(Map<K, V> source) {
+            HashMapAdapter<K, V> localSource = (HashMapAdapter<K, V>) source;
+            this.rep = localSource.rep;
+            localSource.rep = new HashMap<K, V>();
+        }
+
+        @Override
+        public void add(K key, V value) {
+            this.rep.put(key, value);
+        }
+
+        @Override
+        public Pair<K, V> remove(K key) {
+            return new SimplePair<K, V>(key, this.rep.remove(key));
+        }
+
+        @Override
+        public Pair<K, V> removeAny() {
+            return this.remove(this.rep.keySet().iterator().next());
+        }
+
+        @Override
+        public V value(K key) {
+            return this.rep.get(key);
+        }
+
+        @Override
+        public boolean hasKey(K key) {
+            return this.rep.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return this.rep.size();
+        }
+
+        @Override
+        public Iterator<Pair<K, V>> iterator() {
+            Iterator<java.util.Map.Entry<K, V>> it = this.rep.entrySet()
+                    .iterator();
+            return new Iterator<Pair<K, V>>() {
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public Pair<K, V> next() {
+                    java.util.Map.Entry<K, V> e = it.next();
+                    return new SimplePair<K, V>(e.getKey(), e.getValue());
+                }
+            };
+        }
+
+    }
+
+    @Override
+    protected Map<Object, Integer> newMap() {
+        Map<Object, Integer> result;
+        if (this.implementation.equals("Map1L")) {
+            result = new Map1L<Object, Integer>();
+        } else {
+            result = new HashMapAdapter<Object, Integer>();
+        }
+        return result;
+    }
+
+}
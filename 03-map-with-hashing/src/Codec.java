@@ -0,0 +1,74 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Conversion between values of type {@code T} and byte arrays, used by
+ * {@code MappedMap4} to store keys and values in its file. Implementations
+ * must be deterministic: equal values must always encode to equal bytes, in
+ * every run of the program, or a reopened file will not find its keys.
+ *
+ * @param <T>
+ *            type of the values converted
+ *
+ * @author Jared Alonzo
+ *
+ */
+public interface Codec<T> {
+
+    /**
+     * {@code Codec} for {@code String}s, stored as UTF-8.
+     */
+    Codec<String> STRING = new Codec<String>() {
+
+        @Override
+        public byte[] encode(String x) {
+            return x.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String decode(byte[] bytes) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+    };
+
+    /**
+     * {@code Codec} for {@code Integer}s, stored as 4 big-endian bytes.
+     */
+    Codec<Integer> INTEGER = new Codec<Integer>() {
+
+        @Override
+        public byte[] encode(Integer x) {
+            return ByteBuffer.allocate(Integer.BYTES).putInt(x).array();
+        }
+
+        @Override
+        public Integer decode(byte[] bytes) {
+            return ByteBuffer.wrap(bytes).getInt();
+        }
+
+    };
+
+    /**
+     * Returns the bytes representing {@code x}.
+     *
+     * @param x
+     *            the value to encode
+     * @return the encoding of {@code x}
+     * @requires x /= null
+     * @ensures decode(encode) = x
+     */
+    byte[] encode(T x);
+
+    /**
+     * Returns the value represented by {@code bytes}.
+     *
+     * @param bytes
+     *            the encoding of a value
+     * @return the decoded value
+     * @requires [bytes was produced by encode]
+     * @ensures encode(decode) = bytes
+     */
+    T decode(byte[] bytes);
+
+}
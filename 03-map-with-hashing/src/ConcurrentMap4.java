@@ -0,0 +1,678 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import components.map.Map;
+import components.map.MapSecondary;
+
+/**
+ * Thread-safe {@code Map} represented as a hash table split into
+ * independently locked segments, with implementations of primary methods.
+ * Each segment is a chained hash table like the one in {@code Map4}.
+ * {@code add}, {@code remove}, and {@code removeAny} lock only the segment that
+ * holds the key; {@code value}, {@code hasKey}, and {@code size} take no lock
+ * at all, and iterators are weakly consistent: they never throw because of
+ * concurrent updates and see every entry that was present for the whole
+ * traversal, but may or may not see entries added or removed meanwhile.
+ * <p>
+ * The kernel preconditions still hold: {@code add} requires the key to be
+ * absent and {@code remove}/{@code value} require it to be present, so
+ * threads that race on the same key should use {@code addIfAbsent}.
+ * {@code clear} and {@code transferFrom} must not run concurrently with other
+ * operations on either map.
+ *
+ * @param <K>
+ *            type of {@code Map} domain (key) entries
+ * @param <V>
+ *            type of {@code Map} range (associated value) entries
+ * @convention <pre>
+ * |$this.segments| = SEGMENT_COUNT  and
+ * for all s: Segment, e: Node
+ *     where (s = $this.segments[j] for some j  and
+ *            [e is in a chain of s.table])
+ *   (e.hash = [spread hash code of e.key]  and
+ *    [e is in segment number segmentFor(e.hash)]  and
+ *    [e is in the chain at index e.hash mod |s.table|])  and
+ * [no key appears in more than one entry of the chains]  and
+ * for all s: Segment where (s is in $this.segments)
+ *   (s.count = [number of entries in the chains of s.table])
+ * </pre>
+ * @correspondence <pre>
+ * this = [set of (e.key, e.value) for every entry e in the chains of the
+ *         tables of $this.segments]
+ * </pre>
+ *
+ * @author Jared Alonzo
+ *
+ */
+public class ConcurrentMap4<K, V> extends MapSecondary<K, V> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Number of segments; a power of 2.
+     */
+    private static final int SEGMENT_COUNT = 16;
+
+    /**
+     * Shift that moves the top bits of a mixed hash code into a segment
+     * number.
+     */
+    private static final int SEGMENT_SHIFT = Integer.SIZE
+            - Integer.numberOfTrailingZeros(SEGMENT_COUNT);
+
+    /**
+     * Default size of the hash table of each segment.
+     */
+    private static final int DEFAULT_SEGMENT_TABLE_SIZE = 16;
+
+    /**
+     * Largest hash table size allowed for a segment.
+     */
+    private static final int MAXIMUM_SEGMENT_TABLE_SIZE = 1 << 26;
+
+    /**
+     * Load factor (count / table size) above which a segment doubles its
+     * table.
+     */
+    private static final double MAX_LOAD_FACTOR = 0.75;
+
+    /**
+     * The segments; replaced only by {@code clear} and {@code transferFrom}.
+     */
+    private volatile Segment<K, V>[] segments;
+
+    /**
+     * Entry of a bucket chain. Everything except {@code next} is immutable,
+     * and {@code next} is volatile, so readers can walk a chain without a
+     * lock while a writer unlinks entries from it.
+     *
+     * @param <K>
+     *            type of key
+     * @param <V>
+     *            type of value
+     */
+    private static final class Node<K, V> implements Pair<K, V> {
+
+        /**
+         * Spread hash code of {@code key}.
+         */
+        private final int hash;
+
+        /**
+         * The key.
+         */
+        private final K key;
+
+        /**
+         * The value.
+         */
+        private final V value;
+
+        /**
+         * Next entry in the same bucket, or null.
+         */
+        private volatile Node<K, V> next;
+
+        /**
+         * Constructor.
+         *
+         * @param hash
+         *            spread hash code of {@code key}
+         * @param key
+         *            the key
+         * @param value
+         *            the value
+         * @param next
+         *            next entry in the same bucket
+         */
+        Node(int hash, K key, V value, Node<K, V> next) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+
+        @Override
+        public K key() {
+            return this.key;
+        }
+
+        @Override
+        public V value() {
+            return this.value;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof Pair<?, ?>)) {
+                return false;
+            }
+            Pair<?, ?> pair = (Pair<?, ?>) obj;
+            return this.key.equals(pair.key())
+                    && this.value.equals(pair.value());
+        }
+
+        @Override
+        public int hashCode() {
+            final int prime = 31;
+            return this.key.hashCode() * prime + this.value.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "(" + this.key + "," + this.value + ")";
+        }
+
+    }
+
+    /**
+     * One independently locked part of the hash table. Writers hold the lock;
+     * readers rely on the volatile {@code table} and {@code count} fields and
+     * the volatile array elements of {@code table}.
+     *
+     * @param <K>
+     *            type of key
+     * @param <V>
+     *            type of value
+     */
+    private static final class Segment<K, V> extends ReentrantLock {
+
+        /**
+         * Serialization id required for subclasses of {@code ReentrantLock}.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Buckets of this segment; replaced by a larger copy when it grows.
+         */
+        private volatile AtomicReferenceArray<Node<K, V>> table;
+
+        /**
+         * Number of entries in this segment.
+         */
+        private volatile int count;
+
+        /**
+         * No-argument constructor.
+         */
+        Segment() {
+            this.table = new AtomicReferenceArray<Node<K, V>>(
+                    DEFAULT_SEGMENT_TABLE_SIZE);
+            this.count = 0;
+        }
+
+        /**
+         * Returns the entry for {@code key}, or null if there is none. Takes
+         * no lock.
+         *
+         * @param key
+         *            the key to look for
+         * @param hash
+         *            the spread hash code of {@code key}
+         * @return the entry whose key equals {@code key}, or null
+         */
+        Node<K, V> find(Object key, int hash) {
+            AtomicReferenceArray<Node<K, V>> t = this.table;
+            Node<K, V> e = t.get(hash & (t.length() - 1));
+            while (e != null && (e.hash != hash
+                    || (e.key != key && !key.equals(e.key)))) {
+                e = e.next;
+            }
+            return e;
+        }
+
+        /**
+         * Adds a new entry to this segment, growing the table first if it is
+         * too full.
+         *
+         * @param key
+         *            the key
+         * @param value
+         *            the value
+         * @param hash
+         *            the spread hash code of {@code key}
+         * @requires [the lock is held by the current thread and key is not in
+         *           this segment]
+         */
+        void insert(K key, V value, int hash) {
+            if (this.count + 1 > this.table.length() * MAX_LOAD_FACTOR
+                    && this.table.length() < MAXIMUM_SEGMENT_TABLE_SIZE) {
+                this.grow();
+            }
+            AtomicReferenceArray<Node<K, V>> t = this.table;
+            int bucket = hash & (t.length() - 1);
+            t.set(bucket, new Node<K, V>(hash, key, value, t.get(bucket)));
+            this.count = this.count + 1;
+        }
+
+        /**
+         * Unlinks and returns the entry for {@code key}, or returns null if
+         * there is none.
+         *
+         * @param key
+         *            the key to remove
+         * @param hash
+         *            the spread hash code of {@code key}
+         * @return the removed entry, or null
+         * @requires [the lock is held by the current thread]
+         */
+        Node<K, V> unlink(Object key, int hash) {
+            AtomicReferenceArray<Node<K, V>> t = this.table;
+            int bucket = hash & (t.length() - 1);
+            Node<K, V> previous = null;
+            Node<K, V> e = t.get(bucket);
+            while (e != null && (e.hash != hash
+                    || (e.key != key && !key.equals(e.key)))) {
+                previous = e;
+                e = e.next;
+            }
+            if (e != null) {
+                /*
+                 * e.next is left alone so that a reader standing on e can
+                 * still reach the rest of the chain.
+                 */
+                if (previous == null) {
+                    t.set(bucket, e.next);
+                } else {
+                    previous.next = e.next;
+                }
+                this.count = this.count - 1;
+            }
+            return e;
+        }
+
+        /**
+         * Replaces the table with one twice as large. Entries are copied into
+         * new nodes, so readers still walking the old table are unaffected.
+         *
+         * @requires [the lock is held by the current thread]
+         */
+        private void grow() {
+            AtomicReferenceArray<Node<K, V>> oldTable = this.table;
+            AtomicReferenceArray<Node<K, V>> newTable;
+            newTable = new AtomicReferenceArray<Node<K, V>>(
+                    oldTable.length() * 2);
+            int mask = newTable.length() - 1;
+            for (int i = 0; i < oldTable.length(); i++) {
+                for (Node<K, V> e = oldTable.get(i); e != null; e = e.next) {
+                    int bucket = e.hash & mask;
+                    newTable.set(bucket, new Node<K, V>(e.hash, e.key,
+                            e.value, newTable.get(bucket)));
+                }
+            }
+            this.table = newTable;
+        }
+
+    }
+
+    /**
+     * Mixes the high bits of {@code x.hashCode()} into the low bits, which
+     * are the ones used to pick a bucket in a power-of-2 table.
+     *
+     * @param x
+     *            the key
+     * @return the spread hash code of {@code x}
+     */
+    private static int spread(Object x) {
+        int h = x.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the number of the segment responsible for keys with spread hash
+     * code {@code hash}. The low bits pick the bucket, so the segment is
+     * picked from the top bits of {@code hash} multiplied by an odd constant,
+     * which depend on all of its bits; taking the top bits of {@code hash}
+     * itself would put every small hash code, such as that of a small
+     * {@code Integer}, in segment 0.
+     *
+     * @param hash
+     *            the spread hash code
+     * @return the segment number for {@code hash}
+     * @ensures 0 <= segmentIndex < SEGMENT_COUNT
+     */
+    private static int segmentIndex(int hash) {
+        final int golden = 0x9E3779B9;
+        return (hash * golden) >>> SEGMENT_SHIFT;
+    }
+
+    /**
+     * Returns the segment responsible for keys with spread hash code
+     * {@code hash}.
+     *
+     * @param hash
+     *            the spread hash code
+     * @return the segment for {@code hash}
+     */
+    private Segment<K, V> segmentFor(int hash) {
+        return this.segments[segmentIndex(hash)];
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @ensures <pre>
+     * |$this.segments| = SEGMENT_COUNT  and
+     * [every segment of $this.segments is empty]
+     * </pre>
+     */
+    @SuppressWarnings("unchecked")
+    private void createNewRep() {
+        /*
+         * With "new Segment<K, V>[...]" in place of "new Segment[...]" it does
+         * not compile; as shown, it results in a warning about an unchecked
+         * conversion, though it cannot fail.
+         */
+        Segment<K, V>[] newSegments = new Segment[SEGMENT_COUNT];
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            newSegments[i] = new Segment<K, V>();
+        }
+        this.segments = newSegments;
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public ConcurrentMap4() {
+
+        this.createNewRep();
+
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Map<K, V> newInstance() {
+        try {
+            return this.getClass().getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep();
+    }
+
+    @Override
+    public final void transferFrom(Map<K, V> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof ConcurrentMap4<?, ?> : ""
+                + "Violation of: source is of dynamic type ConcurrentMap4<?,?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type
+         * ConcurrentMap4<?,?>, and the ?,? must be K,V or the call would not
+         * have compiled.
+         */
+        ConcurrentMap4<K, V> localSource = (ConcurrentMap4<K, V>) source;
+        this.segments = localSource.segments;
+        localSource.createNewRep();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(K key, V value) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+        assert !this.hasKey(key) : "Violation of: key is not in DOMAIN(this)";
+
+        int hash = spread(key);
+        Segment<K, V> segment = this.segmentFor(hash);
+        segment.lock();
+        try {
+            segment.insert(key, value, hash);
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    @Override
+    public final Pair<K, V> remove(K key) {
+        assert key != null : "Violation of: key is not null";
+        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        int hash = spread(key);
+        Segment<K, V> segment = this.segmentFor(hash);
+        segment.lock();
+        try {
+            return segment.unlink(key, hash);
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    @Override
+    public final Pair<K, V> removeAny() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        /*
+         * Takes the entry in the lowest bucket of any segment, as one table
+         * holding every entry would: bucket i of every segment is looked at
+         * before bucket i + 1. Only the segment holding the entry is locked,
+         * and its bucket is read again under the lock, since another thread
+         * may have emptied it or grown the table in between.
+         */
+        Segment<K, V>[] s = this.segments;
+        int longest = 1;
+        for (int i = 0; i < longest; i++) {
+            for (Segment<K, V> segment : s) {
+                AtomicReferenceArray<Node<K, V>> t = segment.table;
+                longest = Math.max(longest, t.length());
+                if (i < t.length() && t.get(i) != null) {
+                    segment.lock();
+                    try {
+                        Node<K, V> e = segment.table.get(i);
+                        if (e != null) {
+                            return segment.unlink(e.key, e.hash);
+                        }
+                    } finally {
+                        segment.unlock();
+                    }
+                }
+            }
+        }
+        /*
+         * Only reachable if other threads emptied the map after the
+         * precondition was checked.
+         */
+        throw new NoSuchElementException();
+    }
+
+    @Override
+    public final V value(K key) {
+        assert key != null : "Violation of: key is not null";
+        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        int hash = spread(key);
+        return this.segmentFor(hash).find(key, hash).value;
+    }
+
+    @Override
+    public final boolean hasKey(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        int hash = spread(key);
+        return this.segmentFor(hash).find(key, hash) != null;
+    }
+
+    @Override
+    public final int size() {
+        int total = 0;
+        for (Segment<K, V> segment : this.segments) {
+            total += segment.count;
+        }
+        return total;
+    }
+
+    @Override
+    public final Iterator<Pair<K, V>> iterator() {
+        return new ConcurrentMap4Iterator();
+    }
+
+    /*
+     * Other methods ----------------------------------------------------------
+     */
+
+    /**
+     * Adds the pair ({@code key}, {@code value}) to this if {@code key} is not
+     * already in its domain, as one atomic step.
+     *
+     * @param key
+     *            the key to be added
+     * @param value
+     *            the associated value to be added
+     * @return true iff the pair was added
+     * @updates this
+     * @ensures <pre>
+     * if key is in DOMAIN(#this)
+     * then this = #this  and  addIfAbsent = false
+     * else this = #this union {(key, value)}  and  addIfAbsent = true
+     * </pre>
+     */
+    public final boolean addIfAbsent(K key, V value) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+
+        int hash = spread(key);
+        Segment<K, V> segment = this.segmentFor(hash);
+        segment.lock();
+        try {
+            boolean absent = segment.find(key, hash) == null;
+            if (absent) {
+                segment.insert(key, value, hash);
+            }
+            return absent;
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of entries in each segment, to check how evenly keys
+     * are spread over the segments. Not atomic with respect to concurrent
+     * updates.
+     *
+     * @return the number of entries in each segment
+     * @ensures |segmentSizes| = SEGMENT_COUNT
+     */
+    final int[] segmentSizes() {
+        Segment<K, V>[] s = this.segments;
+        int[] sizes = new int[s.length];
+        for (int i = 0; i < s.length; i++) {
+            sizes[i] = s[i].count;
+        }
+        return sizes;
+    }
+
+    /**
+     * Weakly consistent implementation of {@code Iterator} interface for
+     * {@code ConcurrentMap4}. It walks each segment's table as it was when the
+     * iterator reached that segment.
+     */
+    private final class ConcurrentMap4Iterator
+            implements Iterator<Pair<K, V>> {
+
+        /**
+         * Segments being iterated over.
+         */
+        private final Segment<K, V>[] iteratedSegments;
+
+        /**
+         * Index of the segment currently being visited.
+         */
+        private int currentSegment;
+
+        /**
+         * Table of the segment currently being visited.
+         */
+        private AtomicReferenceArray<Node<K, V>> currentTable;
+
+        /**
+         * Bucket from which {@code nextEntry} comes.
+         */
+        private int currentBucket;
+
+        /**
+         * Entry that will be returned next, or null if there are no more.
+         */
+        private Node<K, V> nextEntry;
+
+        /**
+         * No-argument constructor.
+         */
+        ConcurrentMap4Iterator() {
+            this.iteratedSegments = ConcurrentMap4.this.segments;
+            this.currentSegment = 0;
+            this.currentTable = this.iteratedSegments[0].table;
+            this.currentBucket = -1;
+            this.nextEntry = null;
+            this.advance();
+        }
+
+        /**
+         * Moves {@code nextEntry} to the first entry of the next non-empty
+         * bucket, or to null if there is none.
+         */
+        private void advance() {
+            while (this.nextEntry == null) {
+                this.currentBucket++;
+                if (this.currentBucket == this.currentTable.length()) {
+                    this.currentSegment++;
+                    if (this.currentSegment == this.iteratedSegments.length) {
+                        return;
+                    }
+                    Segment<K, V> segment = this.iteratedSegments[
+                            this.currentSegment];
+                    this.currentTable = segment.table;
+                    this.currentBucket = 0;
+                }
+                this.nextEntry = this.currentTable.get(this.currentBucket);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.nextEntry != null;
+        }
+
+        @Override
+        public Pair<K, V> next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Node<K, V> result = this.nextEntry;
+            this.nextEntry = result.next;
+            this.advance();
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+}
@@ -0,0 +1,426 @@
+import java.util.Arrays;
+
+/**
+ * Map from {@code int} keys to {@code int} values, represented as an
+ * open-addressing hash table in flat arrays so that neither keys nor values
+ * are ever boxed; {@code addToValue} makes it a cheap counter table. It
+ * follows the {@code Map} kernel contract ({@code add} requires an absent key,
+ * {@code remove} and {@code value} a present one) but, since the keys are
+ * primitive, it does not implement {@code components.map.Map}. The table uses
+ * linear probing over a power-of-2 array with backward-shift deletion and
+ * doubles when more than half full.
+ *
+ * @convention <pre>
+ * |$this.keys| = |$this.values| = |$this.used|  and
+ * [|$this.keys| is a power of 2]  and
+ * $this.size <= |$this.keys| * MAX_LOAD_FACTOR  and
+ * [slot i is in use iff $this.used[i]]  and
+ * [every key in use at slot i is reachable from slot
+ *  (mix($this.keys[i]) mod |$this.keys|) by linear probing through slots in
+ *  use]  and
+ * [no key is in use in two slots]  and
+ * $this.size = [number of slots in use]
+ * </pre>
+ * @correspondence <pre>
+ * this = [set of ($this.keys[i], $this.values[i]) for every slot i in use]
+ * </pre>
+ *
+ * @author Jared Alonzo
+ *
+ */
+public class IntIntMap4 {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Default capacity of hash table.
+     */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * Largest capacity the table is allowed to grow to.
+     */
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    /**
+     * Load factor (size / capacity) above which the table doubles.
+     */
+    private static final double MAX_LOAD_FACTOR = 0.5;
+
+    /**
+     * Keys of the table.
+     */
+    private int[] keys;
+
+    /**
+     * Values of the table, parallel to {@code keys}.
+     */
+    private int[] values;
+
+    /**
+     * Whether each slot is in use, parallel to {@code keys}.
+     */
+    private boolean[] used;
+
+    /**
+     * Size of abstract {@code this}.
+     */
+    private int size;
+
+    /**
+     * Scrambles {@code key} so that runs of consecutive ids spread over the
+     * whole table instead of forming one long probe cluster.
+     *
+     * @param key
+     *            the key
+     * @return the mixed hash code of {@code key}
+     */
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the smallest power of 2 that is at least {@code n}.
+     *
+     * @param n
+     *            the requested capacity
+     * @return the table capacity to use for {@code n}
+     * @requires n > 0
+     */
+    private static int tableSizeFor(int n) {
+        assert n > 0 : "Violation of: n > 0";
+
+        int capacity = 1;
+        while (capacity < n && capacity < MAXIMUM_CAPACITY) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * Returns the slot holding {@code key}, or -1 if there is none.
+     *
+     * @param key
+     *            the key to look for
+     * @return the slot of {@code key}, or -1
+     */
+    private int indexOf(int key) {
+        int mask = this.keys.length - 1;
+        int i = mix(key) & mask;
+        while (this.used[i]) {
+            if (this.keys[i] == key) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Stores the given entry in the first free slot of its probe sequence.
+     *
+     * @param key
+     *            the key
+     * @param value
+     *            the value
+     * @requires [key is not in the table]
+     */
+    private void insert(int key, int value) {
+        int mask = this.keys.length - 1;
+        int i = mix(key) & mask;
+        while (this.used[i]) {
+            i = (i + 1) & mask;
+        }
+        this.keys[i] = key;
+        this.values[i] = value;
+        this.used[i] = true;
+    }
+
+    /**
+     * Empties slot {@code i}, shifting later entries of the same cluster back
+     * so that no tombstone is needed.
+     *
+     * @param i
+     *            the slot to empty
+     */
+    private void deleteAt(int i) {
+        int mask = this.keys.length - 1;
+        int hole = i;
+        int j = (hole + 1) & mask;
+        while (this.used[j]) {
+            int home = mix(this.keys[j]) & mask;
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                this.keys[hole] = this.keys[j];
+                this.values[hole] = this.values[j];
+                hole = j;
+            }
+            j = (j + 1) & mask;
+        }
+        this.used[hole] = false;
+    }
+
+    /**
+     * Doubles the table and reinserts every entry.
+     */
+    private void grow() {
+        int[] oldKeys = this.keys;
+        int[] oldValues = this.values;
+        boolean[] oldUsed = this.used;
+        this.keys = new int[oldKeys.length * 2];
+        this.values = new int[oldKeys.length * 2];
+        this.used = new boolean[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                this.insert(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param capacity
+     *            the requested initial capacity
+     * @requires capacity > 0
+     * @ensures <pre>
+     * |$this.keys| = [smallest power of 2 >= capacity]  and
+     * [no slot is in use]  and
+     * $this.size = 0
+     * </pre>
+     */
+    private void createNewRep(int capacity) {
+        int tableSize = tableSizeFor(capacity);
+        this.keys = new int[tableSize];
+        this.values = new int[tableSize];
+        this.used = new boolean[tableSize];
+        this.size = 0;
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public IntIntMap4() {
+
+        this.createNewRep(DEFAULT_CAPACITY);
+
+    }
+
+    /**
+     * Constructor resulting in a hash table with initial capacity of at least
+     * {@code capacity}.
+     *
+     * @param capacity
+     *            initial capacity of hash table
+     * @requires capacity > 0
+     * @ensures this = {}
+     */
+    public IntIntMap4(int capacity) {
+
+        this.createNewRep(capacity);
+
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    /**
+     * Returns a new empty object of the same dynamic type as {@code this}.
+     *
+     * @return new empty object
+     */
+    public final IntIntMap4 newInstance() {
+        return new IntIntMap4();
+    }
+
+    /**
+     * Resets {@code this} to an initial value.
+     *
+     * @clears this
+     */
+    public final void clear() {
+        this.createNewRep(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Sets {@code this} to the incoming value of {@code source}, and resets
+     * {@code source} to an initial value.
+     *
+     * @param source
+     *            object whose value is to be transferred
+     * @replaces this
+     * @clears source
+     */
+    public final void transferFrom(IntIntMap4 source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+
+        this.keys = source.keys;
+        this.values = source.values;
+        this.used = source.used;
+        this.size = source.size;
+        source.createNewRep(DEFAULT_CAPACITY);
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    /**
+     * Adds the pair ({@code key}, {@code value}) to this.
+     *
+     * @param key
+     *            the key to be added
+     * @param value
+     *            the associated value to be added
+     * @updates this
+     * @requires key is not in DOMAIN(this)
+     * @ensures this = #this union {(key, value)}
+     */
+    public final void add(int key, int value) {
+        assert !this.hasKey(key) : "Violation of: key is not in DOMAIN(this)";
+
+        if (this.size + 1 > this.keys.length * MAX_LOAD_FACTOR
+                && this.keys.length < MAXIMUM_CAPACITY) {
+            this.grow();
+        }
+        this.insert(key, value);
+        this.size++;
+    }
+
+    /**
+     * Removes the pair whose first component is {@code key} and returns its
+     * second component.
+     *
+     * @param key
+     *            the key of the pair to be removed
+     * @return the value that was associated with {@code key}
+     * @updates this
+     * @requires key is in DOMAIN(this)
+     * @ensures <pre>
+     * (key, remove) is in #this  and
+     * this = #this \ {(key, remove)}
+     * </pre>
+     */
+    public final int remove(int key) {
+        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        int i = this.indexOf(key);
+        int removed = this.values[i];
+        this.deleteAt(i);
+        this.size--;
+        return removed;
+    }
+
+    /**
+     * Reports the value associated with {@code key} in {@code this}.
+     *
+     * @param key
+     *            the key whose associated value is to be reported
+     * @return the value associated with key
+     * @requires key is in DOMAIN(this)
+     * @ensures (key, value) is in this
+     */
+    public final int value(int key) {
+        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        return this.values[this.indexOf(key)];
+    }
+
+    /**
+     * Reports whether there is a pair in {@code this} whose first component
+     * is {@code key}.
+     *
+     * @param key
+     *            the key to be checked
+     * @return true iff there is a pair in this whose first component is key
+     * @ensures hasKey = (key is in DOMAIN(this))
+     */
+    public final boolean hasKey(int key) {
+        return this.indexOf(key) >= 0;
+    }
+
+    /**
+     * Reports the size (cardinality) of {@code this}.
+     *
+     * @return the number of pairs in this
+     * @ensures size = |this|
+     */
+    public final int size() {
+        return this.size;
+    }
+
+    /*
+     * Other methods ----------------------------------------------------------
+     */
+
+    /**
+     * Returns the keys of {@code this} in table order.
+     *
+     * @return a new array holding DOMAIN(this)
+     * @ensures [keys contains each key of DOMAIN(this) exactly once]
+     */
+    public final int[] keys() {
+        int[] result = new int[this.size];
+        int n = 0;
+        for (int i = 0; i < this.keys.length; i++) {
+            if (this.used[i]) {
+                result[n] = this.keys[i];
+                n++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds {@code delta} to the value associated with {@code key}, first
+     * adding the pair ({@code key}, 0) if {@code key} is not in the domain,
+     * and returns the new value.
+     *
+     * @param key
+     *            the key whose value is updated
+     * @param delta
+     *            the amount to add
+     * @return the new value associated with {@code key}
+     * @updates this
+     * @ensures <pre>
+     * if key is in DOMAIN(#this)
+     * then this = (#this \ {(key, #this(key))}) union
+     *             {(key, #this(key) + delta)}
+     * else this = #this union {(key, delta)}  and
+     * addToValue = this(key)
+     * </pre>
+     */
+    public final int addToValue(int key, int delta) {
+        int i = this.indexOf(key);
+        if (i < 0) {
+            this.add(key, delta);
+            return delta;
+        }
+        this.values[i] += delta;
+        return this.values[i];
+    }
+
+    @Override
+    public final String toString() {
+        int[] domain = this.keys();
+        Arrays.sort(domain);
+        StringBuilder sb = new StringBuilder("{");
+        for (int k = 0; k < domain.length; k++) {
+            if (k > 0) {
+                sb.append(',');
+            }
+            sb.append('(').append(domain[k]).append(',')
+                    .append(this.value(domain[k])).append(')');
+        }
+        return sb.append('}').toString();
+    }
+
+}
@@ -1,13 +1,31 @@
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Stream;
 
 import components.map.Map;
-import components.map.Map2;
 import components.map.MapSecondary;
 
 /**
- * {@code Map} represented as a hash table using {@code Map}s for the buckets,
- * with implementations of primary methods.
+ * {@code Map} represented as a hash table using chains of entries for the
+ * buckets, with implementations of primary methods. Each entry caches the
+ * spread hash code of its key, so lookups compare hash codes before calling
+ * {@code equals}, and the table size is a power of 2 so the bucket index is a
+ * mask of the hash code rather than a {@code mod}. Besides the chains, every
+ * entry also sits in a dense array, {@code entries}, which makes
+ * {@code removeAny} constant time and lets the iterator walk the entries
+ * without visiting empty buckets.
+ * <p>
+ * Lookup statistics can be switched on with {@code setStatisticsEnabled} and
+ * read with {@code statistics}; while they are off the only cost is one
+ * field test per lookup.
+ * <p>
+ * Large maps are best built with {@code fromPairs}, which sizes the table once
+ * and links the buckets in parallel instead of calling {@code add} per pair.
  *
  * @param <K>
  *            type of {@code Map} domain (key) entries
@@ -15,24 +33,24 @@ import components.map.MapSecondary;
  *            type of {@code Map} range (associated value) entries
  * @convention <pre>
  * |$this.hashTable| > 0  and
- * for all i: integer, pf: PARTIAL_FUNCTION, x: K
+ * [|$this.hashTable| is a power of 2]  and
+ * for all i: integer, e: Node
  *     where (0 <= i  and  i < |$this.hashTable|  and
- *            <pf> = $this.hashTable[i, i+1)  and
- *            x is in DOMAIN(pf))
- *   ([computed result of x.hashCode()] mod |$this.hashTable| = i))  and
- * for all i: integer
- *     where (0 <= i  and  i < |$this.hashTable|)
- *   ([entry at position i in $this.hashTable is not null])  and
- * $this.size = sum i: integer, pf: PARTIAL_FUNCTION
- *     where (0 <= i  and  i < |$this.hashTable|  and
- *            <pf> = $this.hashTable[i, i+1))
- *   (|pf|)
+ *            [e is in the chain starting at $this.hashTable[i]])
+ *   (e.hash = [spread hash code of e.key]  and
+ *    e.hash mod |$this.hashTable| = i)  and
+ * [no key appears in more than one entry of the chains]  and
+ * $this.size = [total number of entries in all chains of $this.hashTable]  and
+ * $this.size <= |$this.entries|  and
+ * [$this.entries[0, $this.size) holds exactly the entries in the chains of
+ *  $this.hashTable]  and
+ * for all j: integer
+ *     where (0 <= j  and  j < $this.size)
+ *   ($this.entries[j].slot = j)
  * </pre>
  * @correspondence <pre>
- * this = union i: integer, pf: PARTIAL_FUNCTION
- *            where (0 <= i  and  i < |$this.hashTable|  and
- *                   <pf> = $this.hashTable[i, i+1))
- *          (pf)
+ * this = [set of (e.key, e.value) for every entry e in the chains of
+ *         $this.hashTable]
  * </pre>
  *
  * @author Roble Gure
@@ -47,12 +65,27 @@ public class Map4<K, V> extends MapSecondary<K, V> {
     /**
      * Default size of hash table.
      */
-    private static final int DEFAULT_HASH_TABLE_SIZE = 101;
+    private static final int DEFAULT_HASH_TABLE_SIZE = 128;
 
     /**
-     * Buckets for hashing.
+     * Largest hash table size allowed.
      */
-    private Map<K, V>[] hashTable;
+    private static final int MAXIMUM_HASH_TABLE_SIZE = 1 << 30;
+
+    /**
+     * Initial length of the dense entry array.
+     */
+    private static final int INITIAL_ENTRIES_LENGTH = 16;
+
+    /**
+     * Buckets for hashing; each is the first entry of a chain, or null.
+     */
+    private Node<K, V>[] hashTable;
+
+    /**
+     * Every entry of the chains, packed at the front of the array.
+     */
+    private Node<K, V>[] entries;
 
     /**
      * Total size of abstract {@code this}.
@@ -60,55 +93,278 @@ public class Map4<K, V> extends MapSecondary<K, V> {
     private int size;
 
     /**
-     * Computes {@code a} mod {@code b} as % should have been defined to work.
+     * Whether lookups are being counted.
+     */
+    private boolean statisticsEnabled;
+
+    /**
+     * Number of lookups counted since statistics were last enabled.
+     */
+    private long lookups;
+
+    /**
+     * Number of counted lookups that found their key.
+     */
+    private long hits;
+
+    /**
+     * Number of entries compared against the key by counted lookups.
+     */
+    private long probes;
+
+    /**
+     * Entry of a bucket chain. Doubles as the {@code Pair} returned by
+     * {@code remove}, {@code removeAny}, and the iterator.
      *
-     * @param a
-     *            the number being reduced
-     * @param b
-     *            the modulus
-     * @return the result of a mod b, which satisfies 0 <= {@code mod} < b
-     * @requires b > 0
+     * @param <K>
+     *            type of key
+     * @param <V>
+     *            type of value
+     */
+    private static final class Node<K, V> implements Pair<K, V> {
+
+        /**
+         * Spread hash code of {@code key}.
+         */
+        private final int hash;
+
+        /**
+         * The key.
+         */
+        private final K key;
+
+        /**
+         * The value.
+         */
+        private final V value;
+
+        /**
+         * Next entry in the same bucket, or null.
+         */
+        private Node<K, V> next;
+
+        /**
+         * Index of this entry in {@code entries}.
+         */
+        private int slot;
+
+        /**
+         * Constructor.
+         *
+         * @param hash
+         *            spread hash code of {@code key}
+         * @param key
+         *            the key
+         * @param value
+         *            the value
+         * @param next
+         *            next entry in the same bucket
+         */
+        Node(int hash, K key, V value, Node<K, V> next) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+
+        @Override
+        public K key() {
+            return this.key;
+        }
+
+        @Override
+        public V value() {
+            return this.value;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof Pair<?, ?>)) {
+                return false;
+            }
+            Pair<?, ?> pair = (Pair<?, ?>) obj;
+            return this.key.equals(pair.key())
+                    && this.value.equals(pair.value());
+        }
+
+        @Override
+        public int hashCode() {
+            final int prime = 31;
+            return this.key.hashCode() * prime + this.value.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "(" + this.key + "," + this.value + ")";
+        }
+
+    }
+
+    /**
+     * Mixes the high bits of {@code x.hashCode()} into the low bits, which
+     * are the only ones used to pick a bucket in a power-of-2 table.
+     *
+     * @param x
+     *            the key
+     * @return the spread hash code of {@code x}
+     */
+    private static int spread(Object x) {
+        int h = x.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the smallest power of 2 that is at least {@code n}.
+     *
+     * @param n
+     *            the requested hash table size
+     * @return the hash table size to use for {@code n}
+     * @requires n > 0
      * @ensures <pre>
-     * 0 <= mod  and  mod < b  and
-     * there exists k: integer (a = k * b + mod)
+     * [tableSizeFor is a power of 2]  and
+     * n <= tableSizeFor  and  tableSizeFor < 2 * n
      * </pre>
      */
-    private static int mod(int a, int b) {
-        assert b > 0 : "Violation of: b > 0";
+    private static int tableSizeFor(int n) {
+        assert n > 0 : "Violation of: n > 0";
 
-        int result = a % b;
-        while (result < 0) {
-            result += b;
+        int tableSize = 1;
+        while (tableSize < n && tableSize < MAXIMUM_HASH_TABLE_SIZE) {
+            tableSize <<= 1;
         }
-        return result;
+        return tableSize;
+    }
+
+    /**
+     * Returns the entry for {@code key}, or null if there is none.
+     *
+     * @param key
+     *            the key to look for
+     * @param hash
+     *            the spread hash code of {@code key}
+     * @return the entry whose key equals {@code key}, or null
+     */
+    private Node<K, V> find(K key, int hash) {
+        if (this.statisticsEnabled) {
+            return this.findCounted(key, hash);
+        }
+        Node<K, V> e = this.hashTable[hash & (this.hashTable.length - 1)];
+        while (e != null && (e.hash != hash
+                || (e.key != key && !key.equals(e.key)))) {
+            e = e.next;
+        }
+        return e;
+    }
+
+    /**
+     * Same as {@code find}, but also updates the lookup statistics.
+     *
+     * @param key
+     *            the key to look for
+     * @param hash
+     *            the spread hash code of {@code key}
+     * @return the entry whose key equals {@code key}, or null
+     */
+    private Node<K, V> findCounted(K key, int hash) {
+        Node<K, V> e = this.hashTable[hash & (this.hashTable.length - 1)];
+        this.lookups++;
+        while (e != null) {
+            this.probes++;
+            if (e.hash == hash && (e.key == key || key.equals(e.key))) {
+                this.hits++;
+                return e;
+            }
+            e = e.next;
+        }
+        return null;
+    }
+
+    /**
+     * Unlinks and returns the entry for {@code key}.
+     *
+     * @param key
+     *            the key to remove
+     * @param hash
+     *            the spread hash code of {@code key}
+     * @return the removed entry
+     * @requires [key is in some chain of $this.hashTable]
+     */
+    private Node<K, V> unlink(K key, int hash) {
+        int bucket = hash & (this.hashTable.length - 1);
+        Node<K, V> previous = null;
+        Node<K, V> e = this.hashTable[bucket];
+        while (e.hash != hash || (e.key != key && !key.equals(e.key))) {
+            previous = e;
+            e = e.next;
+        }
+        if (previous == null) {
+            this.hashTable[bucket] = e.next;
+        } else {
+            previous.next = e.next;
+        }
+        e.next = null;
+        return e;
+    }
+
+    /**
+     * Adds {@code e} at the end of the dense entry array, growing it if it is
+     * full.
+     *
+     * @param e
+     *            the entry to add
+     */
+    private void appendEntry(Node<K, V> e) {
+        if (this.size == this.entries.length) {
+            this.entries = Arrays.copyOf(this.entries,
+                    this.entries.length * 2);
+        }
+        e.slot = this.size;
+        this.entries[this.size] = e;
+    }
+
+    /**
+     * Removes {@code e} from the dense entry array by moving the last entry
+     * into its slot.
+     *
+     * @param e
+     *            the entry to remove
+     * @requires [e is in $this.entries[0, $this.size)]
+     */
+    private void removeEntry(Node<K, V> e) {
+        int last = this.size - 1;
+        Node<K, V> moved = this.entries[last];
+        this.entries[e.slot] = moved;
+        moved.slot = e.slot;
+        this.entries[last] = null;
     }
 
     /**
      * Creator of initial representation.
      *
      * @param hashTableSize
-     *            the size of the hash table
+     *            the requested size of the hash table
      * @requires hashTableSize > 0
      * @ensures <pre>
-     * |$this.hashTable| = hashTableSize  and
+     * |$this.hashTable| = [smallest power of 2 >= hashTableSize]  and
      * for all i: integer
      *     where (0 <= i  and  i < |$this.hashTable|)
-     *   ($this.hashTable[i, i+1) = <{}>)  and
+     *   ($this.hashTable[i] = null)  and
+     * $this.entries = [array of INITIAL_ENTRIES_LENGTH nulls]  and
      * $this.size = 0
      * </pre>
      */
     @SuppressWarnings("unchecked")
     private void createNewRep(int hashTableSize) {
         /*
-         * With "new Map<K, V>[...]" in place of "new Map[...]" it does not
+         * With "new Node<K, V>[...]" in place of "new Node[...]" it does not
          * compile; as shown, it results in a warning about an unchecked
          * conversion, though it cannot fail.
          */
-        this.hashTable = new Map[hashTableSize];
-
-        for (int i = 0; i < hashTableSize; i++) {
-            this.hashTable[i] = new Map2<K, V>();
-        }
+        this.hashTable = new Node[tableSizeFor(hashTableSize)];
+        this.entries = new Node[INITIAL_ENTRIES_LENGTH];
         this.size = 0;
 
     }
@@ -127,7 +383,8 @@ public class Map4<K, V> extends MapSecondary<K, V> {
     }
 
     /**
-     * Constructor resulting in a hash table of size {@code hashTableSize}.
+     * Constructor resulting in a hash table of size {@code hashTableSize},
+     * rounded up to a power of 2.
      *
      * @param hashTableSize
      *            size of hash table
@@ -173,6 +430,7 @@ public class Map4<K, V> extends MapSecondary<K, V> {
          */
         Map4<K, V> localSource = (Map4<K, V>) source;
         this.hashTable = localSource.hashTable;
+        this.entries = localSource.entries;
         this.size = localSource.size;
         localSource.createNewRep(DEFAULT_HASH_TABLE_SIZE);
     }
@@ -187,10 +445,15 @@ public class Map4<K, V> extends MapSecondary<K, V> {
         assert value != null : "Violation of: value is not null";
         assert !this.hasKey(key) : "Violation of: key is not in DOMAIN(this)";
 
-        // computes the hashcode, uses mod to check and see what
-        // bucket it fits in, adds it to txhe bucket, increments by one
-        int bucket = mod(key.hashCode(), this.hashTable.length);
-        this.hashTable[bucket].add(key, value);
+        // computes the spread hashcode once, masks it to find the bucket,
+        // pushes a new entry on the front of that bucket's chain and
+        // appends it to the dense entry array
+        int hash = spread(key);
+        int bucket = hash & (this.hashTable.length - 1);
+        Node<K, V> e = new Node<K, V>(hash, key, value,
+                this.hashTable[bucket]);
+        this.hashTable[bucket] = e;
+        this.appendEntry(e);
         this.size++;
     }
 
@@ -199,29 +462,24 @@ public class Map4<K, V> extends MapSecondary<K, V> {
         assert key != null : "Violation of: key is not null";
         assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
 
-        // computes the hashcode, uses mod to check and see what
-        // bucket it fits in, key value pair is removed from the bucket and returned,
-        // decrement the size of the hash table
-        int bucket = mod(key.hashCode(), this.hashTable.length);
-        Pair<K, V> remove2 = this.hashTable[bucket].remove(key);
+        // the unlinked entry is itself the pair that is returned
+        Node<K, V> removed = this.unlink(key, spread(key));
+        this.removeEntry(removed);
         this.size--;
-        return remove2;
+        return removed;
     }
 
     @Override
     public final Pair<K, V> removeAny() {
         assert this.size() > 0 : "Violation of: this /= empty_set";
 
-        // iterates through the hashtable trying to the find the bucket that
-        // contains zero, removeAny is called then it removes an arbitrary
-        // element, decrement the size of the hashtable
-        int i = 0;
-        while (this.hashTable[i].size() == 0) {
-            i++;
-        }
+        // takes the first entry of the dense array, so no empty buckets are
+        // scanned; only its own (short) chain is walked to unlink it
+        Node<K, V> removed = this.unlink(this.entries[0].key,
+                this.entries[0].hash);
+        this.removeEntry(removed);
         this.size--;
-        Pair<K, V> removedPair = this.hashTable[i].removeAny();
-        return removedPair;
+        return removed;
     }
 
     @Override
@@ -229,22 +487,14 @@ public class Map4<K, V> extends MapSecondary<K, V> {
         assert key != null : "Violation of: key is not null";
         assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
 
-        // computes the hashcode, uses mod to check and see what
-        // bucket it fits in, find the value associated with the key and return it
-        int bucket = mod(key.hashCode(), this.hashTable.length);
-        V value2 = this.hashTable[bucket].value(key);
-        return value2;
+        return this.find(key, spread(key)).value;
     }
 
     @Override
     public final boolean hasKey(K key) {
         assert key != null : "Violation of: key is not null";
 
-        // computes the hashcode, uses mod to check and see what
-        // bucket it fits in, check if that key exists and return it
-        int bucket = mod(key.hashCode(), this.hashTable.length);
-        boolean containsKey = this.hashTable[bucket].hasKey(key);
-        return containsKey;
+        return this.find(key, spread(key)) != null;
     }
 
     @Override
@@ -259,33 +509,498 @@ public class Map4<K, V> extends MapSecondary<K, V> {
         return new Map4Iterator();
     }
 
+    /*
+     * Other methods ----------------------------------------------------------
+     */
+
     /**
-     * Implementation of {@code Iterator} interface for {@code Map4}.
+     * Returns a new {@code Map4} holding the given pairs, with one bucket per
+     * pair (rounded up to a power of 2). The hash codes are computed and the
+     * buckets linked in parallel on the common {@code ForkJoinPool}: pairs are
+     * first grouped by bucket with a counting sort, then each task links a
+     * disjoint range of buckets, so no locking is needed.
+     *
+     * @param <K>
+     *            type of keys
+     * @param <V>
+     *            type of values
+     * @param keys
+     *            the keys
+     * @param values
+     *            the values, parallel to {@code keys}
+     * @return the new map
+     * @requires <pre>
+     * |keys| = |values|  and
+     * [no entry of keys or values is null]  and
+     * [the entries of keys are unique]
+     * </pre>
+     * @ensures fromPairs = [set of (keys[i], values[i])]
      */
-    private final class Map4Iterator implements Iterator<Pair<K, V>> {
+    public static <K, V> Map4<K, V> fromPairs(K[] keys, V[] values) {
+        assert keys != null : "Violation of: keys is not null";
+        assert values != null : "Violation of: values is not null";
+        assert keys.length == values.length : ""
+                + "Violation of: |keys| = |values|";
+
+        int n = keys.length;
+        Map4<K, V> result = new Map4<K, V>(
+                Math.max(n, DEFAULT_HASH_TABLE_SIZE));
+        int mask = result.hashTable.length - 1;
+        int[] hashes = new int[n];
+        Arrays.parallelSetAll(hashes, i -> spread(keys[i]));
+
+        // counting sort of the pair indices by bucket
+        int[] bucketStart = new int[result.hashTable.length + 1];
+        for (int hash : hashes) {
+            bucketStart[(hash & mask) + 1]++;
+        }
+        for (int b = 0; b < result.hashTable.length; b++) {
+            bucketStart[b + 1] += bucketStart[b];
+        }
+        int[] order = new int[n];
+        int[] fill = Arrays.copyOf(bucketStart, result.hashTable.length);
+        for (int i = 0; i < n; i++) {
+            int b = hashes[i] & mask;
+            order[fill[b]] = i;
+            fill[b]++;
+        }
+
+        if (result.entries.length < n) {
+            result.entries = Arrays.copyOf(result.entries, n);
+        }
+        ForkJoinPool.commonPool().invoke(new ChainBuilder<K, V>(result, keys,
+                values, hashes, bucketStart, order, 0,
+                result.hashTable.length));
+        result.size = n;
+        return result;
+    }
+
+    /**
+     * Returns a new {@code Map4} holding the pairs of {@code pairs}; see
+     * {@link #fromPairs(Object[], Object[])}.
+     *
+     * @param <K>
+     *            type of keys
+     * @param <V>
+     *            type of values
+     * @param pairs
+     *            the pairs
+     * @return the new map
+     * @requires [the keys of pairs are unique and not null, and the values are
+     *           not null]
+     * @ensures fromPairs = [set of pairs in pairs]
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> Map4<K, V> fromPairs(Iterable<Pair<K, V>> pairs) {
+        assert pairs != null : "Violation of: pairs is not null";
+
+        List<Pair<K, V>> list = new ArrayList<>();
+        for (Pair<K, V> p : pairs) {
+            list.add(p);
+        }
+        K[] keys = (K[]) new Object[list.size()];
+        V[] values = (V[]) new Object[list.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = list.get(i).key();
+            values[i] = list.get(i).value();
+        }
+        return fromPairs(keys, values);
+    }
+
+    /**
+     * Returns a new {@code Map4} holding the pairs of {@code pairs}; see
+     * {@link #fromPairs(Object[], Object[])}.
+     *
+     * @param <K>
+     *            type of keys
+     * @param <V>
+     *            type of values
+     * @param pairs
+     *            the pairs
+     * @return the new map
+     * @requires [the keys of pairs are unique and not null, and the values are
+     *           not null]
+     * @ensures fromPairs = [set of pairs in pairs]
+     */
+    public static <K, V> Map4<K, V> fromPairs(Stream<Pair<K, V>> pairs) {
+        assert pairs != null : "Violation of: pairs is not null";
+
+        return fromPairs(pairs::iterator);
+    }
+
+    /**
+     * Turns counting of lookups by {@code hasKey} and {@code value} on or off.
+     * Turning it on resets the counts. With assertion-checking enabled the
+     * precondition checks of the kernel methods are counted too.
+     *
+     * @param enabled
+     *            whether to count lookups
+     * @updates this.statistics
+     */
+    public final void setStatisticsEnabled(boolean enabled) {
+        if (enabled && !this.statisticsEnabled) {
+            this.lookups = 0;
+            this.hits = 0;
+            this.probes = 0;
+        }
+        this.statisticsEnabled = enabled;
+    }
+
+    /**
+     * Returns a snapshot of how the entries are spread over the buckets and of
+     * the lookups counted so far. The bucket figures are always available;
+     * the lookup figures are zero unless statistics are enabled.
+     *
+     * @return the statistics snapshot
+     */
+    public final Statistics statistics() {
+        int maxChain = 0;
+        int[] chainLengths = new int[this.hashTable.length];
+        for (int i = 0; i < this.hashTable.length; i++) {
+            int length = 0;
+            for (Node<K, V> e = this.hashTable[i]; e != null; e = e.next) {
+                length++;
+            }
+            chainLengths[i] = length;
+            maxChain = Math.max(maxChain, length);
+        }
+        int[] histogram = new int[maxChain + 1];
+        for (int length : chainLengths) {
+            histogram[length]++;
+        }
+        return new Statistics(this.size, histogram, this.lookups, this.hits,
+                this.probes);
+    }
+
+    /**
+     * Immutable snapshot of the bucket occupancy and lookup counts of a
+     * {@code Map4}, returned by {@code statistics}.
+     */
+    public static final class Statistics {
 
         /**
-         * Number of elements seen already (i.e., |~this.seen|).
+         * Number of entries in the map.
          */
-        private int numberSeen;
+        private final int size;
+
+        /**
+         * Entry k is the number of buckets holding exactly k entries.
+         */
+        private final int[] bucketSizeHistogram;
+
+        /**
+         * Number of counted lookups.
+         */
+        private final long lookups;
+
+        /**
+         * Number of counted lookups that found their key.
+         */
+        private final long hits;
+
+        /**
+         * Number of entries compared by counted lookups.
+         */
+        private final long probes;
+
+        /**
+         * Constructor.
+         *
+         * @param size
+         *            number of entries in the map
+         * @param bucketSizeHistogram
+         *            number of buckets of each chain length
+         * @param lookups
+         *            number of counted lookups
+         * @param hits
+         *            number of counted lookups that found their key
+         * @param probes
+         *            number of entries compared by counted lookups
+         */
+        Statistics(int size, int[] bucketSizeHistogram, long lookups,
+                long hits, long probes) {
+            this.size = size;
+            this.bucketSizeHistogram = bucketSizeHistogram;
+            this.lookups = lookups;
+            this.hits = hits;
+            this.probes = probes;
+        }
+
+        /**
+         * Returns the number of entries in the map.
+         *
+         * @return the size of the map
+         */
+        public int size() {
+            return this.size;
+        }
+
+        /**
+         * Returns the number of buckets in the hash table.
+         *
+         * @return the hash table size
+         */
+        public int bucketCount() {
+            int count = 0;
+            for (int buckets : this.bucketSizeHistogram) {
+                count += buckets;
+            }
+            return count;
+        }
+
+        /**
+         * Returns the bucket-size histogram: entry k is the number of buckets
+         * holding exactly k entries.
+         *
+         * @return a copy of the histogram
+         */
+        public int[] bucketSizeHistogram() {
+            return this.bucketSizeHistogram.clone();
+        }
+
+        /**
+         * Returns the length of the longest chain.
+         *
+         * @return the largest number of entries in one bucket
+         */
+        public int maxChainLength() {
+            return this.bucketSizeHistogram.length - 1;
+        }
+
+        /**
+         * Returns the number of counted lookups.
+         *
+         * @return the lookup count
+         */
+        public long lookups() {
+            return this.lookups;
+        }
+
+        /**
+         * Returns the number of counted lookups that found their key.
+         *
+         * @return the hit count
+         */
+        public long hits() {
+            return this.hits;
+        }
+
+        /**
+         * Returns the number of counted lookups that did not find their key.
+         *
+         * @return the miss count
+         */
+        public long misses() {
+            return this.lookups - this.hits;
+        }
+
+        /**
+         * Returns the fraction of counted lookups that found their key, or 0
+         * if there were none.
+         *
+         * @return the hit ratio
+         */
+        public double hitRatio() {
+            double ratio = 0;
+            if (this.lookups > 0) {
+                ratio = (double) this.hits / this.lookups;
+            }
+            return ratio;
+        }
+
+        /**
+         * Returns the average number of entries compared per counted lookup,
+         * or 0 if there were none.
+         *
+         * @return the average probe count
+         */
+        public double averageProbes() {
+            double average = 0;
+            if (this.lookups > 0) {
+                average = (double) this.probes / this.lookups;
+            }
+            return average;
+        }
+
+        @Override
+        public String toString() {
+            return "size=" + this.size + ", buckets=" + this.bucketCount()
+                    + ", maxChain=" + this.maxChainLength() + ", histogram="
+                    + Arrays.toString(this.bucketSizeHistogram) + ", lookups="
+                    + this.lookups + ", hitRatio=" + this.hitRatio()
+                    + ", avgProbes=" + this.averageProbes();
+        }
+
+    }
+
+    /**
+     * Task that links the chains of a range of buckets for {@code fromPairs},
+     * splitting the range in half until it is small.
+     *
+     * @param <K>
+     *            type of key
+     * @param <V>
+     *            type of value
+     */
+    private static final class ChainBuilder<K, V> extends RecursiveAction {
+
+        /**
+         * Serialization id required for subclasses of {@code RecursiveAction}.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Bucket ranges at most this large are linked without splitting.
+         */
+        private static final int THRESHOLD = 1 << 12;
+
+        /**
+         * Map being built.
+         */
+        private final transient Map4<K, V> map;
+
+        /**
+         * Keys of the pairs.
+         */
+        private final transient K[] keys;
+
+        /**
+         * Values of the pairs.
+         */
+        private final transient V[] values;
 
         /**
-         * Bucket from which current bucket iterator comes.
+         * Spread hash codes of the keys.
          */
-        private int currentBucket;
+        private final int[] hashes;
 
         /**
-         * Bucket iterator from which next element will come.
+         * Pairs of bucket b are order[bucketStart[b], bucketStart[b+1]).
          */
-        private Iterator<Pair<K, V>> bucketIterator;
+        private final int[] bucketStart;
+
+        /**
+         * Pair indices grouped by bucket.
+         */
+        private final int[] order;
+
+        /**
+         * First bucket of the range.
+         */
+        private final int low;
+
+        /**
+         * One past the last bucket of the range.
+         */
+        private final int high;
+
+        /**
+         * Constructor.
+         *
+         * @param map
+         *            map being built
+         * @param keys
+         *            keys of the pairs
+         * @param values
+         *            values of the pairs
+         * @param hashes
+         *            spread hash codes of the keys
+         * @param bucketStart
+         *            start of each bucket's pairs in {@code order}
+         * @param order
+         *            pair indices grouped by bucket
+         * @param low
+         *            first bucket of the range
+         * @param high
+         *            one past the last bucket of the range
+         */
+        ChainBuilder(Map4<K, V> map, K[] keys, V[] values, int[] hashes,
+                int[] bucketStart, int[] order, int low, int high) {
+            this.map = map;
+            this.keys = keys;
+            this.values = values;
+            this.hashes = hashes;
+            this.bucketStart = bucketStart;
+            this.order = order;
+            this.low = low;
+            this.high = high;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.high - this.low > THRESHOLD) {
+                int middle = (this.low + this.high) >>> 1;
+                invokeAll(
+                        new ChainBuilder<K, V>(this.map, this.keys,
+                                this.values, this.hashes, this.bucketStart,
+                                this.order, this.low, middle),
+                        new ChainBuilder<K, V>(this.map, this.keys,
+                                this.values, this.hashes, this.bucketStart,
+                                this.order, middle, this.high));
+            } else {
+                for (int b = this.low; b < this.high; b++) {
+                    Node<K, V> head = null;
+                    for (int j = this.bucketStart[b]; j < this.bucketStart[b
+                            + 1]; j++) {
+                        int i = this.order[j];
+                        K key = this.keys[i];
+                        assert key != null : ""
+                                + "Violation of: keys[i] is not null";
+                        assert this.values[i] != null : ""
+                                + "Violation of: values[i] is not null";
+                        assert !chainHasKey(head, key,
+                                this.hashes[i]) : "Violation of: "
+                                        + "the entries of keys are unique";
+                        head = new Node<K, V>(this.hashes[i], key,
+                                this.values[i], head);
+                        head.slot = j;
+                        this.map.entries[j] = head;
+                    }
+                    this.map.hashTable[b] = head;
+                }
+            }
+        }
+
+        /**
+         * Reports whether the chain starting at {@code head} has an entry for
+         * {@code key}.
+         *
+         * @param head
+         *            first entry of the chain
+         * @param key
+         *            the key to look for
+         * @param hash
+         *            the spread hash code of {@code key}
+         * @return true iff {@code key} is in the chain
+         */
+        private static boolean chainHasKey(Node<?, ?> head, Object key,
+                int hash) {
+            Node<?, ?> e = head;
+            while (e != null && (e.hash != hash || !key.equals(e.key))) {
+                e = e.next;
+            }
+            return e != null;
+        }
+
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for {@code Map4}. It walks
+     * the dense entry array, so it allocates nothing per bucket or per entry.
+     */
+    private final class Map4Iterator implements Iterator<Pair<K, V>> {
+
+        /**
+         * Number of elements seen already (i.e., |~this.seen|); also the index
+         * in {@code entries} of the next element.
+         */
+        private int numberSeen;
 
         /**
          * No-argument constructor.
          */
         Map4Iterator() {
             this.numberSeen = 0;
-            this.currentBucket = 0;
-            this.bucketIterator = Map4.this.hashTable[0].iterator();
         }
 
         @Override
@@ -304,13 +1019,9 @@ public class Map4<K, V> extends MapSecondary<K, V> {
                  */
                 throw new NoSuchElementException();
             }
+            Node<K, V> result = Map4.this.entries[this.numberSeen];
             this.numberSeen++;
-            while (!this.bucketIterator.hasNext()) {
-                this.currentBucket++;
-                this.bucketIterator = Map4.this.hashTable[this.currentBucket]
-                        .iterator();
-            }
-            return this.bucketIterator.next();
+            return result;
         }
 
         @Override
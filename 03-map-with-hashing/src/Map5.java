@@ -0,0 +1,672 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.map.Map;
+import components.map.MapSecondary;
+
+/**
+ * {@code Map} represented as an open-addressing hash table stored in flat
+ * key/value/hash arrays, with implementations of primary methods. The table
+ * uses linear probing and grows incrementally: once the load factor passes
+ * {@code MAX_LOAD_FACTOR} a table twice as large is allocated, and each later
+ * call to {@code add} or {@code remove} migrates a few slots from the old
+ * table to the new one, so no single call pays for the whole rehash.
+ *
+ * @param <K>
+ *            type of {@code Map} domain (key) entries
+ * @param <V>
+ *            type of {@code Map} range (associated value) entries
+ * @convention <pre>
+ * |$this.keys| = |$this.values| = |$this.hashes|  and
+ * |$this.keys| is a power of 2  and
+ * [every non-null entry of $this.keys at index i has its spread hash code at
+ *  $this.hashes[i] and is reachable from index
+ *  ($this.hashes[i] mod |$this.keys|) by linear probing without passing a
+ *  null entry]  and
+ * [$this.keys contains no TOMBSTONE entries]  and
+ * 0 <= $this.scanStart <= |$this.keys|  and
+ * [entries of $this.keys at indices < $this.scanStart are null]  and
+ * if $this.oldKeys /= null then
+ *   |$this.oldKeys| = |$this.oldValues| = |$this.oldHashes|  and
+ *   0 <= $this.migrated <= |$this.oldKeys|  and
+ *   [entries of $this.oldKeys at indices < $this.migrated are null or
+ *    TOMBSTONE]  and
+ *   [every entry of $this.oldKeys that is neither null nor TOMBSTONE is
+ *    reachable from its home index by linear probing without passing a null
+ *    entry]  and
+ * [no key appears in both $this.keys and $this.oldKeys]  and
+ * $this.size = [number of entries of $this.keys and $this.oldKeys that are
+ *               neither null nor TOMBSTONE]
+ * </pre>
+ * @correspondence <pre>
+ * this = [set of (k, v) pairs where, for some i, k = $this.keys[i] and
+ *         v = $this.values[i], or k = $this.oldKeys[i] and
+ *         v = $this.oldValues[i], and k is neither null nor TOMBSTONE]
+ * </pre>
+ *
+ * @author Jared Alonzo
+ *
+ */
+public class Map5<K, V> extends MapSecondary<K, V> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Default capacity of hash table.
+     */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * Largest capacity the table is allowed to grow to.
+     */
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    /**
+     * Load factor (size / capacity) above which the table starts to grow.
+     */
+    private static final double MAX_LOAD_FACTOR = 0.5;
+
+    /**
+     * Number of old-table slots migrated by each {@code add} or
+     * {@code remove} while the table is growing.
+     */
+    private static final int MIGRATION_STEP = 8;
+
+    /**
+     * Marker left in an old-table slot whose entry has been removed or
+     * migrated, so that probe sequences through it stay intact.
+     */
+    private static final Object TOMBSTONE = new Object();
+
+    /**
+     * Keys of the current table; {@code null} marks an empty slot.
+     */
+    private Object[] keys;
+
+    /**
+     * Values of the current table, parallel to {@code keys}.
+     */
+    private Object[] values;
+
+    /**
+     * Spread hash codes of the current table, parallel to {@code keys}.
+     */
+    private int[] hashes;
+
+    /**
+     * Index below which every slot of the current table is empty, where
+     * {@code removeAny} starts looking for an entry.
+     */
+    private int scanStart;
+
+    /**
+     * Slot of the current table that {@code removeAny} last emptied, less
+     * one: a hint to the end of the cluster it is draining.
+     */
+    private int drainEnd;
+
+    /**
+     * Keys of the table being migrated, or {@code null} when not growing.
+     */
+    private Object[] oldKeys;
+
+    /**
+     * Values of the table being migrated, parallel to {@code oldKeys}.
+     */
+    private Object[] oldValues;
+
+    /**
+     * Spread hash codes of the table being migrated, parallel to
+     * {@code oldKeys}.
+     */
+    private int[] oldHashes;
+
+    /**
+     * Number of slots of the old table already migrated.
+     */
+    private int migrated;
+
+    /**
+     * Total size of abstract {@code this}.
+     */
+    private int size;
+
+    /**
+     * Simple immutable {@code Pair} returned by {@code remove} and
+     * {@code removeAny} and produced by the iterator.
+     *
+     * @param <K>
+     *            type of key
+     * @param <V>
+     *            type of value
+     */
+    private static final class Entry<K, V> implements Pair<K, V> {
+
+        /**
+         * The key.
+         */
+        private final K key;
+
+        /**
+         * The value.
+         */
+        private final V value;
+
+        /**
+         * Constructor.
+         *
+         * @param key
+         *            the key
+         * @param value
+         *            the value
+         */
+        Entry(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public K key() {
+            return this.key;
+        }
+
+        @Override
+        public V value() {
+            return this.value;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof Pair<?, ?>)) {
+                return false;
+            }
+            Pair<?, ?> pair = (Pair<?, ?>) obj;
+            return this.key.equals(pair.key())
+                    && this.value.equals(pair.value());
+        }
+
+        @Override
+        public int hashCode() {
+            final int prime = 31;
+            return this.key.hashCode() * prime + this.value.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "(" + this.key + "," + this.value + ")";
+        }
+
+    }
+
+    /**
+     * Mixes the high bits of {@code x.hashCode()} into the low bits, which
+     * are the only ones used to pick a slot in a power-of-2 table.
+     *
+     * @param x
+     *            the key
+     * @return the spread hash code of {@code x}
+     */
+    private static int spread(Object x) {
+        int h = x.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the smallest power of 2 that is at least {@code n}.
+     *
+     * @param n
+     *            the requested capacity
+     * @return the table capacity to use for {@code n}
+     * @requires n > 0
+     * @ensures <pre>
+     * [tableSizeFor is a power of 2]  and
+     * n <= tableSizeFor  and  tableSizeFor < 2 * n
+     * </pre>
+     */
+    private static int tableSizeFor(int n) {
+        assert n > 0 : "Violation of: n > 0";
+
+        int capacity = 1;
+        while (capacity < n && capacity < MAXIMUM_CAPACITY) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * Returns the index in {@code table} at which {@code key} with spread hash
+     * {@code hash} is stored, or -1 if it is not there. Slots holding
+     * {@code TOMBSTONE} are skipped.
+     *
+     * @param table
+     *            the keys array to search
+     * @param tableHashes
+     *            the hash array parallel to {@code table}
+     * @param key
+     *            the key to look for
+     * @param hash
+     *            the spread hash code of {@code key}
+     * @return the index of {@code key} in {@code table}, or -1
+     */
+    private static int indexOf(Object[] table, int[] tableHashes, Object key,
+            int hash) {
+        int mask = table.length - 1;
+        int i = hash & mask;
+        Object k = table[i];
+        while (k != null) {
+            if (tableHashes[i] == hash && (k == key || key.equals(k))) {
+                return i;
+            }
+            i = (i + 1) & mask;
+            k = table[i];
+        }
+        return -1;
+    }
+
+    /**
+     * Stores the given entry in the first free slot of its probe sequence in
+     * the current table.
+     *
+     * @param key
+     *            the key
+     * @param value
+     *            the value
+     * @param hash
+     *            the spread hash code of {@code key}
+     * @requires [key is not in the current table]
+     */
+    private void insert(Object key, Object value, int hash) {
+        int mask = this.keys.length - 1;
+        int i = hash & mask;
+        while (this.keys[i] != null) {
+            i = (i + 1) & mask;
+        }
+        this.keys[i] = key;
+        this.values[i] = value;
+        this.hashes[i] = hash;
+        this.scanStart = Math.min(this.scanStart, i);
+    }
+
+    /**
+     * Removes the entry at index {@code i} of the current table, shifting
+     * later entries of the same cluster back so that no tombstone is needed.
+     *
+     * @param i
+     *            the index of the entry to remove
+     */
+    private void deleteAt(int i) {
+        int mask = this.keys.length - 1;
+        int hole = i;
+        int j = (hole + 1) & mask;
+        while (this.keys[j] != null) {
+            int home = this.hashes[j] & mask;
+            /*
+             * The entry at j can move into the hole only if its home slot is
+             * not cyclically in (hole, j].
+             */
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                this.keys[hole] = this.keys[j];
+                this.values[hole] = this.values[j];
+                this.hashes[hole] = this.hashes[j];
+                hole = j;
+            }
+            j = (j + 1) & mask;
+        }
+        this.keys[hole] = null;
+        this.values[hole] = null;
+    }
+
+    /**
+     * Starts growing the table if the load factor has been exceeded, and
+     * otherwise migrates the next few slots of a table that is already
+     * growing.
+     */
+    private void growStep() {
+        if (this.oldKeys == null) {
+            if (this.size > this.keys.length * MAX_LOAD_FACTOR
+                    && this.keys.length < MAXIMUM_CAPACITY) {
+                this.oldKeys = this.keys;
+                this.oldValues = this.values;
+                this.oldHashes = this.hashes;
+                this.migrated = 0;
+                int capacity = this.oldKeys.length * 2;
+                this.keys = new Object[capacity];
+                this.values = new Object[capacity];
+                this.hashes = new int[capacity];
+                this.scanStart = capacity;
+                this.drainEnd = 0;
+            }
+        } else {
+            int limit = Math.min(this.migrated + MIGRATION_STEP,
+                    this.oldKeys.length);
+            while (this.migrated < limit) {
+                Object k = this.oldKeys[this.migrated];
+                if (k != null && k != TOMBSTONE) {
+                    this.insert(k, this.oldValues[this.migrated],
+                            this.oldHashes[this.migrated]);
+                    this.oldKeys[this.migrated] = TOMBSTONE;
+                    this.oldValues[this.migrated] = null;
+                }
+                this.migrated++;
+            }
+            if (this.migrated == this.oldKeys.length) {
+                this.oldKeys = null;
+                this.oldValues = null;
+                this.oldHashes = null;
+            }
+        }
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param capacity
+     *            the requested initial capacity of the hash table
+     * @requires capacity > 0
+     * @ensures <pre>
+     * |$this.keys| = [smallest power of 2 >= capacity]  and
+     * $this.scanStart = |$this.keys|  and
+     * $this.oldKeys = null  and
+     * $this.size = 0
+     * </pre>
+     */
+    private void createNewRep(int capacity) {
+        int tableSize = tableSizeFor(capacity);
+        this.keys = new Object[tableSize];
+        this.values = new Object[tableSize];
+        this.hashes = new int[tableSize];
+        this.scanStart = tableSize;
+        this.drainEnd = 0;
+        this.oldKeys = null;
+        this.oldValues = null;
+        this.oldHashes = null;
+        this.migrated = 0;
+        this.size = 0;
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public Map5() {
+
+        this.createNewRep(DEFAULT_CAPACITY);
+
+    }
+
+    /**
+     * Constructor resulting in a hash table with initial capacity of at least
+     * {@code capacity}.
+     *
+     * @param capacity
+     *            initial capacity of hash table
+     * @requires capacity > 0
+     * @ensures this = {}
+     */
+    public Map5(int capacity) {
+
+        this.createNewRep(capacity);
+
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Map<K, V> newInstance() {
+        try {
+            return this.getClass().getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep(DEFAULT_CAPACITY);
+    }
+
+    @Override
+    public final void transferFrom(Map<K, V> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof Map5<?, ?> : ""
+                + "Violation of: source is of dynamic type Map5<?,?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type Map5<?,?>, and
+         * the ?,? must be K,V or the call would not have compiled.
+         */
+        Map5<K, V> localSource = (Map5<K, V>) source;
+        this.keys = localSource.keys;
+        this.values = localSource.values;
+        this.hashes = localSource.hashes;
+        this.scanStart = localSource.scanStart;
+        this.drainEnd = localSource.drainEnd;
+        this.oldKeys = localSource.oldKeys;
+        this.oldValues = localSource.oldValues;
+        this.oldHashes = localSource.oldHashes;
+        this.migrated = localSource.migrated;
+        this.size = localSource.size;
+        localSource.createNewRep(DEFAULT_CAPACITY);
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(K key, V value) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+        assert !this.hasKey(key) : "Violation of: key is not in DOMAIN(this)";
+
+        // new entries always go to the current table; the old one only drains
+        this.insert(key, value, spread(key));
+        this.size++;
+        this.growStep();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Pair<K, V> remove(K key) {
+        assert key != null : "Violation of: key is not null";
+        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        int hash = spread(key);
+        Pair<K, V> removed;
+        int i = indexOf(this.keys, this.hashes, key, hash);
+        if (i >= 0) {
+            removed = new Entry<K, V>((K) this.keys[i], (V) this.values[i]);
+            this.deleteAt(i);
+        } else {
+            // not yet migrated; leave a tombstone so probing still works
+            i = indexOf(this.oldKeys, this.oldHashes, key, hash);
+            removed = new Entry<K, V>((K) this.oldKeys[i],
+                    (V) this.oldValues[i]);
+            this.oldKeys[i] = TOMBSTONE;
+            this.oldValues[i] = null;
+        }
+        this.size--;
+        this.growStep();
+        return removed;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Pair<K, V> removeAny() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        // drain the old table first so that migration finishes sooner
+        if (this.oldKeys != null) {
+            for (int i = this.migrated; i < this.oldKeys.length; i++) {
+                Object k = this.oldKeys[i];
+                if (k != null && k != TOMBSTONE) {
+                    Pair<K, V> removed = new Entry<K, V>((K) k,
+                            (V) this.oldValues[i]);
+                    this.oldKeys[i] = TOMBSTONE;
+                    this.oldValues[i] = null;
+                    this.size--;
+                    this.growStep();
+                    return removed;
+                }
+            }
+        }
+        // slots below scanStart are empty, so a drain scans the table once;
+        // deleteAt only moves entries into slots that held entries
+        int first = this.scanStart;
+        while (this.keys[first] == null) {
+            first++;
+        }
+        this.scanStart = first;
+        /*
+         * Take the last entry of the first cluster, which deleteAt removes
+         * without walking the rest of the cluster. Each call moves the end one
+         * slot back, so drainEnd finds it without walking the cluster again.
+         */
+        int i = this.drainEnd;
+        if (i < first || i >= this.keys.length || this.keys[i] == null) {
+            i = first;
+        }
+        int mask = this.keys.length - 1;
+        while (this.keys[(i + 1) & mask] != null) {
+            i = (i + 1) & mask;
+        }
+        this.drainEnd = i - 1;
+        Pair<K, V> removed = new Entry<K, V>((K) this.keys[i],
+                (V) this.values[i]);
+        this.deleteAt(i);
+        this.size--;
+        this.growStep();
+        return removed;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final V value(K key) {
+        assert key != null : "Violation of: key is not null";
+        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        int hash = spread(key);
+        int i = indexOf(this.keys, this.hashes, key, hash);
+        if (i >= 0) {
+            return (V) this.values[i];
+        }
+        i = indexOf(this.oldKeys, this.oldHashes, key, hash);
+        return (V) this.oldValues[i];
+    }
+
+    @Override
+    public final boolean hasKey(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        int hash = spread(key);
+        return indexOf(this.keys, this.hashes, key, hash) >= 0
+                || (this.oldKeys != null && indexOf(this.oldKeys,
+                        this.oldHashes, key, hash) >= 0);
+    }
+
+    @Override
+    public final int size() {
+        return this.size;
+    }
+
+    @Override
+    public final Iterator<Pair<K, V>> iterator() {
+        return new Map5Iterator();
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for {@code Map5}. Visits
+     * the unmigrated part of the old table, then the current table.
+     */
+    private final class Map5Iterator implements Iterator<Pair<K, V>> {
+
+        /**
+         * Number of elements seen already (i.e., |~this.seen|).
+         */
+        private int numberSeen;
+
+        /**
+         * Whether the old table is still being visited.
+         */
+        private boolean inOldTable;
+
+        /**
+         * Index of the next slot to examine.
+         */
+        private int index;
+
+        /**
+         * No-argument constructor.
+         */
+        Map5Iterator() {
+            this.numberSeen = 0;
+            this.inOldTable = Map5.this.oldKeys != null;
+            this.index = Map5.this.migrated;
+            if (!this.inOldTable) {
+                this.index = 0;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.numberSeen < Map5.this.size;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public Pair<K, V> next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            this.numberSeen++;
+            if (this.inOldTable) {
+                Object[] table = Map5.this.oldKeys;
+                while (this.index < table.length) {
+                    Object k = table[this.index];
+                    this.index++;
+                    if (k != null && k != TOMBSTONE) {
+                        return new Entry<K, V>((K) k,
+                                (V) Map5.this.oldValues[this.index - 1]);
+                    }
+                }
+                this.inOldTable = false;
+                this.index = 0;
+            }
+            while (Map5.this.keys[this.index] == null) {
+                this.index++;
+            }
+            Pair<K, V> result = new Entry<K, V>(
+                    (K) Map5.this.keys[this.index],
+                    (V) Map5.this.values[this.index]);
+            this.index++;
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+}
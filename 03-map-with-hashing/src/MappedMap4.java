@@ -0,0 +1,1125 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.map.Map;
+import components.map.MapSecondary;
+
+/**
+ * {@code Map} represented as a chained hash table kept in a memory-mapped
+ * file, with implementations of primary methods. Keys and values are stored
+ * as bytes produced by {@code Codec}s, so the table and entries live outside
+ * the Java heap, and opening an existing file makes its contents available at
+ * once, without rebuilding anything.
+ * <p>
+ * File layout: a header of {@code HEADER_SIZE} bytes (magic number, region
+ * size, size, bucket count, offset of the bucket table, end of used data, and
+ * the heads of the free lists), then blocks. Every block is a power of 2
+ * bytes long, at least {@code 1 << MIN_BLOCK_SHIFT}, and starts at a multiple
+ * of its length. The bucket table is one block holding a {@code long} per
+ * bucket, the offset of the first record of its chain (0 for none). Each
+ * record is a block holding
+ * {@code [hash][next][key length][value length][key][value]}.
+ * <p>
+ * Offsets are {@code long}s, and the file is mapped as a sequence of regions
+ * of {@code 1 << regionShift} bytes; as blocks are aligned and no longer than
+ * a region, no block straddles two regions. The bucket table doubles and is
+ * rehashed once the load factor passes {@code MAX_LOAD_FACTOR}. The blocks of
+ * removed records and of replaced tables go to a free list per block length
+ * and are reused before the file grows.
+ *
+ * @param <K>
+ *            type of {@code Map} domain (key) entries
+ * @param <V>
+ *            type of {@code Map} range (associated value) entries
+ * @convention <pre>
+ * [the file of $this.channel starts with a valid header]  and
+ * [$this.regions map the first $this.capacity bytes of the file of
+ *  $this.channel, 1 << $this.regionShift bytes per region]  and
+ * [|bucket table| is a power of 2]  and
+ * [every record reachable from bucket i has hash mod |bucket table| = i and
+ *  hash = [hash of its key bytes]]  and
+ * [no key bytes appear in more than one reachable record]  and
+ * [header size = number of reachable records]  and
+ * [no block is both reachable and in a free list]  and
+ * [every bucket below $this.scanBucket is empty]
+ * </pre>
+ * @correspondence <pre>
+ * this = [set of (keyCodec.decode(k), valueCodec.decode(v)) for every
+ *         reachable record with key bytes k and value bytes v]
+ * </pre>
+ *
+ * @author Jared Alonzo
+ *
+ */
+public class MappedMap4<K, V> extends MapSecondary<K, V> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Number identifying files written by this class.
+     */
+    private static final int MAGIC = 0x4D4D3402;
+
+    /**
+     * Default number of buckets of a new file.
+     */
+    private static final int DEFAULT_BUCKET_COUNT = 1 << 10;
+
+    /**
+     * Default base 2 logarithm of the length of a region of a new file.
+     */
+    private static final int DEFAULT_REGION_SHIFT = 30;
+
+    /**
+     * Smallest base 2 logarithm of the length of a region.
+     */
+    private static final int MIN_REGION_SHIFT = 12;
+
+    /**
+     * Largest base 2 logarithm of the length of a region, the largest that
+     * one {@code MappedByteBuffer} can hold.
+     */
+    private static final int MAX_REGION_SHIFT = 30;
+
+    /**
+     * Base 2 logarithm of the length of the smallest block.
+     */
+    private static final int MIN_BLOCK_SHIFT = 5;
+
+    /**
+     * Load factor (size / bucket count) above which the table doubles.
+     */
+    private static final double MAX_LOAD_FACTOR = 0.75;
+
+    /**
+     * Size in bytes of the file header, a multiple of every block length up
+     * to its own, so the first block is aligned.
+     */
+    private static final int HEADER_SIZE = 1024;
+
+    /**
+     * Position in the header of the base 2 logarithm of the region length.
+     */
+    private static final int REGION_SHIFT_POSITION = 4;
+
+    /**
+     * Position in the header of the size.
+     */
+    private static final int SIZE_POSITION = 8;
+
+    /**
+     * Position in the header of the bucket count.
+     */
+    private static final int BUCKET_COUNT_POSITION = 12;
+
+    /**
+     * Position in the header of the offset of the bucket table.
+     */
+    private static final int TABLE_POSITION = 16;
+
+    /**
+     * Position in the header of the end of the used data.
+     */
+    private static final int DATA_END_POSITION = 24;
+
+    /**
+     * Position in the header of the free list heads, one {@code long} per
+     * base 2 logarithm of the block length, from 0 to 63.
+     */
+    private static final int FREE_LISTS_POSITION = 32;
+
+    /**
+     * Size in bytes of the fixed part of a record.
+     */
+    private static final int RECORD_HEADER_SIZE = 20;
+
+    /**
+     * Position in a record of the offset of the next record.
+     */
+    private static final int NEXT_POSITION = 4;
+
+    /**
+     * Position in a record of the key length.
+     */
+    private static final int KEY_LENGTH_POSITION = 12;
+
+    /**
+     * Position in a record of the value length.
+     */
+    private static final int VALUE_LENGTH_POSITION = 16;
+
+    /**
+     * Codec for keys.
+     */
+    private final Codec<K> keyCodec;
+
+    /**
+     * Codec for values.
+     */
+    private final Codec<V> valueCodec;
+
+    /**
+     * Bucket count used when this has to create or clear a file.
+     */
+    private final int newFileBucketCount;
+
+    /**
+     * Region length, as a base 2 logarithm, used when this has to create a
+     * file.
+     */
+    private final int newFileRegionShift;
+
+    /**
+     * Channel of the backing file.
+     */
+    private FileChannel channel;
+
+    /**
+     * Mappings of the consecutive regions of the backing file; the last may
+     * be shorter than a region.
+     */
+    private MappedByteBuffer[] regions = new MappedByteBuffer[0];
+
+    /**
+     * Base 2 logarithm of the length of a region of the backing file.
+     */
+    private int regionShift;
+
+    /**
+     * Number of bytes of the backing file that are mapped.
+     */
+    private long capacity;
+
+    /**
+     * Bucket below which every bucket is empty, where {@code removeAny}
+     * starts looking for a record. It is not stored in the file.
+     */
+    private int scanBucket;
+
+    /**
+     * Immutable {@code Pair} returned by {@code remove} and {@code removeAny}
+     * and produced by the iterator.
+     *
+     * @param <K>
+     *            type of key
+     * @param <V>
+     *            type of value
+     */
+    private static final class Entry<K, V> implements Pair<K, V> {
+
+        /**
+         * The key.
+         */
+        private final K key;
+
+        /**
+         * The value.
+         */
+        private final V value;
+
+        /**
+         * Constructor.
+         *
+         * @param key
+         *            the key
+         * @param value
+         *            the value
+         */
+        Entry(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public K key() {
+            return this.key;
+        }
+
+        @Override
+        public V value() {
+            return this.value;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof Pair<?, ?>)) {
+                return false;
+            }
+            Pair<?, ?> pair = (Pair<?, ?>) obj;
+            return this.key.equals(pair.key())
+                    && this.value.equals(pair.value());
+        }
+
+        @Override
+        public int hashCode() {
+            final int prime = 31;
+            return this.key.hashCode() * prime + this.value.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "(" + this.key + "," + this.value + ")";
+        }
+
+    }
+
+    /**
+     * Returns the hash code stored for a key with the given bytes. It depends
+     * only on the bytes, so it is the same in every run of the program.
+     *
+     * @param keyBytes
+     *            the encoded key
+     * @return the spread hash code of {@code keyBytes}
+     */
+    private static int hash(byte[] keyBytes) {
+        int h = Arrays.hashCode(keyBytes);
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the smallest power of 2 that is at least {@code n}.
+     *
+     * @param n
+     *            the requested bucket count
+     * @return the bucket count to use for {@code n}
+     * @requires n > 0
+     */
+    private static int tableSizeFor(int n) {
+        assert n > 0 : "Violation of: n > 0";
+
+        int tableSize = 1;
+        while (tableSize < n) {
+            tableSize <<= 1;
+        }
+        return tableSize;
+    }
+
+    /**
+     * Returns the base 2 logarithm of the length of the smallest block that
+     * holds {@code length} bytes.
+     *
+     * @param length
+     *            the number of bytes
+     * @return the block length, as a base 2 logarithm
+     * @requires length > 0
+     */
+    private static int blockShift(long length) {
+        return Math.max(MIN_BLOCK_SHIFT,
+                Long.SIZE - Long.numberOfLeadingZeros(length - 1));
+    }
+
+    /**
+     * Returns the mapping of the region holding file position
+     * {@code position}.
+     *
+     * @param position
+     *            the file position
+     * @return the region
+     */
+    private MappedByteBuffer region(long position) {
+        return this.regions[(int) (position >>> this.regionShift)];
+    }
+
+    /**
+     * Returns the index of file position {@code position} in its region.
+     *
+     * @param position
+     *            the file position
+     * @return the index in the region
+     */
+    private int index(long position) {
+        return (int) (position & ((1L << this.regionShift) - 1));
+    }
+
+    /**
+     * Returns the {@code int} at file position {@code position}.
+     *
+     * @param position
+     *            the file position
+     * @return the value
+     */
+    private int getInt(long position) {
+        return this.region(position).getInt(this.index(position));
+    }
+
+    /**
+     * Writes {@code value} at file position {@code position}.
+     *
+     * @param position
+     *            the file position
+     * @param value
+     *            the value
+     */
+    private void putInt(long position, int value) {
+        this.region(position).putInt(this.index(position), value);
+    }
+
+    /**
+     * Returns the {@code long} at file position {@code position}.
+     *
+     * @param position
+     *            the file position
+     * @return the value
+     */
+    private long getLong(long position) {
+        return this.region(position).getLong(this.index(position));
+    }
+
+    /**
+     * Writes {@code value} at file position {@code position}.
+     *
+     * @param position
+     *            the file position
+     * @param value
+     *            the value
+     */
+    private void putLong(long position, long value) {
+        this.region(position).putLong(this.index(position), value);
+    }
+
+    /**
+     * Returns the bytes of length {@code length} at {@code position}.
+     *
+     * @param position
+     *            the file position
+     * @param length
+     *            the number of bytes
+     * @return a copy of the bytes
+     * @requires [the bytes are in one block]
+     */
+    private byte[] bytesAt(long position, int length) {
+        byte[] result = new byte[length];
+        this.region(position).get(this.index(position), result);
+        return result;
+    }
+
+    /**
+     * Returns the number of buckets.
+     *
+     * @return the bucket count
+     */
+    final int bucketCount() {
+        return this.getInt(BUCKET_COUNT_POSITION);
+    }
+
+    /**
+     * Returns the file position of the head of bucket {@code i}.
+     *
+     * @param i
+     *            the bucket number
+     * @return the position of the bucket's head offset
+     */
+    private long bucketPosition(int i) {
+        return this.getLong(TABLE_POSITION) + (long) i * Long.BYTES;
+    }
+
+    /**
+     * Returns the number of bytes of the record at {@code record}.
+     *
+     * @param record
+     *            the record offset
+     * @return the length of the record
+     */
+    private long recordLength(long record) {
+        return (long) RECORD_HEADER_SIZE
+                + this.getInt(record + KEY_LENGTH_POSITION)
+                + this.getInt(record + VALUE_LENGTH_POSITION);
+    }
+
+    /**
+     * Reports whether the key bytes of the record at {@code record} equal
+     * {@code keyBytes}.
+     *
+     * @param record
+     *            the record offset
+     * @param keyBytes
+     *            the encoded key
+     * @return true iff the record's key bytes equal {@code keyBytes}
+     */
+    private boolean keyEquals(long record, byte[] keyBytes) {
+        if (this.getInt(record + KEY_LENGTH_POSITION) != keyBytes.length) {
+            return false;
+        }
+        MappedByteBuffer b = this.region(record);
+        int start = this.index(record) + RECORD_HEADER_SIZE;
+        for (int i = 0; i < keyBytes.length; i++) {
+            if (b.get(start + i) != keyBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes the record at {@code record} into a pair.
+     *
+     * @param record
+     *            the record offset
+     * @return the pair stored in the record
+     */
+    private Pair<K, V> entryAt(long record) {
+        int keyLength = this.getInt(record + KEY_LENGTH_POSITION);
+        int valueLength = this.getInt(record + VALUE_LENGTH_POSITION);
+        long start = record + RECORD_HEADER_SIZE;
+        return new Entry<K, V>(
+                this.keyCodec.decode(this.bytesAt(start, keyLength)),
+                this.valueCodec
+                        .decode(this.bytesAt(start + keyLength, valueLength)));
+    }
+
+    /**
+     * Returns the offset of the record holding {@code keyBytes}, or 0 if there
+     * is none.
+     *
+     * @param keyBytes
+     *            the encoded key
+     * @param hash
+     *            the hash of {@code keyBytes}
+     * @return the record offset, or 0
+     */
+    private long find(byte[] keyBytes, int hash) {
+        int bucket = hash & (this.bucketCount() - 1);
+        long record = this.getLong(this.bucketPosition(bucket));
+        while (record != 0 && (this.getInt(record) != hash
+                || !this.keyEquals(record, keyBytes))) {
+            record = this.getLong(record + NEXT_POSITION);
+        }
+        return record;
+    }
+
+    /**
+     * Unlinks the record holding {@code keyBytes} from its chain, frees its
+     * block and returns its pair.
+     *
+     * @param keyBytes
+     *            the encoded key
+     * @param hash
+     *            the hash of {@code keyBytes}
+     * @return the removed pair
+     * @requires [a record holds keyBytes]
+     */
+    private Pair<K, V> unlink(byte[] keyBytes, int hash) {
+        int bucket = hash & (this.bucketCount() - 1);
+        long link = this.bucketPosition(bucket);
+        long record = this.getLong(link);
+        while (this.getInt(record) != hash
+                || !this.keyEquals(record, keyBytes)) {
+            link = record + NEXT_POSITION;
+            record = this.getLong(link);
+        }
+        return this.unlinkAt(link, record);
+    }
+
+    /**
+     * Unlinks the record at {@code record}, whose offset is stored at
+     * {@code link}, frees its block and returns its pair.
+     *
+     * @param link
+     *            position of the offset of the record: a bucket head or the
+     *            next field of the previous record
+     * @param record
+     *            the record offset
+     * @return the removed pair
+     */
+    private Pair<K, V> unlinkAt(long link, long record) {
+        this.putLong(link, this.getLong(record + NEXT_POSITION));
+        this.putInt(SIZE_POSITION, this.getInt(SIZE_POSITION) - 1);
+        Pair<K, V> removed = this.entryAt(record);
+        this.free(record, blockShift(this.recordLength(record)));
+        return removed;
+    }
+
+    /**
+     * Adds the block at {@code block} to the free list of its length.
+     *
+     * @param block
+     *            the block offset
+     * @param shift
+     *            the block length, as a base 2 logarithm
+     */
+    private void free(long block, int shift) {
+        long head = FREE_LISTS_POSITION + (long) shift * Long.BYTES;
+        this.putLong(block, this.getLong(head));
+        this.putLong(head, block);
+    }
+
+    /**
+     * Returns a block of {@code 1 << shift} bytes, taken from its free list
+     * if there is one, and otherwise from the end of the data. The space
+     * skipped to align a new block is split into smaller free blocks.
+     *
+     * @param shift
+     *            the block length, as a base 2 logarithm
+     * @return the block offset
+     * @requires MIN_BLOCK_SHIFT <= shift <= $this.regionShift
+     */
+    private long allocate(int shift) {
+        long head = FREE_LISTS_POSITION + (long) shift * Long.BYTES;
+        long block = this.getLong(head);
+        if (block != 0) {
+            this.putLong(head, this.getLong(block));
+        } else {
+            long length = 1L << shift;
+            long end = this.getLong(DATA_END_POSITION);
+            block = (end + length - 1) & -length;
+            this.ensureCapacity(block + length);
+            // end is aligned on its lowest set bit, which is below shift
+            while (end < block) {
+                int padding = Long.numberOfTrailingZeros(end);
+                this.free(end, padding);
+                end += 1L << padding;
+            }
+            this.putLong(DATA_END_POSITION, block + length);
+        }
+        return block;
+    }
+
+    /**
+     * Returns a new bucket table of {@code bucketCount} empty buckets.
+     *
+     * @param bucketCount
+     *            the number of buckets
+     * @return the offset of the table
+     * @requires [bucketCount is a power of 2 and the table fits in a region]
+     */
+    private long newTable(int bucketCount) {
+        long table = this.allocate(blockShift((long) bucketCount * Long.BYTES));
+        for (int i = 0; i < bucketCount; i++) {
+            this.putLong(table + (long) i * Long.BYTES, 0);
+        }
+        return table;
+    }
+
+    /**
+     * Moves every record to a new table of {@code bucketCount} buckets and
+     * frees the old table.
+     *
+     * @param bucketCount
+     *            the new number of buckets
+     * @requires [bucketCount is a power of 2 and the table fits in a region]
+     */
+    private void rehash(int bucketCount) {
+        int oldCount = this.bucketCount();
+        long oldTable = this.getLong(TABLE_POSITION);
+        long table = this.newTable(bucketCount);
+        for (int i = 0; i < oldCount; i++) {
+            long record = this.getLong(oldTable + (long) i * Long.BYTES);
+            while (record != 0) {
+                long next = this.getLong(record + NEXT_POSITION);
+                long bucket = table + (long) (this.getInt(record)
+                        & (bucketCount - 1)) * Long.BYTES;
+                this.putLong(record + NEXT_POSITION, this.getLong(bucket));
+                this.putLong(bucket, record);
+                record = next;
+            }
+        }
+        this.putLong(TABLE_POSITION, table);
+        this.putInt(BUCKET_COUNT_POSITION, bucketCount);
+        this.free(oldTable, blockShift((long) oldCount * Long.BYTES));
+        this.scanBucket = 0;
+    }
+
+    /**
+     * Writes a record holding {@code keyBytes} and {@code valueBytes} to a
+     * free block and links it in as the new head of its bucket, doubling the
+     * table if the load factor passes {@code MAX_LOAD_FACTOR}.
+     *
+     * @param keyBytes
+     *            the encoded key
+     * @param valueBytes
+     *            the encoded value
+     * @param hash
+     *            the hash of {@code keyBytes}
+     * @throws IllegalArgumentException
+     *             if the record is longer than a region
+     * @requires [no record holds keyBytes]
+     */
+    private void append(byte[] keyBytes, byte[] valueBytes, int hash) {
+        long length = (long) RECORD_HEADER_SIZE + keyBytes.length
+                + valueBytes.length;
+        if (length > 1L << this.regionShift) {
+            throw new IllegalArgumentException("MappedMap4 record of " + length
+                    + " bytes exceeds the region size");
+        }
+        long record = this.allocate(blockShift(length));
+
+        int bucket = hash & (this.bucketCount() - 1);
+        long head = this.bucketPosition(bucket);
+        this.putInt(record, hash);
+        this.putLong(record + NEXT_POSITION, this.getLong(head));
+        this.putInt(record + KEY_LENGTH_POSITION, keyBytes.length);
+        this.putInt(record + VALUE_LENGTH_POSITION, valueBytes.length);
+        MappedByteBuffer b = this.region(record);
+        int start = this.index(record) + RECORD_HEADER_SIZE;
+        b.put(start, keyBytes);
+        b.put(start + keyBytes.length, valueBytes);
+        this.putLong(head, record);
+        int size = this.getInt(SIZE_POSITION) + 1;
+        this.putInt(SIZE_POSITION, size);
+        this.scanBucket = Math.min(this.scanBucket, bucket);
+
+        int bucketCount = this.bucketCount();
+        if (size > bucketCount * MAX_LOAD_FACTOR
+                && 2L * bucketCount * Long.BYTES <= 1L << this.regionShift) {
+            this.rehash(2 * bucketCount);
+        }
+    }
+
+    /**
+     * Maps the first {@code newCapacity} bytes of the file, growing it if
+     * needed. Regions already mapped in full are kept.
+     *
+     * @param newCapacity
+     *            the number of bytes to map
+     * @throws IOException
+     *             if the file cannot be mapped
+     */
+    private void map(long newCapacity) throws IOException {
+        long regionLength = 1L << this.regionShift;
+        int count = (int) ((newCapacity + regionLength - 1)
+                >>> this.regionShift);
+        MappedByteBuffer[] mapped = Arrays.copyOf(this.regions, count);
+        for (int i = 0; i < count; i++) {
+            long start = (long) i << this.regionShift;
+            long length = Math.min(regionLength, newCapacity - start);
+            if (mapped[i] == null || mapped[i].capacity() != length) {
+                if (mapped[i] != null) {
+                    mapped[i].force();
+                }
+                mapped[i] = this.channel.map(FileChannel.MapMode.READ_WRITE,
+                        start, length);
+            }
+        }
+        this.regions = mapped;
+        this.capacity = newCapacity;
+    }
+
+    /**
+     * Makes sure the file can hold {@code needed} bytes, doubling it up to
+     * one region and then adding whole regions, and mapping it again.
+     *
+     * @param needed
+     *            the number of bytes required
+     */
+    private void ensureCapacity(long needed) {
+        if (needed > this.capacity) {
+            long regionLength = 1L << this.regionShift;
+            long newCapacity = Math.max(this.capacity, HEADER_SIZE);
+            while (newCapacity < needed) {
+                if (newCapacity < regionLength) {
+                    newCapacity = Math.min(2 * newCapacity, regionLength);
+                } else {
+                    newCapacity += regionLength;
+                }
+            }
+            try {
+                this.map(newCapacity);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Writes an empty table with {@code bucketCount} buckets, rounded down to
+     * the most a region holds, at the start of the mapped file. Blocks past
+     * the header are all dropped.
+     *
+     * @param bucketCount
+     *            the number of buckets
+     * @requires [bucketCount is a power of 2]
+     */
+    private void format(int bucketCount) {
+        int buckets = Math.min(bucketCount,
+                1 << (this.regionShift - Integer.numberOfTrailingZeros(
+                        Long.BYTES)));
+        this.ensureCapacity(HEADER_SIZE);
+        this.putInt(0, MAGIC);
+        this.putInt(REGION_SHIFT_POSITION, this.regionShift);
+        this.putInt(SIZE_POSITION, 0);
+        this.putLong(DATA_END_POSITION, HEADER_SIZE);
+        for (int shift = 0; shift < Long.SIZE; shift++) {
+            this.putLong(FREE_LISTS_POSITION + shift * Long.BYTES, 0);
+        }
+        this.putLong(TABLE_POSITION, this.newTable(buckets));
+        this.putInt(BUCKET_COUNT_POSITION, buckets);
+        this.scanBucket = 0;
+    }
+
+    /**
+     * Opens (creating it if needed) the backing file {@code file} and maps it.
+     * An empty file is formatted as an empty table; a non-empty file that
+     * does not start with a valid header is left untouched and rejected.
+     *
+     * @param file
+     *            the backing file
+     * @throws IllegalArgumentException
+     *             if {@code file} is neither empty nor a map file
+     */
+    private void open(Path file) {
+        boolean empty;
+        try {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long size = this.channel.size();
+            empty = size == 0;
+            this.regionShift = this.newFileRegionShift;
+            if (!empty) {
+                this.regionShift = 0;
+                if (size >= HEADER_SIZE) {
+                    MappedByteBuffer header = this.channel
+                            .map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+                    if (header.getInt(0) == MAGIC) {
+                        this.regionShift = header
+                                .getInt(REGION_SHIFT_POSITION);
+                    }
+                }
+                if (this.regionShift < MIN_REGION_SHIFT
+                        || this.regionShift > MAX_REGION_SHIFT) {
+                    this.channel.close();
+                    throw new IllegalArgumentException(
+                            "Not a MappedMap4 file: " + file);
+                }
+            }
+            this.map(size);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.scanBucket = 0;
+        if (empty) {
+            this.format(this.newFileBucketCount);
+        }
+    }
+
+    /**
+     * Opens a new temporary backing file, deleted when the program exits.
+     */
+    private void openTemporary() {
+        try {
+            File file = File.createTempFile("MappedMap4", ".map");
+            file.deleteOnExit();
+            this.open(file.toPath());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor resulting in a map kept in a new temporary file.
+     *
+     * @param keyCodec
+     *            codec for keys
+     * @param valueCodec
+     *            codec for values
+     * @ensures this = {}
+     */
+    public MappedMap4(Codec<K> keyCodec, Codec<V> valueCodec) {
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.newFileBucketCount = DEFAULT_BUCKET_COUNT;
+        this.newFileRegionShift = DEFAULT_REGION_SHIFT;
+        this.openTemporary();
+    }
+
+    /**
+     * Constructor resulting in the map stored in {@code file}; if the file does
+     * not exist or is empty, it is created empty with the default number of
+     * buckets.
+     *
+     * @param file
+     *            the backing file
+     * @param keyCodec
+     *            codec for keys
+     * @param valueCodec
+     *            codec for values
+     * @throws IllegalArgumentException
+     *             if {@code file} is neither empty nor a map file
+     * @ensures this = [map stored in file, or {} if none]
+     */
+    public MappedMap4(Path file, Codec<K> keyCodec, Codec<V> valueCodec) {
+        this(file, keyCodec, valueCodec, DEFAULT_BUCKET_COUNT);
+    }
+
+    /**
+     * Constructor resulting in the map stored in {@code file}; if the file does
+     * not exist or is empty, it is created empty with {@code bucketCount}
+     * buckets, rounded up to a power of 2. The table grows as entries are
+     * added either way.
+     *
+     * @param file
+     *            the backing file
+     * @param keyCodec
+     *            codec for keys
+     * @param valueCodec
+     *            codec for values
+     * @param bucketCount
+     *            number of buckets for a new file
+     * @throws IllegalArgumentException
+     *             if {@code file} is neither empty nor a map file
+     * @requires bucketCount > 0
+     * @ensures this = [map stored in file, or {} if none]
+     */
+    public MappedMap4(Path file, Codec<K> keyCodec, Codec<V> valueCodec,
+            int bucketCount) {
+        this(file, keyCodec, valueCodec, bucketCount, DEFAULT_REGION_SHIFT);
+    }
+
+    /**
+     * Constructor resulting in the map stored in {@code file}; if the file does
+     * not exist or is empty, it is created empty with {@code bucketCount}
+     * buckets, rounded up to a power of 2, and mapped in regions of
+     * {@code 1 << regionShift} bytes. A record must fit in one region.
+     *
+     * @param file
+     *            the backing file
+     * @param keyCodec
+     *            codec for keys
+     * @param valueCodec
+     *            codec for values
+     * @param bucketCount
+     *            number of buckets for a new file
+     * @param regionShift
+     *            base 2 logarithm of the region length for a new file
+     * @throws IllegalArgumentException
+     *             if {@code file} is neither empty nor a map file
+     * @requires bucketCount > 0  and
+     *           MIN_REGION_SHIFT <= regionShift <= MAX_REGION_SHIFT
+     * @ensures this = [map stored in file, or {} if none]
+     */
+    MappedMap4(Path file, Codec<K> keyCodec, Codec<V> valueCodec,
+            int bucketCount, int regionShift) {
+        assert MIN_REGION_SHIFT <= regionShift
+                && regionShift <= MAX_REGION_SHIFT
+                : "Violation of: regionShift is a valid region length";
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.newFileBucketCount = tableSizeFor(bucketCount);
+        this.newFileRegionShift = regionShift;
+        this.open(file);
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @Override
+    public final Map<K, V> newInstance() {
+        return new MappedMap4<K, V>(this.keyCodec, this.valueCodec);
+    }
+
+    @Override
+    public final void clear() {
+        this.format(this.newFileBucketCount);
+    }
+
+    @Override
+    public final void transferFrom(Map<K, V> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof MappedMap4<?, ?> : ""
+                + "Violation of: source is of dynamic type MappedMap4<?,?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type
+         * MappedMap4<?,?>, and the ?,? must be K,V or the call would not have
+         * compiled. The codecs are assumed to match as well.
+         *
+         * Each map keeps its own file, so the records are copied as they are,
+         * without decoding them, and source is then cleared in its file.
+         */
+        MappedMap4<K, V> localSource = (MappedMap4<K, V>) source;
+        this.clear();
+        for (int i = 0; i < localSource.bucketCount(); i++) {
+            long record = localSource.getLong(localSource.bucketPosition(i));
+            while (record != 0) {
+                int keyLength = localSource
+                        .getInt(record + KEY_LENGTH_POSITION);
+                long start = record + RECORD_HEADER_SIZE;
+                this.append(localSource.bytesAt(start, keyLength),
+                        localSource.bytesAt(start + keyLength, localSource
+                                .getInt(record + VALUE_LENGTH_POSITION)),
+                        localSource.getInt(record));
+                record = localSource.getLong(record + NEXT_POSITION);
+            }
+        }
+        localSource.clear();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(K key, V value) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+        assert !this.hasKey(key) : "Violation of: key is not in DOMAIN(this)";
+
+        byte[] keyBytes = this.keyCodec.encode(key);
+        this.append(keyBytes, this.valueCodec.encode(value), hash(keyBytes));
+    }
+
+    @Override
+    public final Pair<K, V> remove(K key) {
+        assert key != null : "Violation of: key is not null";
+        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        byte[] keyBytes = this.keyCodec.encode(key);
+        return this.unlink(keyBytes, hash(keyBytes));
+    }
+
+    @Override
+    public final Pair<K, V> removeAny() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        // buckets below scanBucket are empty, so a drain scans the table once
+        int i = this.scanBucket;
+        while (this.getLong(this.bucketPosition(i)) == 0) {
+            i++;
+        }
+        this.scanBucket = i;
+        long head = this.bucketPosition(i);
+        return this.unlinkAt(head, this.getLong(head));
+    }
+
+    @Override
+    public final V value(K key) {
+        assert key != null : "Violation of: key is not null";
+        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        byte[] keyBytes = this.keyCodec.encode(key);
+        long record = this.find(keyBytes, hash(keyBytes));
+        int valueLength = this.getInt(record + VALUE_LENGTH_POSITION);
+        return this.valueCodec.decode(this.bytesAt(
+                record + RECORD_HEADER_SIZE + keyBytes.length, valueLength));
+    }
+
+    @Override
+    public final boolean hasKey(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        byte[] keyBytes = this.keyCodec.encode(key);
+        return this.find(keyBytes, hash(keyBytes)) != 0;
+    }
+
+    @Override
+    public final int size() {
+        return this.getInt(SIZE_POSITION);
+    }
+
+    @Override
+    public final Iterator<Pair<K, V>> iterator() {
+        return new MappedMap4Iterator();
+    }
+
+    /*
+     * Other methods ----------------------------------------------------------
+     */
+
+    /**
+     * Writes any changes still held in memory out to the backing file.
+     */
+    public final void force() {
+        for (MappedByteBuffer region : this.regions) {
+            region.force();
+        }
+    }
+
+    /**
+     * Writes any changes out to the backing file and closes it. {@code this}
+     * must not be used afterwards.
+     */
+    public final void close() {
+        this.force();
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for {@code MappedMap4}.
+     */
+    private final class MappedMap4Iterator implements Iterator<Pair<K, V>> {
+
+        /**
+         * Number of elements seen already (i.e., |~this.seen|).
+         */
+        private int numberSeen;
+
+        /**
+         * Bucket from which the current record comes.
+         */
+        private int currentBucket;
+
+        /**
+         * Offset of the record that will be returned next, or 0 if the rest
+         * of the current bucket has been returned already.
+         */
+        private long nextRecord;
+
+        /**
+         * No-argument constructor.
+         */
+        MappedMap4Iterator() {
+            this.numberSeen = 0;
+            this.currentBucket = 0;
+            this.nextRecord = MappedMap4.this
+                    .getLong(MappedMap4.this.bucketPosition(0));
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.numberSeen < MappedMap4.this.size();
+        }
+
+        @Override
+        public Pair<K, V> next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            this.numberSeen++;
+            MappedMap4<K, V> map = MappedMap4.this;
+            while (this.nextRecord == 0) {
+                this.currentBucket++;
+                this.nextRecord = map
+                        .getLong(map.bucketPosition(this.currentBucket));
+            }
+            long record = this.nextRecord;
+            this.nextRecord = map.getLong(record + NEXT_POSITION);
+            return map.entryAt(record);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+}
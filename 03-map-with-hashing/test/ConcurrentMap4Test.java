@@ -0,0 +1,148 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * Customized JUnit test fixture for {@code ConcurrentMap4}.
+ */
+public class ConcurrentMap4Test extends MapTest {
+
+    /**
+     * Number of threads used by the concurrency tests.
+     */
+    private static final int THREADS = 16;
+
+    /**
+     * Number of keys added by each thread in the concurrency tests.
+     */
+    private static final int KEYS_PER_THREAD = 2000;
+
+    @Override
+    protected final Map<String, String> constructorTest() {
+        return new ConcurrentMap4<String, String>();
+    }
+
+    @Override
+    protected final Map<String, String> constructorRef() {
+        return new Map1L<String, String>();
+    }
+
+    /**
+     * Starts {@code THREADS} threads running {@code task} with their thread
+     * number and waits for all of them to finish.
+     *
+     * @param task
+     *            the work of one thread, given its thread number
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    private static void runThreads(IntConsumer task)
+            throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final int id = t;
+            Thread thread = new Thread(() -> task.accept(id));
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    /*
+     * Test add from many threads with disjoint keys
+     */
+    @Test
+    public void concurrentAddTest() throws InterruptedException {
+        ConcurrentMap4<String, String> test = new ConcurrentMap4<>();
+        runThreads(id -> {
+            for (int i = 0; i < KEYS_PER_THREAD; i++) {
+                test.add(id + ":" + i, "v" + i);
+            }
+        });
+        assertEquals(THREADS * KEYS_PER_THREAD, test.size());
+        for (int t = 0; t < THREADS; t++) {
+            for (int i = 0; i < KEYS_PER_THREAD; i++) {
+                assertEquals("v" + i, test.value(t + ":" + i));
+            }
+        }
+    }
+
+    /*
+     * Test addIfAbsent from many threads racing on the same keys
+     */
+    @Test
+    public void concurrentAddIfAbsentTest() throws InterruptedException {
+        ConcurrentMap4<String, String> test = new ConcurrentMap4<>();
+        int[] wins = new int[THREADS];
+        runThreads(id -> {
+            for (int i = 0; i < KEYS_PER_THREAD; i++) {
+                if (test.addIfAbsent("k" + i, "v" + i)) {
+                    wins[id]++;
+                }
+            }
+        });
+        int totalWins = 0;
+        for (int w : wins) {
+            totalWins += w;
+        }
+        assertEquals(KEYS_PER_THREAD, totalWins);
+        assertEquals(KEYS_PER_THREAD, test.size());
+    }
+
+    /*
+     * Test iterating while other threads add and remove
+     */
+    @Test
+    public void iterateWhileUpdatingTest() throws InterruptedException {
+        ConcurrentMap4<String, String> test = new ConcurrentMap4<>();
+        for (int i = 0; i < KEYS_PER_THREAD; i++) {
+            test.add("stable" + i, "v");
+        }
+        int[] stableSeen = new int[1];
+        runThreads(id -> {
+            if (id == 0) {
+                for (Map.Pair<String, String> p : test) {
+                    if (p.key().startsWith("stable")) {
+                        stableSeen[0]++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < KEYS_PER_THREAD; i++) {
+                    test.add(id + ":" + i, "v");
+                    test.remove(id + ":" + i);
+                }
+            }
+        });
+        assertEquals(KEYS_PER_THREAD, stableSeen[0]);
+        assertEquals(KEYS_PER_THREAD, test.size());
+    }
+
+    /*
+     * Test that small Integer keys are spread over all the segments, with
+     * none holding more than twice its share
+     */
+    @Test
+    public void integerKeysSpreadOverSegmentsTest() {
+        final int keys = 4096;
+        ConcurrentMap4<Integer, String> test = new ConcurrentMap4<>();
+        for (int i = 0; i < keys; i++) {
+            test.add(i, "v");
+        }
+        int[] sizes = test.segmentSizes();
+        for (int size : sizes) {
+            assertTrue(size > 0);
+            assertTrue(size <= 2 * keys / sizes.length);
+        }
+    }
+
+}
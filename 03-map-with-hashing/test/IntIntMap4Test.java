@@ -0,0 +1,91 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * JUnit test fixture for {@code IntIntMap4}.
+ */
+public class IntIntMap4Test {
+
+    /**
+     * Number of random operations in the comparison test.
+     */
+    private static final int OPERATIONS = 20000;
+
+    /**
+     * Range of the random keys in the comparison test.
+     */
+    private static final int KEY_RANGE = 3000;
+
+    /*
+     * Test add and value
+     */
+    @Test
+    public void addValueTest() {
+        IntIntMap4 test = new IntIntMap4();
+        test.add(7, 8);
+        test.add(-9, 10);
+        assertEquals(2, test.size());
+        assertEquals(8, test.value(7));
+        assertEquals(10, test.value(-9));
+        assertTrue(test.hasKey(-9));
+        assertFalse(test.hasKey(8));
+    }
+
+    /*
+     * Test remove
+     */
+    @Test
+    public void removeTest() {
+        IntIntMap4 test = new IntIntMap4();
+        test.add(7, 8);
+        test.add(9, 10);
+        assertEquals(8, test.remove(7));
+        assertFalse(test.hasKey(7));
+        assertEquals(1, test.size());
+    }
+
+    /*
+     * Test addToValue as a counter
+     */
+    @Test
+    public void addToValueTest() {
+        IntIntMap4 test = new IntIntMap4();
+        assertEquals(1, test.addToValue(42, 1));
+        assertEquals(2, test.addToValue(42, 1));
+        assertEquals(-3, test.addToValue(5, -3));
+        assertEquals(2, test.size());
+        assertEquals(2, test.value(42));
+    }
+
+    /*
+     * Test random adds and removes through several resizes against Map1L
+     */
+    @Test
+    public void randomOperationsTest() {
+        IntIntMap4 test = new IntIntMap4();
+        Map<Integer, Integer> ref = new Map1L<>();
+        Random rnd = new Random(1);
+        for (int n = 0; n < OPERATIONS; n++) {
+            int key = rnd.nextInt(KEY_RANGE) - KEY_RANGE / 2;
+            if (ref.hasKey(key)) {
+                assertEquals((int) ref.remove(key).value(), test.remove(key));
+            } else {
+                ref.add(key, n);
+                test.add(key, n);
+            }
+        }
+        assertEquals(ref.size(), test.size());
+        for (int key : test.keys()) {
+            assertEquals((int) ref.value(key), test.value(key));
+        }
+    }
+
+}
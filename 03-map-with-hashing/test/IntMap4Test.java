@@ -0,0 +1,91 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * JUnit test fixture for {@code IntMap4}.
+ */
+public class IntMap4Test {
+
+    /**
+     * Number of random operations in the comparison test.
+     */
+    private static final int OPERATIONS = 20000;
+
+    /**
+     * Range of the random keys in the comparison test.
+     */
+    private static final int KEY_RANGE = 3000;
+
+    /*
+     * Test add and value
+     */
+    @Test
+    public void addValueTest() {
+        IntMap4<String> test = new IntMap4<>();
+        test.add(7, "8");
+        test.add(-9, "10");
+        assertEquals(2, test.size());
+        assertEquals("8", test.value(7));
+        assertEquals("10", test.value(-9));
+        assertTrue(test.hasKey(-9));
+        assertFalse(test.hasKey(8));
+    }
+
+    /*
+     * Test remove
+     */
+    @Test
+    public void removeTest() {
+        IntMap4<String> test = new IntMap4<>();
+        test.add(7, "8");
+        test.add(9, "10");
+        assertEquals("8", test.remove(7));
+        assertFalse(test.hasKey(7));
+        assertEquals(1, test.size());
+    }
+
+    /*
+     * Test transferFrom
+     */
+    @Test
+    public void transferFromTest() {
+        IntMap4<String> test = new IntMap4<>();
+        IntMap4<String> source = new IntMap4<>();
+        source.add(1, "a");
+        test.transferFrom(source);
+        assertEquals(0, source.size());
+        assertEquals("a", test.value(1));
+    }
+
+    /*
+     * Test random adds and removes through several resizes against Map1L
+     */
+    @Test
+    public void randomOperationsTest() {
+        IntMap4<String> test = new IntMap4<>();
+        Map<Integer, String> ref = new Map1L<>();
+        Random rnd = new Random(1);
+        for (int n = 0; n < OPERATIONS; n++) {
+            int key = rnd.nextInt(KEY_RANGE) - KEY_RANGE / 2;
+            if (ref.hasKey(key)) {
+                assertEquals(ref.remove(key).value(), test.remove(key));
+            } else {
+                ref.add(key, "v" + key);
+                test.add(key, "v" + key);
+            }
+        }
+        assertEquals(ref.size(), test.size());
+        for (int key : test.keys()) {
+            assertEquals(ref.value(key), test.value(key));
+        }
+    }
+
+}
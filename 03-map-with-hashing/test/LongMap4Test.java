@@ -0,0 +1,91 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * JUnit test fixture for {@code LongMap4}.
+ */
+public class LongMap4Test {
+
+    /**
+     * Number of random operations in the comparison test.
+     */
+    private static final int OPERATIONS = 20000;
+
+    /**
+     * Range of the random keys in the comparison test.
+     */
+    private static final int KEY_RANGE = 3000;
+
+    /*
+     * Test add and value
+     */
+    @Test
+    public void addValueTest() {
+        LongMap4<String> test = new LongMap4<>();
+        test.add(7, "8");
+        test.add(-9L << 40, "10");
+        assertEquals(2, test.size());
+        assertEquals("8", test.value(7));
+        assertEquals("10", test.value(-9L << 40));
+        assertTrue(test.hasKey(-9L << 40));
+        assertFalse(test.hasKey(8));
+    }
+
+    /*
+     * Test remove
+     */
+    @Test
+    public void removeTest() {
+        LongMap4<String> test = new LongMap4<>();
+        test.add(7, "8");
+        test.add(9, "10");
+        assertEquals("8", test.remove(7));
+        assertFalse(test.hasKey(7));
+        assertEquals(1, test.size());
+    }
+
+    /*
+     * Test transferFrom
+     */
+    @Test
+    public void transferFromTest() {
+        LongMap4<String> test = new LongMap4<>();
+        LongMap4<String> source = new LongMap4<>();
+        source.add(1, "a");
+        test.transferFrom(source);
+        assertEquals(0, source.size());
+        assertEquals("a", test.value(1));
+    }
+
+    /*
+     * Test random adds and removes through several resizes against Map1L
+     */
+    @Test
+    public void randomOperationsTest() {
+        LongMap4<String> test = new LongMap4<>();
+        Map<Long, String> ref = new Map1L<>();
+        Random rnd = new Random(1);
+        for (int n = 0; n < OPERATIONS; n++) {
+            long key = (rnd.nextInt(KEY_RANGE) - KEY_RANGE / 2) * (1L << 33);
+            if (ref.hasKey(key)) {
+                assertEquals(ref.remove(key).value(), test.remove(key));
+            } else {
+                ref.add(key, "v" + key);
+                test.add(key, "v" + key);
+            }
+        }
+        assertEquals(ref.size(), test.size());
+        for (long key : test.keys()) {
+            assertEquals(ref.value(key), test.value(key));
+        }
+    }
+
+}
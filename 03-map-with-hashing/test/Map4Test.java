@@ -1,3 +1,7 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
 import components.map.Map;
 import components.map.Map1L;
 
@@ -16,4 +20,76 @@ public class Map4Test extends MapTest {
         return new Map1L<String, String>();
     }
 
+    /*
+     * Test fromPairs with enough pairs to split the parallel build
+     */
+    @Test
+    public void fromPairsTest() {
+        final int many = 50000;
+        Map<String, String> ref = this.constructorRef();
+        for (int i = 0; i < many; i++) {
+            ref.add("k" + i, "v" + i);
+        }
+        Map4<String, String> test = Map4.fromPairs(ref);
+        assertEquals(ref, test);
+        test.add("extra", "x");
+        assertEquals("v7", test.remove("k7").value());
+        assertEquals(many, test.size());
+    }
+
+    /*
+     * Test fromPairs with no pairs
+     */
+    @Test
+    public void fromPairsEmptyTest() {
+        Map4<String, String> test = Map4.fromPairs(new String[0],
+                new String[0]);
+        assertEquals(this.constructorRef(), test);
+    }
+
+    /*
+     * Test statistics bucket histogram
+     */
+    @Test
+    public void statisticsHistogramTest() {
+        final int bucketCount = 4;
+        Map4<String, String> test = new Map4<String, String>(bucketCount);
+        test.add("a", "1");
+        test.add("b", "2");
+        test.add("c", "3");
+        Map4.Statistics stats = test.statistics();
+        int[] histogram = stats.bucketSizeHistogram();
+        int buckets = 0;
+        int entries = 0;
+        for (int k = 0; k < histogram.length; k++) {
+            buckets += histogram[k];
+            entries += k * histogram[k];
+        }
+        assertEquals(bucketCount, buckets);
+        assertEquals(3, entries);
+        assertEquals(histogram.length - 1, stats.maxChainLength());
+        assertEquals(0, stats.lookups());
+    }
+
+    /*
+     * Test statistics lookup counts
+     */
+    @Test
+    public void statisticsLookupTest() {
+        Map4<String, String> test = new Map4<String, String>();
+        test.add("7", "8");
+        test.add("9", "10");
+        test.setStatisticsEnabled(true);
+        test.hasKey("7");
+        test.hasKey("8");
+        test.hasKey("9");
+        test.hasKey("11");
+        Map4.Statistics stats = test.statistics();
+        assertEquals(4, stats.lookups());
+        assertEquals(2, stats.hits());
+        assertEquals(2, stats.misses());
+        assertEquals(0.5, stats.hitRatio(), 0);
+        assertEquals(0.5, stats.averageProbes(), 0);
+    }
+
 }
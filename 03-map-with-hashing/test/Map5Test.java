@@ -0,0 +1,130 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * Customized JUnit test fixture for {@code Map5} using default constructor.
+ */
+public class Map5Test extends MapTest {
+
+    /**
+     * Number of entries used by the growth tests; large enough to force
+     * several incremental resizes of the default table.
+     */
+    private static final int MANY = 1000;
+
+    /**
+     * Number of entries of the large drain test, at which a {@code removeAny}
+     * scanning the table from slot 0 takes minutes.
+     */
+    private static final int HUGE = 200000;
+
+    /**
+     * Time limit of the large drain test, in milliseconds.
+     */
+    private static final long DRAIN_TIMEOUT = 10000;
+
+    @Override
+    protected final Map<String, String> constructorTest() {
+        return new Map5<String, String>();
+    }
+
+    @Override
+    protected final Map<String, String> constructorRef() {
+        return new Map1L<String, String>();
+    }
+
+    /*
+     * Test add through several resizes
+     */
+    @Test
+    public void addManyTest() {
+        Map<String, String> test = this.constructorTest();
+        Map<String, String> ref = this.constructorRef();
+        for (int i = 0; i < MANY; i++) {
+            test.add("k" + i, "v" + i);
+            ref.add("k" + i, "v" + i);
+        }
+        assertEquals(ref, test);
+    }
+
+    /*
+     * Test remove interleaved with add while the table is growing
+     */
+    @Test
+    public void removeWhileGrowingTest() {
+        Map<String, String> test = this.constructorTest();
+        Map<String, String> ref = this.constructorRef();
+        for (int i = 0; i < MANY; i++) {
+            test.add("k" + i, "v" + i);
+            ref.add("k" + i, "v" + i);
+            if (i % 3 == 0) {
+                test.remove("k" + (i / 2));
+                ref.remove("k" + (i / 2));
+            }
+        }
+        assertEquals(ref, test);
+    }
+
+    /*
+     * Test removeAny drains a grown table
+     */
+    @Test
+    public void removeAnyManyTest() {
+        Map<String, String> test = this.constructorTest();
+        Map<String, String> ref = this.constructorRef();
+        for (int i = 0; i < MANY; i++) {
+            test.add("k" + i, "v" + i);
+            ref.add("k" + i, "v" + i);
+        }
+        while (test.size() > 0) {
+            Map.Pair<String, String> p = test.removeAny();
+            assertEquals(ref.remove(p.key()).value(), p.value());
+        }
+        assertEquals(0, ref.size());
+    }
+
+    /*
+     * Test removeAny interleaved with add, which may refill slots removeAny
+     * has already emptied
+     */
+    @Test
+    public void removeAnyInterleavedTest() {
+        Map<String, String> test = this.constructorTest();
+        Map<String, String> ref = this.constructorRef();
+        for (int i = 0; i < MANY; i++) {
+            test.add("k" + i, "v" + i);
+            ref.add("k" + i, "v" + i);
+            if (i % 2 == 0) {
+                Map.Pair<String, String> p = test.removeAny();
+                assertEquals(ref.remove(p.key()).value(), p.value());
+            }
+        }
+        assertEquals(ref, test);
+        while (test.size() > 0) {
+            Map.Pair<String, String> p = test.removeAny();
+            assertEquals(ref.remove(p.key()).value(), p.value());
+        }
+        assertEquals(0, ref.size());
+    }
+
+    /*
+     * Test removeAny drains a large table in linear time
+     */
+    @Test(timeout = DRAIN_TIMEOUT)
+    public void removeAnyDrainLargeTest() {
+        Map<Integer, Integer> test = new Map5<>();
+        for (int i = 0; i < HUGE; i++) {
+            test.add(i, i);
+        }
+        long sum = 0;
+        while (test.size() > 0) {
+            sum += test.removeAny().key();
+        }
+        assertEquals((long) HUGE * (HUGE - 1) / 2, sum);
+    }
+
+}
@@ -0,0 +1,25 @@
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * Customized JUnit test fixture for {@code Map5} using non-default constructor
+ * and initial capacity 1009.
+ */
+public class Map5Test1009 extends MapTest {
+
+    /**
+     * Initial capacity of hash table to be used in tests.
+     */
+    private static final int TEST_CAPACITY = 1009;
+
+    @Override
+    protected final Map<String, String> constructorTest() {
+        return new Map5<String, String>(TEST_CAPACITY);
+    }
+
+    @Override
+    protected final Map<String, String> constructorRef() {
+        return new Map1L<String, String>();
+    }
+
+}
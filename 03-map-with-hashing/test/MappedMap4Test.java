@@ -0,0 +1,279 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * Customized JUnit test fixture for {@code MappedMap4} backed by temporary
+ * files.
+ */
+public class MappedMap4Test extends MapTest {
+
+    /**
+     * Number of entries used by the larger tests; enough to make the file
+     * grow several times.
+     */
+    private static final int MANY = 20000;
+
+    /**
+     * Base 2 logarithm of the region length of the multi-region tests: 4 KB
+     * regions, so a small map spans many of them.
+     */
+    private static final int SMALL_REGION_SHIFT = 12;
+
+    /**
+     * Time limit of the drain test, in milliseconds.
+     */
+    private static final long DRAIN_TIMEOUT = 10000;
+
+    @Override
+    protected final Map<String, String> constructorTest() {
+        return new MappedMap4<String, String>(Codec.STRING, Codec.STRING);
+    }
+
+    @Override
+    protected final Map<String, String> constructorRef() {
+        return new Map1L<String, String>();
+    }
+
+    /**
+     * Returns a new, not yet existing, temporary file path.
+     *
+     * @return the path
+     * @throws IOException
+     *             if the temporary file cannot be created
+     */
+    private static Path newFile() throws IOException {
+        File file = File.createTempFile("MappedMap4Test", ".map");
+        file.delete();
+        file.deleteOnExit();
+        return file.toPath();
+    }
+
+    /*
+     * Test add through several file growths
+     */
+    @Test
+    public void addManyTest() {
+        Map<String, String> test = this.constructorTest();
+        Map<String, String> ref = this.constructorRef();
+        for (int i = 0; i < MANY; i++) {
+            test.add("k" + i, "v" + i);
+            ref.add("k" + i, "v" + i);
+        }
+        assertEquals(ref, test);
+    }
+
+    /*
+     * Test that a reopened file holds the same map
+     */
+    @Test
+    public void reopenTest() throws IOException {
+        Path file = newFile();
+        MappedMap4<String, Integer> test = new MappedMap4<>(file, Codec.STRING,
+                Codec.INTEGER);
+        Map<String, Integer> ref = new Map1L<>();
+        for (int i = 0; i < MANY; i++) {
+            test.add("k" + i, i);
+            ref.add("k" + i, i);
+        }
+        test.remove("k7");
+        ref.remove("k7");
+        test.close();
+        MappedMap4<String, Integer> reopened = new MappedMap4<>(file,
+                Codec.STRING, Codec.INTEGER);
+        assertEquals(ref, reopened);
+        reopened.close();
+    }
+
+    /*
+     * Test that a file that is not a map file is rejected and left untouched
+     */
+    @Test
+    public void foreignFileTest() throws IOException {
+        Path file = newFile();
+        byte[] contents = "not a map file, but someone's data\n"
+                .getBytes(StandardCharsets.UTF_8);
+        Files.write(file, contents);
+        try {
+            new MappedMap4<>(file, Codec.STRING, Codec.INTEGER);
+            fail("A foreign file should be rejected");
+        } catch (IllegalArgumentException e) {
+            assertArrayEquals(contents, Files.readAllBytes(file));
+        }
+    }
+
+    /*
+     * Test that transferFrom moves the entries into the file of this and
+     * leaves the file of source empty
+     */
+    @Test
+    public void transferFromFileTest() throws IOException {
+        Path target = newFile();
+        Path source = newFile();
+        MappedMap4<String, Integer> test = new MappedMap4<>(target,
+                Codec.STRING, Codec.INTEGER);
+        test.add("old", 0);
+        MappedMap4<String, Integer> from = new MappedMap4<>(source,
+                Codec.STRING, Codec.INTEGER);
+        Map<String, Integer> ref = new Map1L<>();
+        for (int i = 0; i < MANY; i++) {
+            from.add("k" + i, i);
+            ref.add("k" + i, i);
+        }
+        test.transferFrom(from);
+        assertEquals(ref, test);
+        assertEquals(0, from.size());
+        test.close();
+        from.close();
+
+        MappedMap4<String, Integer> reopened = new MappedMap4<>(target,
+                Codec.STRING, Codec.INTEGER);
+        assertEquals(ref, reopened);
+        reopened.close();
+        MappedMap4<String, Integer> reopenedSource = new MappedMap4<>(source,
+                Codec.STRING, Codec.INTEGER);
+        assertEquals(0, reopenedSource.size());
+        reopenedSource.close();
+    }
+
+    /*
+     * Test a map spanning many regions, with records of many lengths, and
+     * reopened
+     */
+    @Test
+    public void multiRegionTest() throws IOException {
+        Path file = newFile();
+        MappedMap4<String, String> test = new MappedMap4<>(file, Codec.STRING,
+                Codec.STRING, 1, SMALL_REGION_SHIFT);
+        Map<String, String> ref = this.constructorRef();
+        final int maxLength = 3000;
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < MANY; i++) {
+            value.setLength(0);
+            while (value.length() < (i * 31) % maxLength) {
+                value.append((char) ('a' + value.length() % 26));
+            }
+            test.add("k" + i, value.toString());
+            ref.add("k" + i, value.toString());
+        }
+        assertTrue(Files.size(file) > (1L << SMALL_REGION_SHIFT) * 2);
+        assertEquals(ref, test);
+        test.close();
+        MappedMap4<String, String> reopened = new MappedMap4<>(file,
+                Codec.STRING, Codec.STRING);
+        assertEquals(ref, reopened);
+        reopened.close();
+    }
+
+    /*
+     * Test that the bucket table grows with the map, up to what a region
+     * holds
+     */
+    @Test
+    public void tableGrowthTest() throws IOException {
+        MappedMap4<String, Integer> test = new MappedMap4<>(newFile(),
+                Codec.STRING, Codec.INTEGER, 1);
+        MappedMap4<String, Integer> small = new MappedMap4<>(newFile(),
+                Codec.STRING, Codec.INTEGER, 1, SMALL_REGION_SHIFT);
+        for (int i = 0; i < MANY; i++) {
+            test.add("k" + i, i);
+            small.add("k" + i, i);
+        }
+        assertTrue(test.bucketCount() >= MANY / 2);
+        assertEquals((1 << SMALL_REGION_SHIFT) / Long.BYTES,
+                small.bucketCount());
+        for (int i = 0; i < MANY; i++) {
+            assertEquals(Integer.valueOf(i), test.value("k" + i));
+            assertEquals(Integer.valueOf(i), small.value("k" + i));
+        }
+        test.close();
+        small.close();
+    }
+
+    /*
+     * Test that removed records are reused, so the file stops growing under
+     * add/remove churn
+     */
+    @Test
+    public void churnTest() throws IOException {
+        Path file = newFile();
+        MappedMap4<String, String> test = new MappedMap4<>(file, Codec.STRING,
+                Codec.STRING);
+        final int rounds = 20;
+        final int keys = 1000;
+        for (int i = 0; i < keys; i++) {
+            test.add("k" + i, "v" + i);
+        }
+        test.force();
+        long size = Files.size(file);
+        for (int r = 0; r < rounds; r++) {
+            for (int i = 0; i < keys; i++) {
+                test.remove("k" + i);
+                test.add("k" + i, "w" + r + "." + i);
+            }
+        }
+        test.force();
+        assertEquals(size, Files.size(file));
+        assertEquals("w" + (rounds - 1) + ".7", test.value("k7"));
+        test.close();
+    }
+
+    /*
+     * Test removeAny drains a large map in linear time
+     */
+    @Test(timeout = DRAIN_TIMEOUT)
+    public void removeAnyDrainTest() {
+        Map<String, String> test = this.constructorTest();
+        Map<String, String> ref = this.constructorRef();
+        for (int i = 0; i < MANY; i++) {
+            test.add("k" + i, "v" + i);
+            ref.add("k" + i, "v" + i);
+        }
+        int removed = 0;
+        while (test.size() > 0) {
+            Map.Pair<String, String> p = test.removeAny();
+            assertEquals(ref.remove(p.key()).value(), p.value());
+            removed++;
+            if (removed % 3 == 0 && removed < MANY) {
+                // may refill a bucket removeAny has passed already
+                String key = "r" + removed;
+                test.add(key, key);
+                ref.add(key, key);
+            }
+        }
+        assertEquals(0, ref.size());
+    }
+
+    /*
+     * Test that a record longer than a region is rejected, leaving the map
+     * unchanged
+     */
+    @Test
+    public void oversizedRecordTest() throws IOException {
+        MappedMap4<String, String> test = new MappedMap4<>(newFile(),
+                Codec.STRING, Codec.STRING, 1, SMALL_REGION_SHIFT);
+        test.add("a", "b");
+        char[] value = new char[1 << SMALL_REGION_SHIFT];
+        try {
+            test.add("big", new String(value));
+            fail("A record longer than a region should be rejected");
+        } catch (IllegalArgumentException e) {
+            assertEquals(1, test.size());
+            assertEquals("b", test.value("a"));
+        }
+        test.close();
+    }
+
+}
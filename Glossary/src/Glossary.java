@@ -1,11 +1,37 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import components.map.Map;
-import components.map.Map1L;
 import components.queue.Queue;
-import components.queue.Queue1L;
 import components.set.Set;
-import components.set.Set1L;
 import components.simplereader.SimpleReader;
 import components.simplereader.SimpleReader1L;
 import components.simplewriter.SimpleWriter;
@@ -19,6 +45,118 @@ import components.simplewriter.SimpleWriter1L;
  */
 public final class Glossary {
 
+    /**
+     * Line separator of the generated pages.
+     */
+    private static final String NL = System.lineSeparator();
+
+    /**
+     * Layout of a term page.
+     */
+    private static final PageTemplate TERM_PAGE = PageTemplate
+            .compile("<!DOCTYPE html>" + NL
+                    + "<html><head><title>${term}</title></head><body>" + NL
+                    + "<h1 style=\"color: red; font-weight: bold;"
+                    + " font-style: italic;\">${term}</h1>" + NL
+                    + "<p>${definition}</p>" + NL + "<hr />" + NL
+                    + "<p>Return to <a href=\"index.html\">Index</a>.</p>"
+                    + NL + "</body></html>" + NL);
+
+    /**
+     * Layout of the index page, up to the list of terms.
+     */
+    private static final PageTemplate INDEX_HEAD = PageTemplate
+            .compile("<!DOCTYPE html>" + NL + "<h2>Glossary</h2>" + NL
+                    + "<hr />" + NL + "<h3>Index</h3>" + NL + "<ul>" + NL);
+
+    /**
+     * Layout of a term in the index page.
+     */
+    private static final PageTemplate INDEX_ENTRY = PageTemplate
+            .compile("<li><a href=\"${term}.html\">${term}</a></li>" + NL);
+
+    /**
+     * Layout of the index page, after the list of terms.
+     */
+    private static final PageTemplate INDEX_TAIL = PageTemplate
+            .compile("</ul>" + NL + "</body></html>" + NL);
+
+    /**
+     * Buffer each thread renders pages into, reused from page to page.
+     */
+    private static final ThreadLocal<PageTemplate.Output> PAGE_OUTPUT =
+            ThreadLocal.withInitial(PageTemplate.Output::new);
+
+    /**
+     * Builder each thread links definitions into, reused from page to page.
+     */
+    private static final ThreadLocal<StringBuilder> LINKED_DEFINITION =
+            ThreadLocal.withInitial(StringBuilder::new);
+
+    /**
+     * Largest capacity of {@code LINKED_DEFINITION} kept after a page.
+     */
+    private static final int MAX_RETAINED_DEFINITION = 1 << 20;
+
+    /**
+     * Number of threads rendering and writing term pages.
+     */
+    private static final int PAGE_THREADS = Runtime.getRuntime()
+            .availableProcessors();
+
+    /**
+     * Smallest time, in nanoseconds, between two progress reports.
+     */
+    private static final long PROGRESS_INTERVAL = TimeUnit.SECONDS
+            .toNanos(1);
+
+    /**
+     * Largest number of term pages submitted and not yet known to be written.
+     */
+    private static final int MAX_PENDING_PAGES = 4 * PAGE_THREADS;
+
+    /**
+     * Name of the build manifest, in the output folder.
+     */
+    private static final String MANIFEST = ".glossary-manifest";
+
+    /**
+     * First bytes of a build manifest, identifying its format and the way its
+     * pages were rendered; it changes whenever the same glossary would give
+     * different pages, so those built before are all built again.
+     */
+    private static final int MANIFEST_MAGIC = 0x474C4D32;
+
+    /**
+     * What a term page was built from, as recorded in the build manifest.
+     */
+    private static final class PageRecord {
+
+        /**
+         * Hash of the definition of the term.
+         */
+        private final long definitionHash;
+
+        /**
+         * The terms linked from the page, sorted.
+         */
+        private final String[] links;
+
+        /**
+         * Constructor.
+         *
+         * @param definitionHash
+         *            hash of the definition of the term
+         * @param links
+         *            the terms linked from the page, sorted
+         */
+        PageRecord(long definitionHash, String[] links) {
+            this.definitionHash = definitionHash;
+            this.links = links;
+        }
+
+    }
+
     /**
      * Private constructor so this utility class cannot be instantiated.
      */
@@ -67,36 +205,6 @@ public final class Glossary {
         return minVal;
     }
 
-    /**
-     * Finds, removes, and returns the minimum element from the queue according
-     * to the given comparator.
-     *
-     * @param q
-     *            The queue to search through.
-     * @param order
-     *            The comparator to determine the order of elements.
-     * @return The minimum element found in the queue.
-     */
-    private static String findAndRemoveMin(Queue<String> q,
-            Comparator<String> order) {
-        String min = q.dequeue();
-        Queue<String> temp = q.newInstance();
-
-        while (q.length() > 0) {
-            String current = q.dequeue();
-            if (order.compare(current, min) < 0) {
-                temp.enqueue(min);
-                min = current;
-            } else {
-                temp.enqueue(current);
-            }
-        }
-
-        q.transferFrom(temp);
-
-        return min;
-    }
-
     /**
      * Sorts {@code q} according to the ordering provided by the {@code compare}
      * method from {@code order}.
@@ -110,12 +218,18 @@ public final class Glossary {
      * @ensures q = [#q ordered by the relation computed by order.compare]
      */
     public static void sortQueue(Queue<String> q, Comparator<String> order) {
-        Queue<String> tempQueue = q.newInstance();
-        while (!(tempQueue.length() == 0)) {
-            String min = findAndRemoveMin(q, order);
-            tempQueue.enqueue(min);
+        assert q != null : "Violation of: q is not null";
+        assert order != null : "Violation of: order is not null";
+
+        // Sort the entries in an array in O(n log n) comparisons
+        String[] entries = new String[q.length()];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = q.dequeue();
+        }
+        Arrays.sort(entries, order);
+        for (String entry : entries) {
+            q.enqueue(entry);
         }
-        q.transferFrom(tempQueue);
     }
 
     /**
@@ -195,10 +309,46 @@ public final class Glossary {
         return text.substring(position, endPosition);
     }
 
+    /**
+     * Returns the first "word" (maximal length string of characters that are
+     * not separators of {@code tokenizer}) or "separator string" (maximal
+     * length string of separators of {@code tokenizer}) in the given
+     * {@code text} starting at the given {@code position}. Unlike the
+     * {@code Set} version, separators may be whole Unicode categories, each
+     * character is classified with one table lookup, and characters outside
+     * the Basic Multilingual Plane are never split.
+     *
+     * @param text
+     *            the {@code String} from which to get the word or separator
+     *            string
+     * @param position
+     *            the starting index
+     * @param tokenizer
+     *            the tokenizer deciding which characters are separators
+     * @return the first word or separator string found in {@code text}
+     *         starting at index {@code position}
+     * @requires 0 <= position < |text|
+     * @ensures <pre>
+     * nextWordOrSeparator =
+     *   text[position, position + |nextWordOrSeparator|)  and
+     * [nextWordOrSeparator is a maximal word or separator string of
+     *  tokenizer]
+     * </pre>
+     */
+    public static String nextWordOrSeparator(String text, int position,
+            Tokenizer tokenizer) {
+        assert text != null : "Violation of: text is not null";
+        assert tokenizer != null : "Violation of: tokenizer is not null";
+        assert 0 <= position : "Violation of: 0 <= position";
+        assert position < text.length() : "Violation of: position < |text|";
+
+        return text.substring(position, tokenizer.tokenEnd(text, position));
+    }
+
     /**
      * Takes the the term and a map containing all terms and definitions and the
      * output folder. Outputs an html file with the term and definition in the
-     * output folder.
+     * output folder, laid out and linked as the term pages of the glossary.
      *
      * @param term
      *            the term for which the page is being created
@@ -206,85 +356,66 @@ public final class Glossary {
      *            the map containing all the terms and definitions
      * @param folder
      *            the output folder of all the html files
-     * @updates out.content
-     * @requires [term has no spaces] and out.is_open
-     * @ensures <pre>
-     * out.content = #out.content *
-     *   [an HTML page with the term and definition]
-     * </pre>
+     * @requires term is in DOMAIN(m)
+     * @ensures [folder/term.html holds an HTML page with the term and
+     *          definition]
      */
     public static void generatePage(String term, Map<String, String> m,
             String folder) {
-        SimpleWriter out = new SimpleWriter1L(folder + "//" + term + ".html");
-
-        out.println("<html>\n<head>\n\t<title>" + term + "</title>\n</head>");
-
-        out.println("<body>\n<h2><b><i><font color=\"red\">" + term
-                + "</font></i></b></h2>\n");
-
-        out.print("<blockquote>");
-
-        int currentPosition = 0;
-        String definition = m.value(term);
-        Set<Character> separators = new Set1L<Character>();
-        generateAndAddElements(" \t,.", separators);
-        while (currentPosition < definition.length() - 1) {
-            String token = nextWordOrSeparator(definition, currentPosition,
-                    separators);
-            if (m.hasKey(token)) {
-                out.println("<a href=\"" + token + ".html\">" + token + "</a>");
-            } else {
-                out.println(token);
-            }
-            currentPosition += token.length();
+        List<String> terms = new ArrayList<>();
+        for (Map.Pair<String, String> entry : m) {
+            terms.add(entry.key());
         }
+        generatePage(term, m.value(term), new TermLinker(terms), null,
+                folder + "//" + term + ".html");
+    }
 
-        out.print("</blockquote>\n");
-
-        out.println("<hr />\r\n<p>Return to <a href=\"index.html\">index</a>."
-                + "</p>\r\n</body>\r\n</html>");
-
-        out.close();
+    /**
+     * Writes the page of {@code term} to the file {@code fileName}, with the
+     * other terms of {@code linker} linked from its definition. The linker is
+     * built once for all the pages of a glossary rather than for each page.
+     *
+     * @param term
+     *            the term
+     * @param definition
+     *            the definition of the term
+     * @param linker
+     *            the linker of all the glossary terms
+     * @param links
+     *            the collection the terms linked are added to, or
+     *            {@code null}
+     * @param fileName
+     *            the name of the page file
+     * @updates links
+     * @ensures [fileName holds an HTML page with the term and definition]
+     */
+    private static void generatePage(String term, String definition,
+            TermLinker linker, Collection<String> links, String fileName) {
+        PageTemplate.Output page = PAGE_OUTPUT.get();
+        renderTermPage(term, definition, linker, links, page);
+        page.writeTo(fileName);
     }
 
     /**
-     * Reads terms and their definitions from a specified file. Each term is
-     * read as a single line, followed by its definition, which can span
-     * multiple lines until an empty line is encountered.
+     * Reads the terms of a glossary file, skipping their definitions. Each
+     * term is read as a single line, followed by its definition, which can
+     * span multiple lines until an empty line is encountered. A term defined
+     * more than once keeps its last definition.
      *
      * @param fileName
      *            The path to the input file containing terms and definitions.
-     * @return A map where each key is a term (String) and its value is the
-     *         definition (String).
-     */
-    private static Map<String, String> readTermsAndDefinitions(
-            String fileName) {
-        Map<String, String> terms = new Map1L<>();
-        SimpleReader fileReader = new SimpleReader1L(fileName);
-
-        while (!fileReader.atEOS()) {
-            String term = fileReader.nextLine().trim();
-            StringBuilder definition = new StringBuilder();
-
-            if (!fileReader.atEOS()) {
-                String line = fileReader.nextLine();
-
-                boolean continueReading = !line.isEmpty();
-
-                while (continueReading) {
-                    definition.append(line).append(' ');
-                    if (fileReader.atEOS()) {
-                        continueReading = false;
-                    } else {
-                        line = fileReader.nextLine();
-                        continueReading = !line.isEmpty();
-                    }
-                }
+     * @return map from each term to the number of the record holding its
+     *         definition, counting the records of the file from 0
+     */
+    static HashMap<String, Integer> readTerms(String fileName) {
+        HashMap<String, Integer> terms = new HashMap<>();
+        try (GlossaryReader reader = new GlossaryReader(fileName, false)) {
+            int record = 0;
+            while (reader.next()) {
+                terms.put(reader.term(), record);
+                record++;
             }
-
-            terms.add(term, definition.toString().trim());
         }
-        fileReader.close();
         return terms;
     }
 
@@ -293,38 +424,26 @@ public final class Glossary {
      * alphabetically. Each term in the list is a hyperlink to a separate HTML
      * page with its definition.
      *
-     * @param glossary
-     *            A map containing terms as keys and their definitions as
-     *            values.
+     * @param terms
+     *            the terms of the glossary
      * @param folder
      *            The path to the output folder where the index.html will be
      *            saved. It assumes that the folder path ends with a slash.
      */
-    private static void generateIndexPage(Map<String, String> glossary,
+    private static void generateIndexPage(Collection<String> terms,
             String folder) {
-        SimpleWriter out = new SimpleWriter1L(folder + "index.html");
-
-        out.println("<!DOCTYPE html>");
-        out.println("<h2>Glossary</h2>");
-        out.println("<hr />");
-        out.println("<h3>Index</h3>");
-        out.println("<ul>");
-
-        Queue<String> sortedTerms = new Queue1L<>();
-        for (Map.Pair<String, String> term : glossary) {
-            sortedTerms.enqueue(term.key());
+        String[] sortedTerms = terms.toArray(new String[terms.size()]);
+        StringSort.sort(sortedTerms, StringSort::foldCase,
+                StringSort.Engine.AUTO);
+
+        PageTemplate.Output page = PAGE_OUTPUT.get();
+        page.clear();
+        INDEX_HEAD.render(page);
+        for (String term : sortedTerms) {
+            INDEX_ENTRY.render(page, PageTemplate.escape(term));
         }
-        sortedTerms.sort(String.CASE_INSENSITIVE_ORDER);
-
-        while (sortedTerms.length() > 0) {
-            String term = sortedTerms.dequeue();
-            out.println(
-                    "<li><a href=\"" + term + ".html\">" + term + "</a></li>");
-        }
-
-        out.println("</ul>");
-        out.println("</body></html>");
-        out.close();
+        INDEX_TAIL.render(page);
+        page.writeTo(folder + "index.html");
     }
 
     /**
@@ -332,52 +451,338 @@ public final class Glossary {
      * page, the term is displayed in red, boldface, italics at the top,
      * followed by its definition. If other terms from the glossary appear in
      * the definition, they are hyperlinked to their respective pages.
+     * <p>
+     * The definitions are streamed from the glossary file to the threads
+     * rendering the pages, through a queue of a few pages, so only the terms
+     * and the definitions being rendered are in memory at any time.
+     * <p>
+     * Only the pages that may differ from those built before, as recorded in
+     * {@code manifest}, are generated: those of new terms, of changed
+     * definitions, of definitions that contain a new term or link to a
+     * removed one, and pages missing from {@code folder}, or every page if
+     * {@code full}. The pages of removed terms are deleted either way, and
+     * {@code manifest} is updated and saved.
      *
-     * @param glossary
-     *            A map containing terms as keys and their definitions as
-     *            values.
+     * @param fileName
+     *            The path to the input file containing terms and definitions.
+     * @param terms
+     *            map from each term to the number of the record holding its
+     *            definition, as returned by {@code readTerms(fileName)}
      * @param folder
      *            The path to the output folder where the term pages will be
      *            saved. It assumes that the folder path ends with a slash.
+     * @param manifest
+     *            what each page in {@code folder} was built from
+     * @param full
+     *            whether to generate every page, using {@code manifest} only
+     *            to find the pages of removed terms
+     * @param out
+     *            the output stream progress is reported on
+     * @return the number of term pages written
+     * @updates manifest
      */
-    private static void generateTermPages(Map<String, String> glossary,
-            String folder) {
-        for (Map.Pair<String, String> entry : glossary) {
-            SimpleWriter termPage = new SimpleWriter1L(
-                    folder + entry.key() + ".html");
-            termPage.println("<!DOCTYPE html>");
-            termPage.println("<html><head><title>" + entry.key()
-                    + "</title></head><body>");
-            termPage.println(
-                    "<h1 style=\"color: red; font-weight: bold; font-style: italic;\">"
-                            + entry.key() + "</h1>");
-
-            String definition = entry.value();
-
-            for (Map.Pair<String, String> otherEntry : glossary) {
-                String otherTerm = otherEntry.key();
-                if (!otherTerm.equals(entry.key())) {
-                    String link = "<a href=\"" + otherTerm + ".html\">"
-                            + otherTerm + "</a>";
-                    definition = definition
-                            .replaceAll("\\b" + otherTerm + "\\b", link);
+    static int generateTermPages(String fileName,
+            HashMap<String, Integer> terms, String folder,
+            HashMap<String, PageRecord> manifest, boolean full,
+            SimpleWriter out) {
+        TermLinker linker = new TermLinker(terms.keySet());
+
+        // Terms added and removed since the previous build
+        List<String> added = new ArrayList<>();
+        for (String term : terms.keySet()) {
+            if (!manifest.containsKey(term)) {
+                added.add(term);
+            }
+        }
+        TermLinker addedLinker = new TermLinker(added);
+        HashSet<String> removed = new HashSet<>(manifest.keySet());
+        removed.removeAll(terms.keySet());
+        for (String term : removed) {
+            manifest.remove(term);
+            deletePage(folder + term + ".html");
+        }
+        if (full) {
+            manifest.clear();
+        }
+
+        // Render and write the pages on a fixed pool whose short queue makes
+        // this thread wait, or write pages itself, when the pool falls behind
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(PAGE_THREADS,
+                PAGE_THREADS, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(2 * PAGE_THREADS),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        AtomicInteger written = new AtomicInteger();
+        int submitted = 0;
+        long start = System.nanoTime();
+        long lastReport = start;
+        try (GlossaryReader reader = new GlossaryReader(fileName, true)) {
+            ArrayDeque<Future<?>> pending = new ArrayDeque<>();
+            ConcurrentHashMap<String, PageRecord> rebuilt =
+                    new ConcurrentHashMap<>();
+            int record = 0;
+            while (reader.next()) {
+                String term = reader.term();
+                String definition = reader.definition();
+                String page = folder + term + ".html";
+                if (terms.get(term) == record) {
+                    long hash = definitionHash(definition);
+                    if (isStale(manifest.get(term), hash, removed,
+                            addedLinker, definition, page)) {
+                        submitted++;
+                        pending.add(pool.submit(() -> {
+                            TreeSet<String> links = new TreeSet<>();
+                            generatePage(term, definition, linker, links,
+                                    page);
+                            written.incrementAndGet();
+                            rebuilt.put(term, new PageRecord(hash, links
+                                    .toArray(new String[links.size()])));
+                        }));
+                    }
+                }
+                record++;
+
+                // Keep only the pages in flight, surfacing any failure
+                while (!pending.isEmpty() && (pending.peek().isDone()
+                        || pending.size() > MAX_PENDING_PAGES)) {
+                    pending.remove().get();
                 }
+                long now = System.nanoTime();
+                if (now - lastReport >= PROGRESS_INTERVAL) {
+                    reportProgress(out, written.get(), submitted,
+                            now - start);
+                    lastReport = now;
+                }
+            }
+            for (Future<?> result : pending) {
+                result.get();
+            }
+            manifest.putAll(rebuilt);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw (UncheckedIOException) e.getCause();
             }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } finally {
+            pool.shutdown();
+        }
+        saveManifest(folder, manifest);
+        if (written.get() > 0) {
+            reportProgress(out, written.get(), written.get(),
+                    System.nanoTime() - start);
+        }
+        if (written.get() < terms.size()) {
+            out.println("Kept " + (terms.size() - written.get())
+                    + " unchanged term pages");
+        }
+        return written.get();
+    }
 
-            termPage.println("<p>" + definition + "</p>");
-            termPage.println("<hr />"); // Adding horizontal rule after the definition
-            termPage.println(
-                    "<p>Return to <a href=\"index.html\">Index</a>.</p>");
-            termPage.println("</body></html>");
-            termPage.close();
+    /**
+     * Reports whether the page of a term must be generated again.
+     *
+     * @param record
+     *            what the page was built from, or {@code null} if the term is
+     *            new
+     * @param hash
+     *            hash of the current definition
+     * @param removed
+     *            the terms removed since the page was built
+     * @param addedLinker
+     *            linker of the terms added since the page was built
+     * @param definition
+     *            the current definition
+     * @param fileName
+     *            the name of the page
+     * @return true iff the page may differ from the one in the folder
+     */
+    private static boolean isStale(PageRecord record, long hash,
+            HashSet<String> removed, TermLinker addedLinker,
+            String definition, String fileName) {
+        boolean stale = record == null || record.definitionHash != hash
+                || !Files.isRegularFile(Paths.get(fileName));
+        for (int i = 0; !stale && i < record.links.length; i++) {
+            stale = removed.contains(record.links[i]);
+        }
+        if (!stale && addedLinker.size() > 0) {
+            stale = addedLinker.containsAnyTerm(definition);
         }
+        return stale;
+    }
+
+    /**
+     * Returns a 64-bit hash of {@code definition}: the first 8 bytes of the
+     * SHA-256 digest of its UTF-8 encoding.
+     *
+     * @param definition
+     *            the definition
+     * @return the hash
+     */
+    private static long definitionHash(String definition) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return ByteBuffer.wrap(digest
+                    .digest(definition.getBytes(StandardCharsets.UTF_8)))
+                    .getLong();
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns what each page in {@code folder} was built from, as saved in its
+     * build manifest by the previous build. If there is no manifest, or it is
+     * unreadable, the result is empty, so every page is built again.
+     *
+     * @param folder
+     *            the output folder, ending with a slash
+     * @return map from each term to what its page was built from
+     */
+    static HashMap<String, PageRecord> loadManifest(String folder) {
+        HashMap<String, PageRecord> manifest = new HashMap<>();
+        Path file = Paths.get(folder + MANIFEST);
+        if (Files.isRegularFile(file)) {
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(Files.newInputStream(file)))) {
+                if (in.readInt() == MANIFEST_MAGIC) {
+                    int pages = in.readInt();
+                    for (int n = 0; n < pages; n++) {
+                        String term = in.readUTF();
+                        long hash = in.readLong();
+                        String[] links = new String[in.readInt()];
+                        for (int i = 0; i < links.length; i++) {
+                            links[i] = in.readUTF();
+                        }
+                        manifest.put(term, new PageRecord(hash, links));
+                    }
+                }
+            } catch (IOException e) {
+                // A damaged manifest only costs a full build
+                manifest.clear();
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * Saves {@code manifest} as the build manifest of {@code folder}. It is
+     * written to a temporary file first and then moved into place, so an
+     * interrupted build never leaves a partial manifest behind.
+     *
+     * @param folder
+     *            the output folder, ending with a slash
+     * @param manifest
+     *            map from each term to what its page was built from
+     */
+    private static void saveManifest(String folder,
+            HashMap<String, PageRecord> manifest) {
+        Path file = Paths.get(folder + MANIFEST);
+        Path temporary = file.resolveSibling(MANIFEST + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(
+                            Files.newOutputStream(temporary)))) {
+                out.writeInt(MANIFEST_MAGIC);
+                out.writeInt(manifest.size());
+                for (java.util.Map.Entry<String, PageRecord> entry : manifest
+                        .entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(entry.getValue().definitionHash);
+                    out.writeInt(entry.getValue().links.length);
+                    for (String link : entry.getValue().links) {
+                        out.writeUTF(link);
+                    }
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Deletes the page {@code fileName}, if it exists.
+     *
+     * @param fileName
+     *            the name of the page
+     */
+    private static void deletePage(String fileName) {
+        try {
+            Files.deleteIfExists(Paths.get(fileName));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Renders into {@code page} the HTML page of {@code term}: the term in
+     * red, boldface, italics at the top, followed by its definition with the
+     * other terms of {@code linker} linked to their pages.
+     *
+     * @param term
+     *            the term
+     * @param definition
+     *            the definition of the term
+     * @param linker
+     *            the linker of all the glossary terms
+     * @param links
+     *            the collection the terms linked are added to, or
+     *            {@code null}
+     * @param page
+     *            the buffer the page is rendered into
+     * @replaces page
+     * @updates links
+     */
+    private static void renderTermPage(String term, String definition,
+            TermLinker linker, Collection<String> links,
+            PageTemplate.Output page) {
+        // Link the other terms in one pass over the definition, escaping it
+        StringBuilder linked = LINKED_DEFINITION.get();
+        linked.setLength(0);
+        linker.link(definition, term, linked, links);
+
+        page.clear();
+        TERM_PAGE.render(page, PageTemplate.escape(term), linked);
+        if (linked.capacity() > MAX_RETAINED_DEFINITION) {
+            linked.setLength(0);
+            linked.trimToSize();
+        }
+    }
+
+    /**
+     * Reports on {@code out} how many of the term pages are written and how
+     * fast.
+     *
+     * @param out
+     *            the output stream
+     * @param written
+     *            number of pages written
+     * @param total
+     *            number of pages to write
+     * @param elapsed
+     *            time taken so far, in nanoseconds
+     * @updates out.content
+     * @requires out.is_open
+     */
+    private static void reportProgress(SimpleWriter out, int written,
+            int total, long elapsed) {
+        long perSecond = written * TimeUnit.SECONDS.toNanos(1)
+                / Math.max(1, elapsed);
+        out.println("Wrote " + written + "/" + total + " term pages ("
+                + perSecond + " pages/sec)");
     }
 
     /**
      * Main method.
      *
      * @param args
-     *            the command line arguments
+     *            the command line arguments: {@code --full} to generate every
+     *            page, using the build manifest of the output folder only to
+     *            delete the pages of removed terms
      */
     public static void main(String[] args) {
         SimpleReader in = new SimpleReader1L();
@@ -392,9 +797,20 @@ public final class Glossary {
             outputFolder += "/";
         }
 
-        Map<String, String> glossary = readTermsAndDefinitions(inputFile);
-        generateIndexPage(glossary, outputFolder);
-        generateTermPages(glossary, outputFolder);
+        // Read the terms first, and stream the definitions later; rebuild
+        // only what changed since the previous build, unless asked for a
+        // full build, which still reads the manifest to delete the pages of
+        // removed terms; the index changes only if the terms do
+        boolean full = args.length > 0 && args[0].equals("--full");
+        HashMap<String, PageRecord> manifest = loadManifest(outputFolder);
+        HashMap<String, Integer> terms = readTerms(inputFile);
+        Path index = Paths.get(outputFolder + "index.html");
+        if (full || !manifest.keySet().equals(terms.keySet())
+                || !Files.isRegularFile(index)) {
+            generateIndexPage(terms.keySet(), outputFolder);
+        }
+        generateTermPages(inputFile, terms, outputFolder, manifest, full,
+                out);
 
         in.close();
         out.close();
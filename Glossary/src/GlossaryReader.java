@@ -0,0 +1,310 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the records of a glossary file one at a time. Each record is a term on
+ * one line, followed by its definition, which spans the lines up to the next
+ * empty line or the end of the file; the lines of a definition are joined with
+ * spaces. The file is read through one fixed buffer, in UTF-8, so reading a
+ * glossary of any size takes the same memory, plus that of the current
+ * record. A reader may also skip the definitions, to list the terms without
+ * building any definition.
+ *
+ * @author Jared Alonzo
+ *
+ */
+public final class GlossaryReader implements Closeable {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Default size of the buffers, in bytes and in characters.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Bytes read from the file and not decoded yet.
+     */
+    private final ByteBuffer bytes;
+
+    /**
+     * Characters decoded and not read yet, ready to be read.
+     */
+    private final CharBuffer chars;
+
+    /**
+     * The UTF-8 decoder, replacing malformed input.
+     */
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8
+            .newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    /**
+     * Whether the definitions are built, or skipped.
+     */
+    private final boolean definitions;
+
+    /**
+     * The current line or definition being built.
+     */
+    private final StringBuilder text = new StringBuilder();
+
+    /**
+     * Whether the end of the file has been read into {@code bytes}.
+     */
+    private boolean endOfInput;
+
+    /**
+     * Whether the last line read ended with {@code '\r'}, so a {@code '\n'}
+     * following it belongs to the same line terminator.
+     */
+    private boolean skipLineFeed;
+
+    /**
+     * The term of the current record.
+     */
+    private String term;
+
+    /**
+     * The definition of the current record.
+     */
+    private String definition;
+
+    /**
+     * Returns {@code s} without leading and trailing characters up to
+     * {@code ' '}, as {@code String.trim} would.
+     *
+     * @param s
+     *            the text
+     * @return the trimmed text
+     */
+    private static String trim(CharSequence s) {
+        int start = 0;
+        int end = s.length();
+        while (start < end && s.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && s.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return s.subSequence(start, end).toString();
+    }
+
+    /**
+     * Makes sure {@code chars} holds at least one character, reading and
+     * decoding more of the file if needed.
+     *
+     * @return false iff the whole file has been read
+     */
+    private boolean fill() {
+        while (!this.chars.hasRemaining() && !(this.endOfInput
+                && !this.bytes.hasRemaining())) {
+            this.chars.clear();
+            try {
+                if (!this.endOfInput) {
+                    this.bytes.compact();
+                    this.endOfInput = this.channel.read(this.bytes) < 0;
+                    this.bytes.flip();
+                }
+                CoderResult result = this.decoder.decode(this.bytes,
+                        this.chars, this.endOfInput);
+                if (this.endOfInput && result.isUnderflow()) {
+                    this.decoder.flush(this.chars);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            this.chars.flip();
+        }
+        return this.chars.hasRemaining();
+    }
+
+    /**
+     * Reports whether the file has another line, first dropping the
+     * {@code '\n'} of a {@code "\r\n"} terminator.
+     *
+     * @return true iff there is another line
+     */
+    private boolean hasLine() {
+        boolean result = this.fill();
+        if (result && this.skipLineFeed) {
+            this.skipLineFeed = false;
+            if (this.chars.get(this.chars.position()) == '\n') {
+                this.chars.get();
+                result = this.fill();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads the next line, appending it to {@code sink} unless it is
+     * {@code null}. Lines end with {@code '\n'}, {@code '\r'} or
+     * {@code "\r\n"}.
+     *
+     * @param sink
+     *            the builder the line is appended to, or {@code null}
+     * @return the length of the line
+     * @updates sink
+     * @requires this.hasLine()
+     */
+    private int readLine(StringBuilder sink) {
+        int length = 0;
+        boolean endOfLine = false;
+        while (!endOfLine && this.fill()) {
+            int start = this.chars.position();
+            int i = start;
+            int limit = this.chars.limit();
+            while (i < limit && this.chars.get(i) != '\n'
+                    && this.chars.get(i) != '\r') {
+                i++;
+            }
+            if (sink != null) {
+                sink.append(this.chars, 0, i - start);
+            }
+            length += i - start;
+            endOfLine = i < limit;
+            if (endOfLine) {
+                this.skipLineFeed = this.chars.get(i) == '\r';
+                i++;
+            }
+            this.chars.position(i);
+        }
+        return length;
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor opening {@code fileName} with buffers of
+     * {@code bufferSize}.
+     *
+     * @param fileName
+     *            the name of the glossary file
+     * @param definitions
+     *            whether the definitions are built, or skipped
+     * @param bufferSize
+     *            size of the buffers, in bytes and in characters
+     * @requires bufferSize >= 4
+     */
+    GlossaryReader(String fileName, boolean definitions, int bufferSize) {
+        assert fileName != null : "Violation of: fileName is not null";
+        assert bufferSize >= 4 : "Violation of: bufferSize >= 4";
+
+        try {
+            this.channel = FileChannel.open(Paths.get(fileName),
+                    StandardOpenOption.READ);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.bytes = ByteBuffer.allocate(bufferSize);
+        this.bytes.flip();
+        this.chars = CharBuffer.allocate(bufferSize);
+        this.chars.flip();
+        this.definitions = definitions;
+    }
+
+    /**
+     * Constructor opening {@code fileName}.
+     *
+     * @param fileName
+     *            the name of the glossary file
+     * @param definitions
+     *            whether the definitions are built, or skipped
+     */
+    public GlossaryReader(String fileName, boolean definitions) {
+        this(fileName, definitions, BUFFER_SIZE);
+    }
+
+    /*
+     * Other methods ----------------------------------------------------------
+     */
+
+    /**
+     * Reads the next record, if there is one.
+     *
+     * @return true iff a record was read, false at the end of the file
+     */
+    public boolean next() {
+        boolean found = this.hasLine();
+        if (found) {
+            this.text.setLength(0);
+            this.readLine(this.text);
+            this.term = trim(this.text);
+
+            // The definition: the lines up to an empty one, joined by spaces
+            this.text.setLength(0);
+            StringBuilder sink = null;
+            if (this.definitions) {
+                sink = this.text;
+            }
+            boolean more = this.hasLine();
+            while (more) {
+                more = this.readLine(sink) > 0;
+                if (more && sink != null) {
+                    sink.append(' ');
+                }
+                more = more && this.hasLine();
+            }
+            this.definition = null;
+            if (this.definitions) {
+                this.definition = trim(this.text);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns the term of the current record.
+     *
+     * @return the term, trimmed
+     * @requires next() has returned true
+     */
+    public String term() {
+        assert this.term != null : "Violation of: there is a current record";
+
+        return this.term;
+    }
+
+    /**
+     * Returns the definition of the current record.
+     *
+     * @return the definition, trimmed, or {@code null} if definitions are
+     *         skipped
+     * @requires next() has returned true
+     */
+    public String definition() {
+        assert this.term != null : "Violation of: there is a current record";
+
+        return this.definition;
+    }
+
+    @Override
+    public void close() {
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
@@ -0,0 +1,359 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A page layout compiled once into the UTF-8 bytes of its static text and the
+ * slots between them. A slot is written {@code ${name}} in the layout, and is
+ * filled with the value of field {@code name} when a page is rendered; a field
+ * may fill several slots. Values are written as given, so each is escaped
+ * once, with {@code escape}, however many slots it fills.
+ * <p>
+ * Pages are rendered into an {@code Output}, a growable byte buffer meant to
+ * be reused from page to page, so rendering a page copies the static bytes and
+ * encodes the values without building any intermediate string.
+ *
+ * @author Jared Alonzo
+ *
+ */
+public final class PageTemplate {
+
+    /**
+     * A growable buffer of the UTF-8 bytes of a page.
+     */
+    public static final class Output {
+
+        /**
+         * Initial capacity, in bytes.
+         */
+        private static final int INITIAL_CAPACITY = 1 << 12;
+
+        /**
+         * Largest capacity kept by {@code clear}, so one huge page does not
+         * hold on to its memory for the pages that follow.
+         */
+        private static final int MAX_RETAINED_CAPACITY = 1 << 20;
+
+        /**
+         * The bytes, of which the first {@code length} are the page.
+         */
+        private byte[] bytes = new byte[INITIAL_CAPACITY];
+
+        /**
+         * Number of bytes of the page.
+         */
+        private int length;
+
+        /**
+         * Makes room for {@code n} more bytes.
+         *
+         * @param n
+         *            the number of bytes
+         */
+        private void reserve(int n) {
+            if (this.length + n > this.bytes.length) {
+                int capacity = Math.max(2 * this.bytes.length,
+                        this.length + n);
+                byte[] grown = new byte[capacity];
+                System.arraycopy(this.bytes, 0, grown, 0, this.length);
+                this.bytes = grown;
+            }
+        }
+
+        /**
+         * Empties the buffer.
+         */
+        public void clear() {
+            if (this.bytes.length > MAX_RETAINED_CAPACITY) {
+                this.bytes = new byte[INITIAL_CAPACITY];
+            }
+            this.length = 0;
+        }
+
+        /**
+         * Returns the number of bytes of the page.
+         *
+         * @return the length of the page
+         */
+        public int length() {
+            return this.length;
+        }
+
+        /**
+         * Appends {@code b} to the page.
+         *
+         * @param b
+         *            the bytes
+         */
+        public void write(byte[] b) {
+            this.reserve(b.length);
+            System.arraycopy(b, 0, this.bytes, this.length, b.length);
+            this.length += b.length;
+        }
+
+        /**
+         * Appends {@code s} to the page, encoded in UTF-8. Unpaired
+         * surrogates are written as {@code '?'}, as
+         * {@code StandardCharsets.UTF_8} writes them.
+         *
+         * @param s
+         *            the text
+         */
+        public void write(CharSequence s) {
+            // No character takes more than three bytes per char
+            this.reserve(3 * s.length());
+            byte[] b = this.bytes;
+            int n = this.length;
+            int i = 0;
+            while (i < s.length()) {
+                char c = s.charAt(i);
+                i++;
+                if (c < 0x80) {
+                    b[n++] = (byte) c;
+                } else if (c < 0x800) {
+                    b[n++] = (byte) (0xC0 | (c >> 6));
+                    b[n++] = (byte) (0x80 | (c & 0x3F));
+                } else if (!Character.isSurrogate(c)) {
+                    b[n++] = (byte) (0xE0 | (c >> 12));
+                    b[n++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    b[n++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i < s.length()
+                        && Character.isLowSurrogate(s.charAt(i))) {
+                    int cp = Character.toCodePoint(c, s.charAt(i));
+                    i++;
+                    b[n++] = (byte) (0xF0 | (cp >> 18));
+                    b[n++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                    b[n++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                    b[n++] = (byte) (0x80 | (cp & 0x3F));
+                } else {
+                    b[n++] = '?';
+                }
+            }
+            this.length = n;
+        }
+
+        /**
+         * Writes the page to the file {@code fileName}, replacing its
+         * contents, with one channel write.
+         *
+         * @param fileName
+         *            the name of the file
+         */
+        public void writeTo(String fileName) {
+            ByteBuffer page = ByteBuffer.wrap(this.bytes, 0, this.length);
+            try (FileChannel channel = FileChannel.open(Paths.get(fileName),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (page.hasRemaining()) {
+                    channel.write(page);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return new String(this.bytes, 0, this.length,
+                    StandardCharsets.UTF_8);
+        }
+
+    }
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Opening of a slot.
+     */
+    private static final String SLOT_START = "${";
+
+    /**
+     * Closing of a slot.
+     */
+    private static final String SLOT_END = "}";
+
+    /**
+     * The character reference {@code escape} replaces each character with,
+     * indexed by character, or {@code null} for characters kept as they are;
+     * no character past {@code '>'} is replaced.
+     */
+    private static final String[] REFERENCES = new String['>' + 1];
+
+    static {
+        REFERENCES['&'] = "&amp;";
+        REFERENCES['<'] = "&lt;";
+        REFERENCES['>'] = "&gt;";
+        REFERENCES['"'] = "&quot;";
+    }
+
+    /**
+     * The UTF-8 bytes of the static text around the slots; segment
+     * {@code i} comes just before slot {@code i}, and the last one ends the
+     * page.
+     */
+    private final byte[][] segments;
+
+    /**
+     * The field filling each slot.
+     */
+    private final int[] slots;
+
+    /**
+     * Number of distinct fields.
+     */
+    private final int fieldCount;
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor.
+     *
+     * @param segments
+     *            the static text around the slots, in UTF-8
+     * @param slots
+     *            the field filling each slot
+     * @param fieldCount
+     *            number of distinct fields
+     */
+    private PageTemplate(byte[][] segments, int[] slots, int fieldCount) {
+        this.segments = segments;
+        this.slots = slots;
+        this.fieldCount = fieldCount;
+    }
+
+    /**
+     * Returns the template of {@code layout}. Its fields are numbered in the
+     * order they first appear in {@code layout}, which is the order their
+     * values are given to {@code render}.
+     *
+     * @param layout
+     *            the page with a slot {@code ${name}} wherever the value of
+     *            field {@code name} goes
+     * @return the compiled template
+     * @requires every "${" in layout is closed by a "}"
+     */
+    public static PageTemplate compile(String layout) {
+        assert layout != null : "Violation of: layout is not null";
+
+        List<byte[]> segments = new ArrayList<>();
+        List<String> slots = new ArrayList<>();
+        List<String> fields = new ArrayList<>();
+        int position = 0;
+        int start = layout.indexOf(SLOT_START);
+        while (start >= 0) {
+            int end = layout.indexOf(SLOT_END, start);
+            assert end >= 0 : "Violation of: every slot is closed";
+            String name = layout.substring(start + SLOT_START.length(), end);
+            segments.add(layout.substring(position, start)
+                    .getBytes(StandardCharsets.UTF_8));
+            slots.add(name);
+            if (!fields.contains(name)) {
+                fields.add(name);
+            }
+            position = end + SLOT_END.length();
+            start = layout.indexOf(SLOT_START, position);
+        }
+        segments.add(
+                layout.substring(position).getBytes(StandardCharsets.UTF_8));
+
+        int[] slotFields = new int[slots.size()];
+        for (int i = 0; i < slotFields.length; i++) {
+            slotFields[i] = fields.indexOf(slots.get(i));
+        }
+        return new PageTemplate(segments.toArray(new byte[segments.size()][]),
+                slotFields, fields.size());
+    }
+
+    /*
+     * Other methods ----------------------------------------------------------
+     */
+
+    /**
+     * Appends to {@code out} the page of this template with the slots filled
+     * with {@code values}, written as given.
+     *
+     * @param out
+     *            the buffer the page is appended to
+     * @param values
+     *            the value of each field, in the order the fields first
+     *            appear in the layout
+     * @updates out
+     * @requires |values| = [number of fields of this template]
+     */
+    public void render(Output out, CharSequence... values) {
+        assert out != null : "Violation of: out is not null";
+        assert values.length == this.fieldCount
+                : "Violation of: |values| = number of fields";
+
+        for (int i = 0; i < this.slots.length; i++) {
+            out.write(this.segments[i]);
+            out.write(values[this.slots[i]]);
+        }
+        out.write(this.segments[this.slots.length]);
+    }
+
+    /**
+     * Appends {@code [start, end)} of {@code text} to {@code out}, with the
+     * characters that are special in HTML text and in double-quoted attribute
+     * values replaced by their character references.
+     *
+     * @param text
+     *            the text
+     * @param start
+     *            index of the first character to append
+     * @param end
+     *            index just past the last character to append
+     * @param out
+     *            the builder the escaped text is appended to
+     * @updates out
+     * @requires 0 <= start <= end <= |text|
+     */
+    public static void escape(CharSequence text, int start, int end,
+            StringBuilder out) {
+        int copied = start;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < REFERENCES.length && REFERENCES[c] != null) {
+                out.append(text, copied, i).append(REFERENCES[c]);
+                copied = i + 1;
+            }
+        }
+        out.append(text, copied, end);
+    }
+
+    /**
+     * Returns {@code text} with the characters that are special in HTML text
+     * and in double-quoted attribute values replaced by their character
+     * references.
+     *
+     * @param text
+     *            the text
+     * @return the escaped text, {@code text} itself if nothing needed
+     *         escaping
+     */
+    public static String escape(String text) {
+        int i = 0;
+        while (i < text.length() && (text.charAt(i) >= REFERENCES.length
+                || REFERENCES[text.charAt(i)] == null)) {
+            i++;
+        }
+        String result = text;
+        if (i < text.length()) {
+            StringBuilder escaped = new StringBuilder(text.length() + 16);
+            escape(text, 0, text.length(), escaped);
+            result = escaped.toString();
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,435 @@
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Links the glossary terms found in a text to their pages. All the terms are
+ * stored once in a trie, and a text is rewritten in one left-to-right pass:
+ * at each position not inside a word the trie is walked along the text to
+ * find the longest term starting there and not ending inside a word, which is
+ * replaced by a link and skipped, so linked text is never matched again. A
+ * position is inside a word if the characters on both sides of it are word
+ * characters, that is, not separators of the linker's {@code Tokenizer}. By
+ * default the word characters are letters, digits and {@code '_'}, so a term
+ * made of word characters is matched exactly where the regular expression
+ * {@code \bterm\b} would match it, and a term such as {@code C++} is matched
+ * too. The text is HTML-escaped, and the link to each term is built once,
+ * with the term escaped, when the trie is built.
+ * <p>
+ * The trie's edges are kept in one open-addressing hash table keyed on the
+ * parent node and the character, so the trie costs a few arrays however many
+ * terms it holds, and each character of a walk costs one probe.
+ *
+ * @author Jared Alonzo
+ *
+ */
+public final class TermLinker {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Initial capacity of the node and edge arrays.
+     */
+    private static final int INITIAL_CAPACITY = 1 << 8;
+
+    /**
+     * Marks an empty slot of the edge table, and a node that ends no term.
+     */
+    private static final int NONE = -1;
+
+    /**
+     * The Unicode general categories of all the characters but letters,
+     * decimal digits and connector punctuation.
+     */
+    private static final int[] NON_WORD_CATEGORIES = {
+            Character.UNASSIGNED, Character.NON_SPACING_MARK,
+            Character.ENCLOSING_MARK, Character.COMBINING_SPACING_MARK,
+            Character.LETTER_NUMBER, Character.OTHER_NUMBER,
+            Character.SPACE_SEPARATOR, Character.LINE_SEPARATOR,
+            Character.PARAGRAPH_SEPARATOR, Character.CONTROL,
+            Character.FORMAT, Character.PRIVATE_USE, Character.SURROGATE,
+            Character.DASH_PUNCTUATION, Character.START_PUNCTUATION,
+            Character.END_PUNCTUATION, Character.OTHER_PUNCTUATION,
+            Character.MATH_SYMBOL, Character.CURRENCY_SYMBOL,
+            Character.MODIFIER_SYMBOL, Character.OTHER_SYMBOL,
+            Character.INITIAL_QUOTE_PUNCTUATION,
+            Character.FINAL_QUOTE_PUNCTUATION };
+
+    /**
+     * The connector punctuation other than {@code '_'}.
+     */
+    private static final String OTHER_CONNECTORS = "\u203F\u2040\u2054"
+            + "\uFE33\uFE34\uFE4D\uFE4E\uFE4F\uFF3F";
+
+    /**
+     * The tokenizer of the default word characters, letters, digits and
+     * {@code '_'}, as in the regular expression {@code \b}.
+     */
+    private static final Tokenizer WORDS = Tokenizer.of(OTHER_CONNECTORS)
+            .withCategories(NON_WORD_CATEGORIES);
+
+    /**
+     * The tokenizer whose non-separators are the word characters.
+     */
+    private final Tokenizer words;
+
+    /**
+     * The terms, indexed by the nodes ending them.
+     */
+    private String[] terms = new String[INITIAL_CAPACITY];
+
+    /**
+     * The links to the terms, indexed like {@code terms}.
+     */
+    private String[] links = new String[INITIAL_CAPACITY];
+
+    /**
+     * Number of nodes of the trie; node 0 is the root.
+     */
+    private int nodes = 1;
+
+    /**
+     * Keys of the edges, {@code parent << 16 | character}, parallel to
+     * {@code children}.
+     */
+    private long[] edgeKeys = new long[INITIAL_CAPACITY];
+
+    /**
+     * Child node of each edge, or {@code NONE} for an empty slot.
+     */
+    private int[] children = newEdgeArray(INITIAL_CAPACITY);
+
+    /**
+     * Number of edges.
+     */
+    private int edges;
+
+    /**
+     * Number of distinct terms.
+     */
+    private int size;
+
+    /**
+     * Returns an empty array of {@code capacity} edge slots.
+     *
+     * @param capacity
+     *            the number of slots
+     * @return the array, filled with {@code NONE}
+     */
+    private static int[] newEdgeArray(int capacity) {
+        int[] array = new int[capacity];
+        Arrays.fill(array, NONE);
+        return array;
+    }
+
+    /**
+     * Returns the slot of the edge table where the edge {@code key} is, or
+     * the empty slot where it would go.
+     *
+     * @param keys
+     *            the edge keys
+     * @param values
+     *            the child nodes, {@code NONE} in empty slots
+     * @param key
+     *            the edge key
+     * @return the slot
+     */
+    private static int slot(long[] keys, int[] values, long key) {
+        int mask = keys.length - 1;
+        long h = key * 0x9E3779B97F4A7C15L;
+        int i = (int) (h >>> 32) & mask;
+        while (values[i] != NONE && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    /**
+     * Returns the child of {@code node} along character {@code c}, or
+     * {@code NONE} if there is none.
+     *
+     * @param node
+     *            the parent node
+     * @param c
+     *            the character
+     * @return the child node, or {@code NONE}
+     */
+    private int child(int node, char c) {
+        return this.children[slot(this.edgeKeys, this.children,
+                ((long) node << Character.SIZE) | c)];
+    }
+
+    /**
+     * Adds the edge from {@code node} along {@code c} to a new node and
+     * returns the new node.
+     *
+     * @param node
+     *            the parent node
+     * @param c
+     *            the character
+     * @return the new node
+     */
+    private int addChild(int node, char c) {
+        if (2 * (this.edges + 1) > this.edgeKeys.length) {
+            // Keep the edge table at most half full
+            long[] oldKeys = this.edgeKeys;
+            int[] oldChildren = this.children;
+            this.edgeKeys = new long[2 * oldKeys.length];
+            this.children = newEdgeArray(2 * oldKeys.length);
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldChildren[j] != NONE) {
+                    int i = slot(this.edgeKeys, this.children, oldKeys[j]);
+                    this.edgeKeys[i] = oldKeys[j];
+                    this.children[i] = oldChildren[j];
+                }
+            }
+        }
+        if (this.nodes == this.terms.length) {
+            this.terms = Arrays.copyOf(this.terms, 2 * this.terms.length);
+            this.links = Arrays.copyOf(this.links, this.terms.length);
+        }
+        long key = ((long) node << Character.SIZE) | c;
+        int i = slot(this.edgeKeys, this.children, key);
+        this.edgeKeys[i] = key;
+        this.children[i] = this.nodes;
+        this.edges++;
+        this.nodes++;
+        return this.nodes - 1;
+    }
+
+    /**
+     * Reports whether index {@code i} of {@code text} is inside a word, that
+     * is, between two word characters.
+     *
+     * @param text
+     *            the text
+     * @param i
+     *            the index, between 0 and {@code |text|}
+     * @return true iff the characters on both sides of {@code i} are word
+     *         characters
+     */
+    private boolean isInsideWord(CharSequence text, int i) {
+        return i > 0 && i < text.length()
+                && !this.words.isSeparator(Character.codePointBefore(text, i))
+                && !this.words.isSeparator(Character.codePointAt(text, i));
+    }
+
+    /**
+     * Returns the node ending the longest term other than {@code excluded}
+     * that starts at index {@code start} of {@code text} and does not end
+     * inside a word, or {@code NONE} if there is none.
+     *
+     * @param text
+     *            the text
+     * @param start
+     *            the index where the term must start
+     * @param excluded
+     *            a term never matched, or {@code null}
+     * @return the node ending the longest term found, or {@code NONE}
+     */
+    private int longestTermNodeAt(CharSequence text, int start,
+            String excluded) {
+        int longest = NONE;
+        int node = 0;
+        int i = start;
+        while (node != NONE && i < text.length()) {
+            node = this.child(node, text.charAt(i));
+            i++;
+            if (node != NONE && this.terms[node] != null
+                    && !this.terms[node].equals(excluded)
+                    && !this.isInsideWord(text, i)) {
+                longest = node;
+            }
+        }
+        return longest;
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor building the trie of {@code terms}, whose word characters
+     * are letters, digits and {@code '_'}. Empty terms are ignored.
+     *
+     * @param terms
+     *            the glossary terms
+     */
+    public TermLinker(Iterable<String> terms) {
+        this(terms, WORDS);
+    }
+
+    /**
+     * Constructor building the trie of {@code terms}, whose word characters
+     * are the characters that are not separators of {@code words}. Empty
+     * terms are ignored.
+     *
+     * @param terms
+     *            the glossary terms
+     * @param words
+     *            the tokenizer deciding which characters are word characters
+     */
+    public TermLinker(Iterable<String> terms, Tokenizer words) {
+        assert terms != null : "Violation of: terms is not null";
+        assert words != null : "Violation of: words is not null";
+
+        this.words = words;
+        for (String term : terms) {
+            int node = 0;
+            for (int i = 0; i < term.length(); i++) {
+                int next = this.child(node, term.charAt(i));
+                if (next == NONE) {
+                    next = this.addChild(node, term.charAt(i));
+                }
+                node = next;
+            }
+            if (node != 0 && this.terms[node] == null) {
+                String escaped = PageTemplate.escape(term);
+                this.terms[node] = term;
+                this.links[node] = "<a href=\"" + escaped + ".html\">"
+                        + escaped + "</a>";
+                this.size++;
+            }
+        }
+    }
+
+    /*
+     * Other methods ----------------------------------------------------------
+     */
+
+    /**
+     * Returns the number of distinct terms.
+     *
+     * @return the number of terms
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the longest term other than {@code excluded} that starts at
+     * index {@code start} of {@code text} and does not end inside a word, or
+     * {@code null} if there is none.
+     *
+     * @param text
+     *            the text
+     * @param start
+     *            the index where the term must start
+     * @param excluded
+     *            a term never matched, or {@code null}
+     * @return the longest term found, or {@code null}
+     */
+    public String longestTermAt(CharSequence text, int start,
+            String excluded) {
+        String longest = null;
+        int node = this.longestTermNodeAt(text, start, excluded);
+        if (node != NONE) {
+            longest = this.terms[node];
+        }
+        return longest;
+    }
+
+    /**
+     * Appends {@code text} to {@code out}, HTML-escaped, with every occurrence
+     * of a term other than {@code excluded} replaced by a link to the term's
+     * page, {@code <a href="TERM.html">TERM</a>}. Occurrences are found from
+     * left to right, the longest one wins where several start at the same
+     * place, and they never overlap.
+     *
+     * @param text
+     *            the text
+     * @param excluded
+     *            a term never linked, such as the term being defined, or
+     *            {@code null}
+     * @param out
+     *            the builder the linked text is appended to
+     * @updates out
+     */
+    public void link(CharSequence text, String excluded, StringBuilder out) {
+        this.link(text, excluded, out, null);
+    }
+
+    /**
+     * Appends {@code text} to {@code out} with every occurrence of a term
+     * other than {@code excluded} linked, as {@code link(text, excluded, out)}
+     * does, and adds each term linked to {@code linked}.
+     *
+     * @param text
+     *            the text
+     * @param excluded
+     *            a term never linked, such as the term being defined, or
+     *            {@code null}
+     * @param out
+     *            the builder the linked text is appended to
+     * @param linked
+     *            the collection the terms linked are added to, or
+     *            {@code null}
+     * @updates out, linked
+     */
+    public void link(CharSequence text, String excluded, StringBuilder out,
+            Collection<String> linked) {
+        assert text != null : "Violation of: text is not null";
+        assert out != null : "Violation of: out is not null";
+
+        int copied = 0;
+        int i = 0;
+        while (i < text.length()) {
+            int node = NONE;
+            if (!this.isInsideWord(text, i)) {
+                node = this.longestTermNodeAt(text, i, excluded);
+            }
+            if (node == NONE) {
+                i++;
+            } else {
+                PageTemplate.escape(text, copied, i, out);
+                out.append(this.links[node]);
+                if (linked != null) {
+                    linked.add(this.terms[node]);
+                }
+                i += this.terms[node].length();
+                copied = i;
+            }
+        }
+        PageTemplate.escape(text, copied, text.length(), out);
+    }
+
+    /**
+     * Returns {@code text}, HTML-escaped, with every occurrence of a term
+     * other than {@code excluded} replaced by a link to the term's page, as
+     * {@code link(text, excluded, out)} appends it.
+     *
+     * @param text
+     *            the text
+     * @param excluded
+     *            a term never linked, or {@code null}
+     * @return the linked text
+     */
+    public String link(CharSequence text, String excluded) {
+        StringBuilder out = new StringBuilder(text.length());
+        this.link(text, excluded, out);
+        return out.toString();
+    }
+
+    /**
+     * Reports whether any term occurs in {@code text} where it would be
+     * linked, that is, not inside a longer word.
+     *
+     * @param text
+     *            the text
+     * @return true iff {@code text} contains a term
+     */
+    public boolean containsAnyTerm(CharSequence text) {
+        assert text != null : "Violation of: text is not null";
+
+        boolean found = false;
+        int i = 0;
+        while (!found && i < text.length()) {
+            found = !this.isInsideWord(text, i)
+                    && this.longestTermNodeAt(text, i, null) != NONE;
+            i++;
+        }
+        return found;
+    }
+
+}
@@ -0,0 +1,156 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test class for {@link GlossaryReader}. Checks the records read from small
+ * glossary files, including with buffers smaller than a line.
+ */
+public class GlossaryReaderTest {
+
+    /**
+     * Folder of the glossary files, deleted after each test.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Returns the name of a new file holding {@code contents} in UTF-8.
+     *
+     * @param contents
+     *            the contents of the file
+     * @return the name of the file
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    private String glossary(String contents) throws IOException {
+        File file = this.folder.newFile();
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+        return file.getPath();
+    }
+
+    /**
+     * Reads the next record of {@code reader} and checks it.
+     *
+     * @param reader
+     *            the reader
+     * @param term
+     *            the expected term
+     * @param definition
+     *            the expected definition
+     */
+    private static void assertRecord(GlossaryReader reader, String term,
+            String definition) {
+        assertTrue("There should be a record for " + term + ".",
+                reader.next());
+        assertEquals("The term should match.", term, reader.term());
+        assertEquals("The definition should match.", definition,
+                reader.definition());
+    }
+
+    /**
+     * Tests reading terms with definitions of several lines.
+     *
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    @Test
+    public void testReadRecords() throws IOException {
+        String file = this.glossary("book\na printed work\nof pages\n\n"
+                + "word\na unit of language\n");
+        try (GlossaryReader reader = new GlossaryReader(file, true)) {
+            assertRecord(reader, "book", "a printed work of pages");
+            assertRecord(reader, "word", "a unit of language");
+            assertFalse("There should be no more records.", reader.next());
+        }
+    }
+
+    /**
+     * Tests that terms and definitions are trimmed, and that every line
+     * terminator ends a line.
+     *
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    @Test
+    public void testLineTerminators() throws IOException {
+        String file = this.glossary(
+                " term \r\n  first\r\nsecond  \r\rnext\rdefined\n\n");
+        try (GlossaryReader reader = new GlossaryReader(file, true)) {
+            assertRecord(reader, "term", "first second");
+            assertRecord(reader, "next", "defined");
+            assertFalse("There should be no more records.", reader.next());
+        }
+    }
+
+    /**
+     * Tests that a file without a final line terminator is read whole, and
+     * that a term at the end of the file has an empty definition.
+     *
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    @Test
+    public void testEndOfFile() throws IOException {
+        String file = this.glossary("term\ndefinition\n\nlast");
+        try (GlossaryReader reader = new GlossaryReader(file, true)) {
+            assertRecord(reader, "term", "definition");
+            assertRecord(reader, "last", "");
+            assertFalse("There should be no more records.", reader.next());
+        }
+    }
+
+    /**
+     * Tests reading lines and characters longer than the buffers.
+     *
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    @Test
+    public void testSmallBuffers() throws IOException {
+        String term = "caf\u00E9 \u4E2D\uD83D\uDE00";
+        String file = this.glossary(
+                term + "\r\n\u00E9t\u00E9 \u00E0\r\nd\u00E9j\u00E0 vu\r\n");
+        for (int size = 4; size <= 8; size++) {
+            try (GlossaryReader reader = new GlossaryReader(file, true,
+                    size)) {
+                assertRecord(reader, term,
+                        "\u00E9t\u00E9 \u00E0 d\u00E9j\u00E0 vu");
+                assertFalse("There should be no more records.",
+                        reader.next());
+            }
+        }
+    }
+
+    /**
+     * Tests reading the terms only.
+     *
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    @Test
+    public void testSkipDefinitions() throws IOException {
+        String file = this.glossary("book\na printed work\nof pages\n\n"
+                + "word\na unit of language\n\nterm\n");
+        try (GlossaryReader reader = new GlossaryReader(file, false)) {
+            assertRecord(reader, "book", null);
+            assertRecord(reader, "word", null);
+            assertTrue("There should be a third record.", reader.next());
+            assertEquals("The term should match.", "term", reader.term());
+            assertNull("The definition should be skipped.",
+                    reader.definition());
+            assertFalse("There should be no more records.", reader.next());
+        }
+    }
+
+}
@@ -1,14 +1,27 @@
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.Comparator;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import components.map.Map;
+import components.map.Map1L;
 import components.queue.Queue;
 import components.queue.Queue1L;
 import components.set.Set;
 import components.set.Set1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
 
 /**
  * Test class for {@link Glossary}. Tests the various functionalities of the
@@ -25,6 +38,12 @@ public class GlossaryTest {
     private static final Comparator<String> STRING_COMPARATOR = Comparator
             .naturalOrder();
 
+    /**
+     * Folder of the generated pages, deleted after each test.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     /**
      * Tests the generation and addition of elements from a string with repeated
      * characters. Ensures that each unique character is added exactly once.
@@ -136,6 +155,44 @@ public class GlossaryTest {
         Glossary.nextWordOrSeparator(text, 0, separators);
     }
 
+    /**
+     * Tests that the {@code Tokenizer} version agrees with the {@code Set}
+     * version on words and separator strings.
+     */
+    @Test
+    public void testNextWordOrSeparatorWithTokenizer() {
+        Set<Character> separators = new Set1L<>();
+        separators.add(' ');
+        separators.add(',');
+        Tokenizer tokenizer = Tokenizer.of(" ,");
+        String text = "apple, banana, cherry";
+        int position = 0;
+        while (position < text.length()) {
+            String expected = Glossary.nextWordOrSeparator(text, position,
+                    separators);
+            assertEquals("Both versions should return the same token.",
+                    expected,
+                    Glossary.nextWordOrSeparator(text, position, tokenizer));
+            position += expected.length();
+        }
+    }
+
+    /**
+     * Tests that a tokenizer with Unicode separators splits words at
+     * non-ASCII punctuation.
+     */
+    @Test
+    public void testNextWordOrSeparatorUnicodePunctuation() {
+        Tokenizer tokenizer = Tokenizer.of(" ").withUnicodeSeparators();
+        String text = "term\u2014\u00abdefinition\u00bb";
+        assertEquals("The word should end at the dash.", "term",
+                Glossary.nextWordOrSeparator(text, 0, tokenizer));
+        final int four = 4;
+        assertEquals("The dash and quote should be one separator string.",
+                "\u2014\u00ab",
+                Glossary.nextWordOrSeparator(text, four, tokenizer));
+    }
+
     /**
      * Tests sorting behavior on an empty queue to ensure stability and that no
      * modifications occur.
@@ -148,4 +205,105 @@ public class GlossaryTest {
                 queue.length() == 0);
     }
 
+    /**
+     * Tests sorting a queue of several strings, including a duplicate.
+     */
+    @Test
+    public void testSortQueueSeveral() {
+        Queue<String> queue = new Queue1L<>();
+        queue.enqueue("pear");
+        queue.enqueue("apple");
+        queue.enqueue("fig");
+        queue.enqueue("apple");
+        Queue<String> expected = new Queue1L<>();
+        expected.enqueue("apple");
+        expected.enqueue("apple");
+        expected.enqueue("fig");
+        expected.enqueue("pear");
+        Glossary.sortQueue(queue, STRING_COMPARATOR);
+        assertEquals("Queue should be in ascending order.", expected, queue);
+    }
+
+    /**
+     * Tests sorting a queue with a case-insensitive comparator.
+     */
+    @Test
+    public void testSortQueueCaseInsensitive() {
+        Queue<String> queue = new Queue1L<>();
+        queue.enqueue("banana");
+        queue.enqueue("Cherry");
+        queue.enqueue("apple");
+        Queue<String> expected = new Queue1L<>();
+        expected.enqueue("apple");
+        expected.enqueue("banana");
+        expected.enqueue("Cherry");
+        Glossary.sortQueue(queue, String.CASE_INSENSITIVE_ORDER);
+        assertEquals("Queue should ignore case when sorting.", expected,
+                queue);
+    }
+
+    /**
+     * Tests the page generated for a term: its term and definition are
+     * escaped, and the other terms of the glossary, but not the term itself,
+     * are linked to their pages.
+     *
+     * @throws IOException
+     *             if the page cannot be read
+     */
+    @Test
+    public void testGeneratePage() throws IOException {
+        Map<String, String> m = new Map1L<>();
+        m.add("Q&A", "questions <and> answers, as Q&A from an author");
+        m.add("author", "a writer");
+        String folder = this.folder.getRoot().getPath();
+        Glossary.generatePage("Q&A", m, folder);
+
+        String nl = System.lineSeparator();
+        String expected = "<!DOCTYPE html>" + nl
+                + "<html><head><title>Q&amp;A</title></head><body>" + nl
+                + "<h1 style=\"color: red; font-weight: bold;"
+                + " font-style: italic;\">Q&amp;A</h1>" + nl
+                + "<p>questions &lt;and&gt; answers, as Q&amp;A from an"
+                + " <a href=\"author.html\">author</a></p>" + nl + "<hr />"
+                + nl + "<p>Return to <a href=\"index.html\">Index</a>.</p>"
+                + nl + "</body></html>" + nl;
+        byte[] page = Files.readAllBytes(Paths.get(folder, "Q&A.html"));
+        assertEquals("The page should hold the term and linked definition.",
+                expected, new String(page, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Tests that a full build generates every page again, yet still deletes
+     * the pages of the terms removed since the previous build.
+     *
+     * @throws IOException
+     *             if the glossary cannot be written
+     */
+    @Test
+    public void testFullBuildDeletesRemovedPages() throws IOException {
+        Path glossary = this.folder.newFile("terms.txt").toPath();
+        String input = glossary.toString();
+        String pages = this.folder.newFolder("pages").getPath() + "/";
+        SimpleWriter out = new SimpleWriter1L(
+                this.folder.getRoot().getPath() + "/log.txt");
+        Files.write(glossary, "alpha\nthe first\n\nbeta\nafter alpha\n"
+                .getBytes(StandardCharsets.UTF_8));
+        assertEquals(2, Glossary.generateTermPages(input,
+                Glossary.readTerms(input), pages, Glossary.loadManifest(pages),
+                false, out));
+
+        Files.write(glossary,
+                "alpha\nthe first\n".getBytes(StandardCharsets.UTF_8));
+        assertEquals("A full build should write every page.", 1,
+                Glossary.generateTermPages(input, Glossary.readTerms(input),
+                        pages, Glossary.loadManifest(pages), true, out));
+        out.close();
+        assertTrue(Files.isRegularFile(Paths.get(pages, "alpha.html")));
+        assertFalse("The page of a removed term should be deleted.",
+                Files.exists(Paths.get(pages, "beta.html")));
+        assertEquals("The manifest should only hold the remaining term.",
+                Collections.singleton("alpha"),
+                Glossary.loadManifest(pages).keySet());
+    }
+
 }
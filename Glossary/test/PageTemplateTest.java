@@ -0,0 +1,86 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Test class for {@link PageTemplate}. Checks that compiled templates render
+ * the layout with its slots filled, in UTF-8, and that escaping replaces
+ * exactly the characters special in HTML.
+ */
+public class PageTemplateTest {
+
+    /**
+     * Tests filling slots, including a field filling several slots.
+     */
+    @Test
+    public void testRender() {
+        PageTemplate template = PageTemplate
+                .compile("<title>${term}</title><h1>${term}</h1>${body}.");
+        PageTemplate.Output out = new PageTemplate.Output();
+        template.render(out, "book", "a <b>work</b>");
+        assertEquals("Each slot should hold the value of its field.",
+                "<title>book</title><h1>book</h1>a <b>work</b>.",
+                out.toString());
+    }
+
+    /**
+     * Tests a layout without slots, and rendering after another page.
+     */
+    @Test
+    public void testRenderAppends() {
+        PageTemplate head = PageTemplate.compile("<ul>");
+        PageTemplate entry = PageTemplate.compile("<li>${term}</li>");
+        PageTemplate.Output out = new PageTemplate.Output();
+        head.render(out);
+        entry.render(out, "a");
+        entry.render(out, "b");
+        assertEquals("Pages should be appended.", "<ul><li>a</li><li>b</li>",
+                out.toString());
+        out.clear();
+        entry.render(out, "c");
+        assertEquals("Clearing should empty the buffer.", "<li>c</li>",
+                out.toString());
+    }
+
+    /**
+     * Tests that values are encoded as {@code String.getBytes} encodes them,
+     * including past the initial capacity.
+     */
+    @Test
+    public void testUtf8() {
+        final int copies = 2000;
+        char[] chars = new char[copies];
+        Arrays.fill(chars, '\u4E2D');
+        String value = "caf\u00E9 \uD83D\uDE00 \uD800 " + new String(chars);
+        PageTemplate.Output out = new PageTemplate.Output();
+        PageTemplate.compile("\u00AB${v}\u00BB").render(out, value);
+        byte[] expected = ("\u00AB" + value + "\u00BB")
+                .getBytes(StandardCharsets.UTF_8);
+        assertEquals("The length should match.", expected.length,
+                out.length());
+        assertEquals("The decoded text should match.",
+                new String(expected, StandardCharsets.UTF_8), out.toString());
+    }
+
+    /**
+     * Tests escaping.
+     */
+    @Test
+    public void testEscape() {
+        assertEquals("Special characters should be replaced.",
+                "R&amp;D &lt;b&gt; &quot;q&quot; it's",
+                PageTemplate.escape("R&D <b> \"q\" it's"));
+        String plain = "plain text";
+        assertSame("Text without special characters should be returned.",
+                plain, PageTemplate.escape(plain));
+        StringBuilder out = new StringBuilder("x");
+        PageTemplate.escape("a<b>c", 1, 4, out);
+        assertEquals("Only the range should be escaped.", "x&lt;b&gt;",
+                out.toString());
+    }
+
+}
@@ -0,0 +1,137 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test class for {@link StringSort}. Checks that every engine produces the
+ * order described by {@code StringSort.order}.
+ */
+public class StringSortTest {
+
+    /**
+     * Seed for the random strings, so every run uses the same strings.
+     */
+    private static final long SEED = 20240517L;
+
+    /**
+     * Returns {@code n} random strings over a small alphabet mixing cases,
+     * non-ASCII letters and characters above 0xFF, with many shared prefixes,
+     * duplicates and empty strings.
+     *
+     * @param n
+     *            number of strings
+     * @return the strings
+     */
+    private static String[] randomStrings(int n) {
+        final String alphabet = "aAbBzZ\u00e9\u00c9\u0130\u03a3\u03c3\u4e2d";
+        final int maxLength = 6;
+        Random rnd = new Random(SEED);
+        String[] strings = new String[n];
+        for (int i = 0; i < n; i++) {
+            StringBuilder sb = new StringBuilder();
+            int length = rnd.nextInt(maxLength + 1);
+            for (int j = 0; j < length; j++) {
+                sb.append(alphabet.charAt(rnd.nextInt(alphabet.length())));
+            }
+            strings[i] = sb.toString();
+        }
+        return strings;
+    }
+
+    /**
+     * Sorts a copy of {@code strings} with each engine and checks the result
+     * against a comparison sort with {@code StringSort.order(foldCase)}.
+     *
+     * @param strings
+     *            the strings to sort
+     */
+    private static void checkAllEngines(String[] strings) {
+        String[] expected = strings.clone();
+        Arrays.sort(expected, StringSort.order(StringSort::foldCase));
+        for (StringSort.Engine engine : StringSort.Engine.values()) {
+            String[] actual = strings.clone();
+            StringSort.sort(actual, StringSort::foldCase, engine);
+            assertArrayEquals("Engine " + engine + " should sort correctly.",
+                    expected, actual);
+        }
+    }
+
+    /**
+     * Tests that comparing folded strings agrees with
+     * {@code String.CASE_INSENSITIVE_ORDER}.
+     */
+    @Test
+    public void testFoldCaseMatchesCaseInsensitiveOrder() {
+        String[] strings = randomStrings(500);
+        for (String s1 : strings) {
+            for (String s2 : strings) {
+                assertEquals("Folded comparison should match.",
+                        Integer.signum(
+                                String.CASE_INSENSITIVE_ORDER.compare(s1, s2)),
+                        Integer.signum(StringSort.foldCase(s1)
+                                .compareTo(StringSort.foldCase(s2))));
+            }
+        }
+    }
+
+    /**
+     * Tests sorting an empty array.
+     */
+    @Test
+    public void testSortEmpty() {
+        checkAllEngines(new String[0]);
+    }
+
+    /**
+     * Tests sorting fewer strings than the insertion sort cutoff.
+     */
+    @Test
+    public void testSortSmall() {
+        checkAllEngines(new String[] { "pear", "Apple", "apple", "", "fig",
+                "APPLE", "figs" });
+    }
+
+    /**
+     * Tests sorting enough strings for the radix sort to split many ranges.
+     */
+    @Test
+    public void testSortLarge() {
+        checkAllEngines(randomStrings(20000));
+    }
+
+    /**
+     * Tests sorting strings sharing a prefix far longer than the call stack
+     * could recurse on, as long tokens in logs do.
+     */
+    @Test
+    public void testSortLongSharedPrefix() {
+        final int prefixLength = 50000;
+        final int count = 100;
+        char[] prefix = new char[prefixLength];
+        Arrays.fill(prefix, 'a');
+        String[] strings = randomStrings(count);
+        for (int i = 0; i < count; i++) {
+            strings[i] = new String(prefix) + strings[i];
+        }
+        checkAllEngines(strings);
+    }
+
+    /**
+     * Tests sorting by exact lower case, as {@code WordCounter} does.
+     */
+    @Test
+    public void testSortLowerCaseKey() {
+        String[] strings = randomStrings(5000);
+        String[] expected = strings.clone();
+        Arrays.sort(expected, StringSort.order(String::toLowerCase));
+        String[] actual = strings.clone();
+        StringSort.sort(actual, String::toLowerCase, StringSort.Engine.RADIX);
+        assertArrayEquals("Radix sort should sort by lower case.", expected,
+                actual);
+    }
+
+}
@@ -0,0 +1,191 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+/**
+ * Test class for {@link TermLinker}. Checks that terms are linked only where
+ * they are not part of a longer word, by default or as given by a
+ * {@code Tokenizer}, longest first, without overlaps, and never inside links
+ * already made.
+ */
+public class TermLinkerTest {
+
+    /**
+     * Returns the link {@code TermLinker} makes to {@code term}.
+     *
+     * @param term
+     *            the term
+     * @return the link
+     */
+    private static String link(String term) {
+        return "<a href=\"" + term + ".html\">" + term + "</a>";
+    }
+
+    /**
+     * Tests linking single-word terms.
+     */
+    @Test
+    public void testLinkWords() {
+        TermLinker linker = new TermLinker(Arrays.asList("book", "word"));
+        assertEquals("Both terms should be linked.",
+                "A " + link("book") + " of words, a " + link("word") + ".",
+                linker.link("A book of words, a word.", null));
+    }
+
+    /**
+     * Tests that terms inside longer words are not linked.
+     */
+    @Test
+    public void testLinkWordBoundaries() {
+        TermLinker linker = new TermLinker(Arrays.asList("term", "cat"));
+        assertEquals("Only the whole words should be linked.",
+                "terms, determine " + link("term") + " category cat_x "
+                        + link("cat"),
+                linker.link("terms, determine term category cat_x cat",
+                        null));
+    }
+
+    /**
+     * Tests word boundaries given by a tokenizer: only its separators end a
+     * word.
+     */
+    @Test
+    public void testLinkTokenizerBoundaries() {
+        TermLinker linker = new TermLinker(Arrays.asList("cat", "mail"),
+                Tokenizer.of(" ,"));
+        assertEquals("Terms should be linked only between separators.",
+                "cat's e-mail, " + link("cat") + " " + link("mail"),
+                linker.link("cat's e-mail, cat mail", null));
+        assertFalse("A term inside a word should not be found.",
+                linker.containsAnyTerm("cat's e-mail"));
+    }
+
+    /**
+     * Tests that the longest term starting at a position wins.
+     */
+    @Test
+    public void testLinkLongestTerm() {
+        TermLinker linker = new TermLinker(
+                Arrays.asList("data", "data set", "set"));
+        assertEquals("The longer term should be linked.",
+                "a " + link("data set") + " of " + link("data"),
+                linker.link("a data set of data", null));
+    }
+
+    /**
+     * Tests that the excluded term is not linked, while a shorter term at the
+     * same position still is.
+     */
+    @Test
+    public void testLinkExcluded() {
+        TermLinker linker = new TermLinker(
+                Arrays.asList("data", "data set", "set"));
+        assertEquals("The excluded term should not be linked.",
+                "a " + link("data") + " " + link("set"),
+                linker.link("a data set", "data set"));
+    }
+
+    /**
+     * Tests that terms spelled like the HTML of a link are not linked inside
+     * the links already made.
+     */
+    @Test
+    public void testLinkNotInsideLinks() {
+        TermLinker linker = new TermLinker(
+                Arrays.asList("a", "href", "html", "page"));
+        assertEquals("Each term should be linked once.",
+                link("page") + " " + link("a"),
+                linker.link("page a", null));
+    }
+
+    /**
+     * Tests that regular expression characters in terms are literal.
+     */
+    @Test
+    public void testLinkSpecialCharacters() {
+        TermLinker linker = new TermLinker(Arrays.asList("C++", "a.b"));
+        assertEquals("Terms should be matched literally.",
+                "use " + link("C++") + " not axb",
+                linker.link("use C++ not axb", null));
+    }
+
+    /**
+     * Tests that the text and the terms are HTML-escaped.
+     */
+    @Test
+    public void testLinkEscapes() {
+        TermLinker linker = new TermLinker(Arrays.asList("R&D", "x"));
+        assertEquals("Text and links should be escaped.",
+                "<a href=\"R&amp;D.html\">R&amp;D</a> &lt;b&gt; "
+                        + link("x"),
+                linker.link("R&D <b> x", null));
+    }
+
+    /**
+     * Tests linking with many terms sharing prefixes, so the edge table
+     * grows.
+     */
+    @Test
+    public void testLinkManyTerms() {
+        final int n = 5000;
+        String[] terms = new String[n];
+        for (int i = 0; i < n; i++) {
+            terms[i] = "t" + Integer.toString(i, Character.MAX_RADIX);
+        }
+        TermLinker linker = new TermLinker(Arrays.asList(terms));
+        assertEquals("Every term should be stored.", n, linker.size());
+        StringBuilder text = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            text.append(terms[i]).append(' ');
+            expected.append(link(terms[i])).append(' ');
+        }
+        assertEquals("Every term should be linked.", expected.toString(),
+                linker.link(text, null));
+    }
+
+    /**
+     * Tests that the terms linked are collected.
+     */
+    @Test
+    public void testLinkCollectsTerms() {
+        TermLinker linker = new TermLinker(
+                Arrays.asList("data", "data set", "set", "map"));
+        TreeSet<String> linked = new TreeSet<>();
+        linker.link("a data set, data and datasets", "set",
+                new StringBuilder(), linked);
+        assertEquals("Each term linked should be collected once.",
+                new TreeSet<>(Arrays.asList("data", "data set")), linked);
+    }
+
+    /**
+     * Tests finding terms where they would be linked.
+     */
+    @Test
+    public void testContainsAnyTerm() {
+        TermLinker linker = new TermLinker(Arrays.asList("term", "C++"));
+        assertTrue("A whole term should be found.",
+                linker.containsAnyTerm("this term"));
+        assertTrue("A term ending in symbols should be found.",
+                linker.containsAnyTerm("in C++."));
+        assertFalse("Terms inside words should not be found.",
+                linker.containsAnyTerm("terms determine"));
+    }
+
+    /**
+     * Tests that duplicate and empty terms are ignored.
+     */
+    @Test
+    public void testSize() {
+        TermLinker linker = new TermLinker(
+                Arrays.asList("book", "", "book", "books"));
+        assertEquals("Distinct non-empty terms should be counted.", 2,
+                linker.size());
+    }
+
+}